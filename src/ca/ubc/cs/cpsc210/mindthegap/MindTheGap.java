@@ -5,27 +5,32 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
 import android.widget.Toast;
-import ca.ubc.cs.cpsc210.mindthegap.TfL.DataProvider;
-import ca.ubc.cs.cpsc210.mindthegap.TfL.TfLHttpArrivalDataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.TfL.TfLDataProviders;
 import ca.ubc.cs.cpsc210.mindthegap.model.*;
 import ca.ubc.cs.cpsc210.mindthegap.model.exception.StationException;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.ParsedArrivals;
 import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLArrivalsParser;
 import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.mindthegap.ui.ArrivalsPoller;
 import ca.ubc.cs.cpsc210.mindthegap.ui.LocationListener;
 import ca.ubc.cs.cpsc210.mindthegap.ui.MapDisplayFragment;
 import ca.ubc.cs.cpsc210.mindthegap.ui.StationSelectionListener;
+import ca.ubc.cs.cpsc210.mindthegap.ui.UiTaskScheduler;
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
 import org.json.JSONException;
 
+import java.util.concurrent.Callable;
+
 /**
  * Main activity
  */
@@ -33,6 +38,11 @@ public class MindTheGap extends Activity implements LocationListener, StationSel
     private static final String WHERERU_TAG = "WHERERU_TAG";
     private static final String TSA_TAG = "TSA_TAG";
     private static final String MAP_TAG = "Map Fragment Tag";
+    /** group of tasks downloading arrivals for station selected by user (each selection supersedes the last) */
+    private static final String SELECTION_GROUP = "selection";
+    /** task downloading arrivals for station selected by user (null if none) */
+    private TaskScheduler.Task<ParsedArrivals> download;
+    private ProgressDialog progressDialog;
     private MapDisplayFragment fragment;
     private TextView nearestStnLabel;
     private Station myNearestStn;
@@ -44,6 +54,7 @@ public class MindTheGap extends Activity implements LocationListener, StationSel
         Log.i(TSA_TAG, "onCreate");
 
         setContentView(R.layout.map_layout);
+        TfLDataProviders.init(getCacheDir());
         myNearestStn = null;
         botNearestStn = null;
 
@@ -92,6 +103,12 @@ public class MindTheGap extends Activity implements LocationListener, StationSel
         }
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        Log.d(TSA_TAG, "task stats: " + UiTaskScheduler.getInstance());
+    }
+
     /**
      * Update nearest station text view when user location changes
      *
@@ -109,18 +126,14 @@ public class MindTheGap extends Activity implements LocationListener, StationSel
     }
 
     /**
-     * Determine if my closest station and bot's closest station are served by the same line
-     * (not necessarily the same branch of a line)
+     * Determine if my closest station and bot's closest station are linked by a journey with no
+     * change of line (not necessarily on the same branch of a line)
      *
-     * @return  true if my closest station and bot's closest station are served by same line
+     * @return  true if my closest station and bot's closest station are linked without a change
      */
     private boolean hasDirectLink() {
         if (myNearestStn != null && botNearestStn != null) {
-            for (Line next : myNearestStn.getLines()) {
-                if (next.hasStation(botNearestStn)) {
-                    return true;
-                }
-            }
+            return fragment.getTransferMatrix().hasDirectLink(myNearestStn, botNearestStn);
         }
 
         return false;
@@ -167,12 +180,18 @@ public class MindTheGap extends Activity implements LocationListener, StationSel
     public void onStationSelected(Station stn) {
         try {
             StationManager.getInstance().setSelected(stn);
+            ArrivalsPoller.getInstance().cancel();
 
             ConnectivityManager connMgr = (ConnectivityManager)
                     getSystemService(Context.CONNECTIVITY_SERVICE);
             NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
-            if (networkInfo != null && networkInfo.isConnected()) {
-                new DownloadArrivalDataFromTfLTask().execute(stn);
+            if (TfLDataProviders.hasFreshArrivals(stn, System.currentTimeMillis())) {
+                // prefetched (or recently downloaded): no need to wait for a download
+                cancelDownload();
+                startArrivalBoardActivity(stn);
+            }
+            else if (networkInfo != null && networkInfo.isConnected()) {
+                downloadArrivals(stn);
             }
             else {
                 Toast.makeText(this, "Unable to establish network connection!", Toast.LENGTH_LONG).show();
@@ -196,54 +215,84 @@ public class MindTheGap extends Activity implements LocationListener, StationSel
     }
 
     /**
-     * Task that will download and parse arrivals data from TfL
+     * Download arrivals data for given station from TfL, superseding any download for a station
+     * selected earlier, and show arrival boards to user once they are merged into station.
+     * Arrivals are parsed on the download's thread; only the merge is done on the UI thread.
+     * User can cancel the download by dismissing the progress dialog.
+     *
+     * @param stn  station for which arrivals data is to be downloaded
      */
-    private class DownloadArrivalDataFromTfLTask extends AsyncTask<Station, Integer, String> {
-        private ProgressDialog progressDialog;
-        private Station stn;
-
-        @Override
-        protected void onPreExecute() {
-            progressDialog = ProgressDialog.show(MindTheGap.this, getString(R.string.arrivals_download_title),
-                    getString(R.string.arrivals_download_msg), true, false);
-        }
+    private void downloadArrivals(final Station stn) {
+        dismissProgressDialog();
+        progressDialog = ProgressDialog.show(this, getString(R.string.arrivals_download_title),
+                getString(R.string.arrivals_download_msg), true, true, new DialogInterface.OnCancelListener() {
+                    @Override
+                    public void onCancel(DialogInterface dialog) {
+                        cancelDownload();
+                    }
+                });
 
-        @Override
-        protected String doInBackground(Station... stns) {
-            stn = stns[0];
-            DataProvider dataProvider = new TfLHttpArrivalDataProvider(stn);
-            String response = null;
-
-            try {
-                response = dataProvider.dataSourceToString();
-            } catch (Exception e) {
-                Log.d(MindTheGap.TSA_TAG, e.getMessage(), e);
-                Toast.makeText(getApplicationContext(), "Error downloading TfL data", Toast.LENGTH_LONG).show();
-            }
+        download = UiTaskScheduler.getInstance().submit(TaskScheduler.Priority.USER, SELECTION_GROUP,
+                new Callable<ParsedArrivals>() {
+                    @Override
+                    public ParsedArrivals call() throws Exception {
+                        String response = TfLDataProviders.arrivalsFor(stn).dataSourceToString();
+                        return TfLArrivalsParser.readArrivals(stn, response);
+                    }
+                },
+                new TaskScheduler.Callback<ParsedArrivals>() {
+                    @Override
+                    public void onSuccess(ParsedArrivals arrivals) {
+                        download = null;
+                        dismissProgressDialog();
+                        mergeArrivals(stn, arrivals);
+                    }
 
-            return response;
-        }
+                    @Override
+                    public void onFailure(Exception e) {
+                        download = null;
+                        dismissProgressDialog();
+                        Log.d(MindTheGap.TSA_TAG, e.getMessage(), e);
+                        int msg = e instanceof JSONException ? R.string.tfl_api_json : R.string.tfl_api_network;
+                        Toast.makeText(getApplicationContext(), msg, Toast.LENGTH_LONG).show();
+                    }
+                });
+    }
 
-        @Override
-        protected void onPostExecute(String response) {
-            if (response != null) {
-                try {
-                    stn.clearArrivalBoards();
-                    TfLArrivalsParser.parseArrivals(stn, response);
-                    startArrivalBoardActivity(stn);
-                } catch (JSONException e) {
-                    Log.d(MindTheGap.TSA_TAG, e.getMessage(), e);
-                    Toast.makeText(getApplicationContext(), R.string.tfl_api_json, Toast.LENGTH_LONG).show();
-                } catch (TfLArrivalsDataMissingException e) {
-                    Log.d(MindTheGap.TSA_TAG, e.getMessage(), e);
-                    Toast.makeText(getApplicationContext(), R.string.tfl_api_json_missing, Toast.LENGTH_LONG);
-                }
-            }
-            else {
-                Toast.makeText(getApplicationContext(), R.string.tfl_api_network, Toast.LENGTH_LONG).show();
-            }
+    /**
+     * Cancel download of arrivals for station selected by user, if there is one
+     */
+    private void cancelDownload() {
+        if (download != null) {
+            download.cancel();
+            download = null;
+        }
+        dismissProgressDialog();
+    }
 
+    private void dismissProgressDialog() {
+        if (progressDialog != null) {
             progressDialog.dismiss();
+            progressDialog = null;
+        }
+    }
+
+    /**
+     * Merge arrivals parsed from downloaded data into given station and show its arrival boards to user
+     *
+     * @param stn       the station
+     * @param arrivals  arrivals parsed from data downloaded from TfL
+     */
+    private void mergeArrivals(Station stn, ParsedArrivals arrivals) {
+        try {
+            // merging matches arrivals by prediction id, so a response shared with another download
+            // that has already been merged adds nothing the second time
+            ArrivalsChangeSet changes = arrivals.merge().get(stn);
+            Log.d(MindTheGap.TSA_TAG, "arrivals at " + stn.getName() + ": " + changes);
+            startArrivalBoardActivity(stn);
+        } catch (TfLArrivalsDataMissingException e) {
+            Log.d(MindTheGap.TSA_TAG, e.getMessage(), e);
+            Toast.makeText(getApplicationContext(), R.string.tfl_api_json_missing, Toast.LENGTH_LONG);
         }
     }
 }
@@ -4,11 +4,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 
 /**
  * Common functionality for file data providers
  */
-public abstract class AbstractFileDataProvider implements DataProvider {
+public abstract class AbstractFileDataProvider implements StreamingDataProvider {
+    private static final int BUFFER_SIZE = 16 * 1024;   // chars
 
     /**
      * Read source data from input stream as string
@@ -31,4 +33,14 @@ public abstract class AbstractFileDataProvider implements DataProvider {
 
         return sb.toString();
     }
+
+    /**
+     * Open source data from input stream as a buffered character stream
+     *
+     * @param is  input stream connected to source data
+     * @return  character stream from which source data is read
+     */
+    protected Reader openReader(InputStream is) {
+        return new BufferedReader(new InputStreamReader(is), BUFFER_SIZE);
+    }
 }
@@ -1,63 +1,239 @@
 package ca.ubc.cs.cpsc210.mindthegap.TfL;
 
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
 
 /**
- * Abstract Http data provider
+ * Abstract Http data provider.
+ *
+ * By default, connections are persistent: the response is read to the end and its stream closed
+ * without disconnecting, so that the platform's connection pool can reuse the connection (and its
+ * TLS session) for the next request to the same host.  Responses are requested gzip-compressed and
+ * are decoded using the charset given in the response's Content-Type (UTF-8 if none is given).
+ * Both behaviours can be turned off for an individual provider.  The number of bytes of the
+ * response body read from the connection (compressed, if it was sent compressed) is counted, so
+ * that callers can account for the data actually downloaded.
+ *
+ * A blocking read from a connection ignores interrupts, so while a request is open on a
+ * TaskScheduler thread, the connection is disconnected if the task is cancelled (see
+ * TaskScheduler.setCancelHook); the blocked read then fails at once.
  */
-public abstract class AbstractHttpDataProvider implements DataProvider {
+public abstract class AbstractHttpDataProvider implements StreamingDataProvider {
+    private static final int BUFFER_SIZE = 16 * 1024;   // chars (or bytes, for the gzip stream)
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
     protected HttpURLConnection conn;
+    private String eTag;
+    private volatile long bytesRead;
+    private boolean persistentConnections;
+    private boolean compression;
 
     public AbstractHttpDataProvider() {
         conn = null;
+        eTag = null;
+        bytesRead = 0;
+        persistentConnections = true;
+        compression = true;
+    }
+
+    /**
+     * Set whether connection is left open for reuse by later requests, or disconnected after each request
+     *
+     * @param persistentConnections  true if connection is to be left open for reuse
+     */
+    public void setPersistentConnections(boolean persistentConnections) {
+        this.persistentConnections = persistentConnections;
+    }
+
+    /**
+     * Set whether responses are requested gzip-compressed
+     *
+     * @param compression  true if responses are to be requested gzip-compressed
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
     }
 
     @Override
     public String dataSourceToString() throws IOException {
+        return dataSourceToString(null);
+    }
+
+    /**
+     * Open data source as a character stream that is decoded (and decompressed) as it is read, so
+     * that it can be parsed while the response is still arriving.  Closing the stream returns a
+     * persistent connection to the pool.
+     *
+     * @return  stream from which data is read
+     * @throws IOException  when error occurs opening source
+     */
+    @Override
+    public Reader dataSourceToReader() throws IOException {
+        return openResponse(null);
+    }
+
+    /**
+     * Read data source as string unless it still has the given entity tag
+     *
+     * @param ifNoneMatch  entity tag of copy of data already held by caller (null if none)
+     * @return  string containing data read from source, or null if source reports that data
+     * still has entity tag ifNoneMatch
+     * @throws IOException  when error occurs reading from source
+     */
+    public String dataSourceToString(String ifNoneMatch) throws IOException {
+        Reader reader = openResponse(ifNoneMatch);
+        if (reader == null) {
+            return null;
+        }
+
+        try {
+            int length = conn.getContentLength();
+            boolean gzipped = "gzip".equalsIgnoreCase(conn.getContentEncoding());
+            StringBuilder jsonResults = new StringBuilder(length > 0 && !gzipped ? length : BUFFER_SIZE);
+            int read;
+            char[] buff = new char[BUFFER_SIZE];
+            while((read = reader.read(buff)) != -1) {
+                jsonResults.append(buff, 0, read);
+            }
+
+            return jsonResults.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Send request and open response as a character stream, unless source reports that data still
+     * has given entity tag (in which case produce null)
+     */
+    private Reader openResponse(String ifNoneMatch) throws IOException {
         final int CONNECT_TIMEOUT = 2000;  // timeout in ms
         final int READ_TIMEOUT = 3000;     // timeout in ms
         final int HTTP_OK = 200;           // HTTP success code
-        StringBuilder jsonResults;
+        final int HTTP_NOT_MODIFIED = 304; // HTTP code for data unchanged since it was last read
+        Reader reader = null;
 
         URL url = getURL();
+        bytesRead = 0;
 
         try {
             conn = (HttpURLConnection) url.openConnection();
+            final HttpURLConnection connection = conn;
+            TaskScheduler.setCancelHook(new Runnable() {
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            });
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Request cancelled");
+            }
             conn.setConnectTimeout(CONNECT_TIMEOUT);
             conn.setReadTimeout(READ_TIMEOUT);
+            if (ifNoneMatch != null) {
+                conn.setRequestProperty("If-None-Match", ifNoneMatch);
+            }
+            if (compression) {
+                conn.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            if (!persistentConnections) {
+                conn.setRequestProperty("Connection", "close");
+            }
             conn.connect();
             int response =  conn.getResponseCode();
+            if (ifNoneMatch != null && response == HTTP_NOT_MODIFIED) {
+                eTag = ifNoneMatch;
+                return null;
+            }
             if(response != HTTP_OK) {
+                discardErrorResponse();
                 throw new IOException("HTTP response code:" + response + "- failed to obtain data");
             }
 
-            jsonResults = readResponse();
+            eTag = conn.getHeaderField("ETag");
+            reader = new ResponseReader(conn);
+            return reader;
 
         } finally {
-            if (conn != null) {
-                conn.disconnect();
+            if (reader == null) {
+                TaskScheduler.setCancelHook(null);
+                if (conn != null && !persistentConnections) {
+                    conn.disconnect();
+                }
             }
         }
-
-        return jsonResults.toString();
     }
 
-    private StringBuilder readResponse() throws IOException {
-        StringBuilder jsonResults = new StringBuilder();
-        InputStreamReader in = new InputStreamReader(conn.getInputStream());
+    /**
+     * Read and discard body of error response, so that a persistent connection can be reused
+     */
+    private void discardErrorResponse() {
+        InputStream err = conn.getErrorStream();
+        if (err == null) {
+            return;
+        }
 
-        // Load the results into a StringBuilder
-        int read;
-        char[] buff = new char[1024];
-        while((read = in.read(buff)) != -1) {
-            jsonResults.append(buff, 0, read);
+        try {
+            byte[] buff = new byte[BUFFER_SIZE];
+            while (err.read(buff) != -1) {
+                // discard
+            }
+            err.close();
+        } catch (IOException e) {
+            // connection will not be reused
         }
+    }
 
-        return jsonResults;
+    /**
+     * Get charset named in charset parameter of given Content-Type header value; produce UTF-8 if
+     * there is no such parameter or named charset is not supported
+     */
+    private static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                    String name = param.substring(8).trim().replace("\"", "");
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalArgumentException e) {
+                        return DEFAULT_CHARSET;
+                    }
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    /**
+     * Get entity tag of data most recently read from source
+     *
+     * @return  entity tag sent with data most recently read, or null if none was sent
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Get number of bytes of response body read from source in the most recent request, as sent
+     * over the connection (i.e., before decompression and decoding).  A body that is only partly
+     * read (e.g., because the request was cancelled) counts the bytes read so far.
+     *
+     * @return  number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
     }
 
     /**
@@ -67,4 +243,98 @@ public abstract class AbstractHttpDataProvider implements DataProvider {
      * @throws MalformedURLException  when URL is malformed
      */
     protected abstract URL getURL() throws MalformedURLException;
+
+    /**
+     * Response body of a connection, decompressed if it was sent gzip-compressed and decoded using the
+     * charset given in its Content-Type.  Closing the reader closes the response (which returns a
+     * persistent connection to the pool) or disconnects.  A parser may stop reading before the end
+     * of the response (e.g. before trailing whitespace or the gzip trailer), so the rest is drained
+     * before a persistent connection is returned to the pool.  Closing the reader also removes the
+     * cancel hook that would disconnect the connection.
+     */
+    private class ResponseReader extends FilterReader {
+        private HttpURLConnection connection;
+        private boolean persistent;
+
+        ResponseReader(HttpURLConnection connection) throws IOException {
+            super(openBody(connection));
+            this.connection = connection;
+            persistent = persistentConnections;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (persistent) {
+                    drain();
+                }
+                super.close();
+            } finally {
+                TaskScheduler.setCancelHook(null);
+                if (!persistent) {
+                    connection.disconnect();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                char[] buff = new char[BUFFER_SIZE];
+                while (in.read(buff) != -1) {
+                    // discard
+                }
+            } catch (IOException e) {
+                // connection will not be reused
+            }
+        }
+    }
+
+    private Reader openBody(HttpURLConnection connection) throws IOException {
+        InputStream in = new CountingInputStream(connection.getInputStream());
+
+        try {
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+            }
+            return new InputStreamReader(in, charsetOf(connection.getContentType()));
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stream that adds the number of bytes read through it to bytesRead
+     */
+    private class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buff, int off, int len) throws IOException {
+            int read = in.read(buff, off, len);
+            if (read > 0) {
+                bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            bytesRead += skipped;
+            return skipped;
+        }
+    }
 }
@@ -5,6 +5,7 @@ import android.content.res.Resources;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 
 /**
  * Data provider where data source is a file in Android environment
@@ -20,9 +21,26 @@ public class AndroidFileDataProvider extends AbstractFileDataProvider {
 
     @Override
     public String dataSourceToString() throws IOException {
+        return readSource(openSource());
+    }
+
+    @Override
+    public Reader dataSourceToReader() throws IOException {
+        return openReader(openSource());
+    }
+
+    /**
+     * Open raw resource as a stream of bytes (for sources that are not text)
+     *
+     * @return  input stream connected to raw resource
+     * @throws IOException  when no raw resource with given file name exists
+     */
+    public InputStream openSource() throws IOException {
         Resources resources = cxt.getResources();
-        InputStream is = resources.openRawResource(
-                resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName()));
-        return readSource(is);
+        int resId = resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName());
+        if (resId == 0) {
+            throw new IOException("No raw resource named " + fileName);
+        }
+        return resources.openRawResource(resId);
     }
 }
@@ -0,0 +1,142 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalBoard;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.util.Random;
+
+/**
+ * Decides when arrivals at a station should next be downloaded from TfL while they are being shown
+ * to the user.
+ *
+ * Predictions change most quickly (and matter most) for trains that are about to arrive, so the
+ * poll interval is short when the soonest arrival is close and grows as it gets further away.  The
+ * interval is doubled on a metered network.  Time already elapsed since the arrivals were last
+ * brought up to date (by any download, not only this policy's) counts towards the interval.
+ *
+ * After an error, polling backs off exponentially up to a maximum delay; each delay is chosen at
+ * random from the upper half of the current backoff, so that clients that failed together do not
+ * retry together.  A successful download resets the backoff.
+ */
+public class ArrivalsPollingPolicy {
+    private static final long SOON = 2 * 60 * 1000;             // ms
+    private static final long NEAR = 10 * 60 * 1000;            // ms
+    private static final long SOON_INTERVAL = 30 * 1000;        // ms
+    private static final long NEAR_INTERVAL = 60 * 1000;        // ms
+    private static final long FAR_INTERVAL = 2 * 60 * 1000;     // ms
+    private static final int METERED_FACTOR = 2;
+    private static final long MIN_DELAY = 5 * 1000;             // ms
+    private static final long INITIAL_BACKOFF = 10 * 1000;      // ms
+    private static final long MAX_BACKOFF = 5 * 60 * 1000;      // ms
+    private Random random;
+    private int failures;
+
+    public ArrivalsPollingPolicy() {
+        this(new Random());
+    }
+
+    /**
+     * Constructs policy that draws backoff jitter from given source of randomness
+     *
+     * @param random  source of randomness
+     */
+    public ArrivalsPollingPolicy(Random random) {
+        this.random = random;
+        failures = 0;
+    }
+
+    /**
+     * Get interval at which arrivals at given station should be downloaded
+     *
+     * @param stn      the station
+     * @param now      the current time (in milliseconds since the epoch)
+     * @param metered  true if downloads are made over a metered network
+     * @return  poll interval in ms
+     */
+    public long getInterval(Station stn, long now, boolean metered) {
+        long soonest = timeToSoonestArrival(stn, now);
+        long interval;
+
+        if (soonest < SOON) {
+            interval = SOON_INTERVAL;
+        }
+        else if (soonest < NEAR) {
+            interval = NEAR_INTERVAL;
+        }
+        else {
+            interval = FAR_INTERVAL;
+        }
+
+        return metered ? interval * METERED_FACTOR : interval;
+    }
+
+    /**
+     * Get delay until arrivals at given station should next be downloaded, following a successful
+     * download (or when polling starts)
+     *
+     * @param stn      the station
+     * @param now      the current time (in milliseconds since the epoch)
+     * @param metered  true if downloads are made over a metered network
+     * @return  delay in ms
+     */
+    public long nextDelay(Station stn, long now, boolean metered) {
+        long age = stn.getArrivalsUpdated() == 0 ? Long.MAX_VALUE : now - stn.getArrivalsUpdated();
+        long interval = getInterval(stn, now, metered);
+
+        if (age >= interval) {
+            return 0;
+        }
+        return Math.max(MIN_DELAY, interval - age);
+    }
+
+    /**
+     * Record a successful download, resetting the backoff
+     */
+    public void succeeded() {
+        failures = 0;
+    }
+
+    /**
+     * Record a failed download and get delay until the next attempt
+     *
+     * @return  delay in ms
+     */
+    public long failed() {
+        long backoff = INITIAL_BACKOFF;
+        for (int i = 0; i < failures && backoff < MAX_BACKOFF; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, MAX_BACKOFF);
+        failures++;
+
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+
+    /**
+     * Get number of consecutive failed downloads
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get time until first train that has not yet arrived at given station is expected, or
+     * Long.MAX_VALUE if there is no such train
+     */
+    private static long timeToSoonestArrival(Station stn, long now) {
+        long soonest = Long.MAX_VALUE;
+
+        for (ArrivalBoard ab : stn) {
+            for (Arrival next : ab) {
+                if (!next.hasArrived(now)) {
+                    soonest = Math.min(soonest, next.getExpectedArrival() - now);
+                    break;
+                }
+            }
+        }
+
+        return soonest;
+    }
+}
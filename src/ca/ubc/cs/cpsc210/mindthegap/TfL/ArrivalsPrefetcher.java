@@ -0,0 +1,176 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.ParsedArrivals;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLArrivalsParser;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Downloads arrivals in the background for stations the user is likely to select next (e.g. those
+ * nearest to the user), so that arrivals are already fresh when the user selects one of them.
+ *
+ * Prefetching is best effort.  Stations whose arrivals are fresh, or are already being prefetched,
+ * are skipped, and the remaining stations are queried in as few batched requests as possible.  At
+ * most maxConcurrent requests are in flight at once; a request that would exceed the cap is dropped
+ * rather than queued, as the stations wanted will have changed by the time it could run.  The
+ * bytes each request downloads (as sent over the connection, so compressed responses are charged
+ * at their compressed size, and failed requests for what they read) are charged against a budget
+ * that is renewed every budget period; once the budget is spent, no further requests are made
+ * until it is renewed.
+ *
+ * Requests run as PREFETCH tasks on a TaskScheduler, so they wait for downloads the user is waiting
+ * for.  Each task parses its response as it is downloaded; the arrivals parsed are merged into their
+ * stations by the task's callback, so the scheduler must deliver results on the thread that owns the
+ * stations' arrival boards (the UI thread).  prefetch and cancel must also be called on that thread.
+ */
+public class ArrivalsPrefetcher {
+    private int maxConcurrent;
+    private long budgetBytes;
+    private long budgetPeriod;
+    private TaskScheduler scheduler;
+    private Set<Station> inFlight;
+    private Map<TfLHttpBatchArrivalDataProvider, TaskScheduler.Task<ParsedArrivals>> tasks;
+    private long budgetStart;
+    private long bytesUsed;
+    private int requests;
+    private int dropped;
+
+    /**
+     * Constructs prefetcher
+     *
+     * @param maxConcurrent  maximum number of requests in flight at once
+     * @param budgetBytes    maximum amount of data (in bytes) downloaded per budget period
+     * @param budgetPeriod   budget period (in ms)
+     * @param scheduler      scheduler on which requests run
+     */
+    public ArrivalsPrefetcher(int maxConcurrent, long budgetBytes, long budgetPeriod, TaskScheduler scheduler) {
+        this.maxConcurrent = maxConcurrent;
+        this.budgetBytes = budgetBytes;
+        this.budgetPeriod = budgetPeriod;
+        this.scheduler = scheduler;
+        inFlight = new HashSet<Station>();
+        tasks = new HashMap<TfLHttpBatchArrivalDataProvider, TaskScheduler.Task<ParsedArrivals>>();
+        budgetStart = 0;
+    }
+
+    /**
+     * Prefetch arrivals at given stations
+     *
+     * @param stns  stations, most likely to be selected first
+     * @return  number of requests made
+     */
+    public int prefetch(Collection<Station> stns) {
+        long now = System.currentTimeMillis();
+        if (now - budgetStart >= budgetPeriod) {
+            budgetStart = now;
+            bytesUsed = 0;
+        }
+
+        List<Station> wanted = new ArrayList<Station>();
+        for (Station next : stns) {
+            if (!inFlight.contains(next) && !TfLDataProviders.hasFreshArrivals(next, now)) {
+                wanted.add(next);
+            }
+        }
+
+        int made = 0;
+        for (TfLHttpBatchArrivalDataProvider next : TfLHttpBatchArrivalDataProvider.forStations(wanted)) {
+            if (tasks.size() >= maxConcurrent || bytesUsed >= budgetBytes) {
+                dropped++;
+                continue;
+            }
+
+            inFlight.addAll(next.getStations());
+            requests++;
+            made++;
+            fetch(next);
+        }
+
+        return made;
+    }
+
+    /**
+     * Cancel requests in flight (arrivals they download are not merged into their stations)
+     */
+    public void cancel() {
+        for (TaskScheduler.Task<ParsedArrivals> next : tasks.values()) {
+            next.cancel();
+        }
+        tasks.clear();
+        inFlight.clear();
+    }
+
+    /**
+     * Get number of bytes downloaded in the current budget period
+     */
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    /**
+     * Get total number of requests made
+     */
+    public int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * Get number of requests dropped because of the concurrency cap or data budget
+     */
+    public int getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Submit request for arrivals at batch of stations
+     */
+    private void fetch(final TfLHttpBatchArrivalDataProvider provider) {
+        tasks.put(provider, scheduler.submit(TaskScheduler.Priority.PREFETCH, null,
+                new Callable<ParsedArrivals>() {
+                    @Override
+                    public ParsedArrivals call() throws Exception {
+                        return TfLArrivalsParser.readArrivals(provider.getStations(), provider.dataSourceToReader());
+                    }
+                },
+                new TaskScheduler.Callback<ParsedArrivals>() {
+                    @Override
+                    public void onSuccess(ParsedArrivals arrivals) {
+                        deliver(provider, arrivals);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        deliver(provider, null);
+                    }
+                }));
+    }
+
+    /**
+     * Merge arrivals downloaded by given provider into its stations (arrivals is null if download or
+     * parsing failed)
+     */
+    private void deliver(TfLHttpBatchArrivalDataProvider provider, ParsedArrivals arrivals) {
+        tasks.remove(provider);
+        inFlight.removeAll(provider.getStations());
+        bytesUsed += provider.getBytesRead();
+        if (arrivals == null) {
+            return;
+        }
+
+        try {
+            arrivals.merge();
+        } catch (TfLArrivalsDataMissingException e) {
+            // best effort: station's arrivals will be downloaded if it is selected
+        }
+    }
+}
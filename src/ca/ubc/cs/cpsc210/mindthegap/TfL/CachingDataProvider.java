@@ -0,0 +1,81 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+/**
+ * Data provider that answers from a DataCache where it can, and otherwise reads from the data
+ * provider it wraps (adding what it reads to the cache).  A fresh cache entry is returned without
+ * contacting the source.  When the wrapped provider is an Http data provider, a stale entry that
+ * has an entity tag is revalidated with an If-None-Match request and returned if the source
+ * reports it unchanged.
+ */
+public class CachingDataProvider implements DataProvider {
+    private DataProvider source;
+    private DataCache cache;
+    private String key;
+
+    /**
+     * Constructs caching provider for given Http data provider, keyed by the provider's URL
+     *
+     * @param source  the Http data provider
+     * @param cache   the cache
+     * @throws MalformedURLException  when source's URL is malformed
+     */
+    public CachingDataProvider(AbstractHttpDataProvider source, DataCache cache) throws MalformedURLException {
+        this(source, cache, source.getURL().toString());
+    }
+
+    /**
+     * Constructs caching provider for given data provider
+     *
+     * @param source  the data provider
+     * @param cache   the cache
+     * @param key     key identifying source's data in cache
+     */
+    public CachingDataProvider(DataProvider source, DataCache cache, String key) {
+        this.source = source;
+        this.cache = cache;
+        this.key = key;
+    }
+
+    /**
+     * Get key identifying source's data in cache
+     *
+     * @return  the key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String dataSourceToString() throws IOException {
+        long now = System.currentTimeMillis();
+        DataCache.Entry entry = cache.get(key);
+
+        if (entry != null && now - entry.getTime() < cache.getTimeToLive(key)) {
+            cache.recordHit();
+            return entry.getData();
+        }
+
+        String data;
+        String eTag = null;
+        if (source instanceof AbstractHttpDataProvider) {
+            AbstractHttpDataProvider httpSource = (AbstractHttpDataProvider) source;
+            data = httpSource.dataSourceToString(entry == null ? null : entry.getETag());
+            if (data == null) {
+                cache.recordRevalidation();
+                cache.revalidated(key, now);
+                return entry.getData();
+            }
+            eTag = httpSource.getETag();
+        }
+        else {
+            data = source.dataSourceToString();
+        }
+
+        cache.recordMiss();
+        cache.put(key, data, eTag, now);
+        return data;
+    }
+}
@@ -0,0 +1,45 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+/**
+ * Data provider that reads from the data provider it wraps through a RequestCoalescer, so that
+ * concurrent (or closely spaced) requests for the same data share a single read.  For TfL
+ * arrivals, the key is the URL, which identifies both the station and the set of lines queried.
+ */
+public class CoalescingDataProvider implements DataProvider {
+    private DataProvider source;
+    private RequestCoalescer coalescer;
+    private String key;
+
+    /**
+     * Constructs coalescing provider for given Http data provider, keyed by the provider's URL
+     *
+     * @param source     the Http data provider
+     * @param coalescer  the coalescer
+     * @throws MalformedURLException  when source's URL is malformed
+     */
+    public CoalescingDataProvider(AbstractHttpDataProvider source, RequestCoalescer coalescer)
+            throws MalformedURLException {
+        this(source, coalescer, source.getURL().toString());
+    }
+
+    /**
+     * Constructs coalescing provider for given data provider
+     *
+     * @param source     the data provider
+     * @param coalescer  the coalescer
+     * @param key        key identifying source's data
+     */
+    public CoalescingDataProvider(DataProvider source, RequestCoalescer coalescer, String key) {
+        this.source = source;
+        this.coalescer = coalescer;
+        this.key = key;
+    }
+
+    @Override
+    public String dataSourceToString() throws IOException {
+        return coalescer.read(key, source);
+    }
+}
@@ -0,0 +1,436 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cache of data read from data sources, used by CachingDataProvider.  Entries are keyed by
+ * source (the URL, for Http sources) and held in memory in least-recently-used order, up to
+ * a maximum total size in bytes.  If a directory is given, entries are also written to it so
+ * that they survive the process being killed; an entry evicted from memory is read back
+ * from the directory when next asked for.  The directory is bounded too: each time an entry
+ * is written, least-recently-used entries (by file modification time, which is updated when
+ * an entry is read back) are deleted until the files in it total no more than a maximum size.
+ *
+ * Each entry is fresh for a time to live that depends on its key (see setTimeToLive).  A
+ * stale entry that has an entity tag may be revalidated with its source instead of being
+ * read again in full.  A stale entry that has no entity tag is of no further use, so it is
+ * said to have expired; an expired entry is deleted from the directory when it is read, and
+ * expired entries are swept from the directory whenever an entry is written.
+ *
+ * Instances are safe for use by multiple threads.
+ */
+public class DataCache {
+    private static final int DISK_FORMAT_VERSION = 1;
+    private static final String DISK_FILE_SUFFIX = ".entry";
+
+    private long maxBytes;
+    private long bytes;
+    private File diskDir;
+    private long maxDiskBytes;
+    private long defaultTimeToLive;
+    private TreeMap<String, Long> timeToLiveByPrefix;
+    private LinkedHashMap<String, Entry> entries;
+    private int hits;
+    private int misses;
+    private int revalidations;
+
+    /**
+     * Constructs empty cache whose directory (if any) is bounded to the same size as its memory
+     *
+     * @param maxBytes           maximum total size in bytes of entries held in memory
+     * @param diskDir            directory in which entries are to be kept across processes (null if none)
+     * @param defaultTimeToLive  time (in ms) for which an entry is fresh unless otherwise set by setTimeToLive
+     */
+    public DataCache(long maxBytes, File diskDir, long defaultTimeToLive) {
+        this(maxBytes, diskDir, maxBytes, defaultTimeToLive);
+    }
+
+    /**
+     * Constructs empty cache
+     *
+     * @param maxBytes           maximum total size in bytes of entries held in memory
+     * @param diskDir            directory in which entries are to be kept across processes (null if none)
+     * @param maxDiskBytes       maximum total size in bytes of entry files kept in diskDir
+     * @param defaultTimeToLive  time (in ms) for which an entry is fresh unless otherwise set by setTimeToLive
+     */
+    public DataCache(long maxBytes, File diskDir, long maxDiskBytes, long defaultTimeToLive) {
+        this.maxBytes = maxBytes;
+        this.diskDir = diskDir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.defaultTimeToLive = defaultTimeToLive;
+        bytes = 0;
+        timeToLiveByPrefix = new TreeMap<String, Long>();
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+        if (diskDir != null) {
+            diskDir.mkdirs();
+        }
+    }
+
+    /**
+     * Set time for which entries whose keys start with given prefix are fresh (where several
+     * prefixes match a key, the longest applies)
+     *
+     * @param keyPrefix   the key prefix (e.g. the URL of an endpoint)
+     * @param timeToLive  time in ms
+     */
+    public synchronized void setTimeToLive(String keyPrefix, long timeToLive) {
+        timeToLiveByPrefix.put(keyPrefix, timeToLive);
+    }
+
+    /**
+     * Get time for which entry with given key is fresh
+     *
+     * @param key  the key
+     * @return  time in ms
+     */
+    public synchronized long getTimeToLive(String key) {
+        String prefix = timeToLiveByPrefix.floorKey(key);
+        while (prefix != null) {
+            if (key.startsWith(prefix)) {
+                return timeToLiveByPrefix.get(prefix);
+            }
+            prefix = timeToLiveByPrefix.lowerKey(prefix);
+        }
+        return defaultTimeToLive;
+    }
+
+    /**
+     * Get entry with given key, fresh or stale
+     *
+     * @param key  the key
+     * @return  entry with given key, or null if there is none in memory or on disk
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null && diskDir != null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                putInMemory(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Add entry with given key, replacing any entry already held with that key
+     *
+     * @param key    the key
+     * @param data   data read from source
+     * @param eTag   entity tag sent by source with data (null if none)
+     * @param time   time (in ms since the epoch) at which data was read
+     */
+    synchronized void put(String key, String data, String eTag, long time) {
+        Entry entry = new Entry(key, data, eTag, time);
+        putInMemory(key, entry);
+        if (diskDir != null) {
+            writeToDisk(key, entry);
+        }
+    }
+
+    /**
+     * Mark entry with given key as having been confirmed by its source to be current at given time
+     *
+     * @param key   the key
+     * @param time  time (in ms since the epoch) at which entry was confirmed
+     */
+    synchronized void revalidated(String key, long time) {
+        Entry entry = get(key);
+        if (entry != null) {
+            entry.time = time;
+            if (diskDir != null) {
+                writeToDisk(key, entry);
+            }
+        }
+    }
+
+    synchronized void recordHit() {
+        hits++;
+    }
+
+    synchronized void recordMiss() {
+        misses++;
+    }
+
+    synchronized void recordRevalidation() {
+        revalidations++;
+    }
+
+    /**
+     * Get number of requests answered from a fresh entry without contacting source
+     */
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get number of requests for which data had to be read in full from source
+     */
+    public synchronized int getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Get number of requests answered from a stale entry after source confirmed it to be current
+     */
+    public synchronized int getRevalidationCount() {
+        return revalidations;
+    }
+
+    /**
+     * Get total size in bytes of entries held in memory
+     */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    /**
+     * Get total size in bytes of entry files kept on disk (0 if there is no directory)
+     */
+    public synchronized long getDiskSize() {
+        long total = 0;
+        for (File next : listDiskFiles()) {
+            total += next.length();
+        }
+        return total;
+    }
+
+    /**
+     * Remove all entries from memory and disk
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        for (File next : listDiskFiles()) {
+            next.delete();
+        }
+    }
+
+    /**
+     * Determine if given entry has expired: it is stale at given time and, having no entity tag,
+     * cannot be revalidated
+     */
+    private boolean isExpired(Entry entry, long now) {
+        return entry.eTag == null && now - entry.time >= getTimeToLive(entry.key);
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            bytes -= old.size();
+        }
+        bytes += entry.size();
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> next = eldest.next();
+            if (next.getValue() == entry) {
+                break;
+            }
+            bytes -= next.getValue().size();
+            eldest.remove();
+        }
+    }
+
+    private File diskFile(String key) {
+        return new File(diskDir, Integer.toHexString(key.hashCode()) + DISK_FILE_SUFFIX);
+    }
+
+    /**
+     * Get entry files in directory (none if there is no directory)
+     */
+    private File[] listDiskFiles() {
+        File[] files = diskDir == null ? null : diskDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(DISK_FILE_SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Read entry with given key from disk, marking its file as recently used; produce null if there
+     * is none, it cannot be read or it has expired (in which case its file is deleted)
+     */
+    private Entry readFromDisk(String key) {
+        File file = diskFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        Entry entry = readFile(file, key, true);
+        long now = System.currentTimeMillis();
+        if (entry != null && isExpired(entry, now)) {
+            file.delete();
+            return null;
+        }
+        if (entry != null) {
+            file.setLastModified(now);
+        }
+        return entry;
+    }
+
+    /**
+     * Read entry from given file, or just its header (with null data) if withData is false; produce
+     * null if file cannot be read or does not hold entry with given key (any key, if key is null)
+     */
+    private static Entry readFile(File file, String key, boolean withData) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != DISK_FORMAT_VERSION) {
+                return null;
+            }
+            String fileKey = in.readUTF();
+            if (key != null && !fileKey.equals(key)) {
+                return null;
+            }
+            String eTag = in.readBoolean() ? in.readUTF() : null;
+            long time = in.readLong();
+            if (!withData) {
+                return new Entry(fileKey, null, eTag, time);
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return new Entry(fileKey, new String(data, "UTF-8"), eTag, time);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Write entry to disk, replacing file atomically so that a reader never sees a partly written
+     * entry; entry is simply not kept on disk if it cannot be written
+     */
+    private void writeToDisk(String key, Entry entry) {
+        File file = diskFile(key);
+        File tmp = new File(diskDir, file.getName() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(DISK_FORMAT_VERSION);
+            out.writeUTF(key);
+            out.writeBoolean(entry.eTag != null);
+            if (entry.eTag != null) {
+                out.writeUTF(entry.eTag);
+            }
+            out.writeLong(entry.time);
+            byte[] data = entry.data.getBytes("UTF-8");
+            out.writeInt(data.length);
+            out.write(data);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            tmp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+
+        trimDisk(file);
+    }
+
+    /**
+     * Delete expired entry files, then delete least-recently-used entry files (other than given file,
+     * just written) until those left total no more than maxDiskBytes
+     */
+    private void trimDisk(File keep) {
+        long now = System.currentTimeMillis();
+        File[] files = listDiskFiles();
+        final long[] lastUsed = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        long total = 0;
+
+        for (int i = 0; i < files.length; i++) {
+            order[i] = i;
+            if (!files[i].equals(keep)) {
+                Entry header = readFile(files[i], null, false);
+                if (header == null || isExpired(header, now)) {
+                    files[i].delete();
+                    continue;
+                }
+            }
+            lastUsed[i] = files[i].lastModified();
+            total += files[i].length();
+        }
+
+        if (total <= maxDiskBytes) {
+            return;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return lastUsed[a] < lastUsed[b] ? -1 : (lastUsed[a] == lastUsed[b] ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < order.length && total > maxDiskBytes; i++) {
+            File next = files[order[i]];
+            if (!next.equals(keep) && next.exists()) {
+                total -= next.length();
+                next.delete();
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                // nothing more to be done
+            }
+        }
+    }
+
+    /**
+     * Cached copy of data read from a source
+     */
+    static class Entry {
+        private String key;
+        private String data;
+        private String eTag;
+        private volatile long time;
+
+        Entry(String key, String data, String eTag, long time) {
+            this.key = key;
+            this.data = data;
+            this.eTag = eTag;
+            this.time = time;
+        }
+
+        String getData() {
+            return data;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Get time (in ms since the epoch) at which data was read or last confirmed to be current
+         */
+        long getTime() {
+            return time;
+        }
+
+        /**
+         * Approximate size of entry in memory, in bytes
+         */
+        long size() {
+            return 2L * data.length() + (eTag == null ? 0 : 2L * eTag.length());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Data provider where data source is a file on the local file system (for use outside
+ * the Android environment, e.g. by offline tools)
+ */
+public class FileDataProvider extends AbstractFileDataProvider {
+    private File file;
+
+    public FileDataProvider(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public String dataSourceToString() throws IOException {
+        return readSource(new FileInputStream(file));
+    }
+
+    @Override
+    public Reader dataSourceToReader() throws IOException {
+        return openReader(new FileInputStream(file));
+    }
+}
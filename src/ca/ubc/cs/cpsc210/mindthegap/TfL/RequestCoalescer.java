@@ -0,0 +1,257 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Coalesces concurrent reads of the same data source, used by CoalescingDataProvider.  The first
+ * caller to ask for data with a given key reads it from the source; callers that ask for the same
+ * key while that read is in flight wait for it and share its result (or its failure) instead of
+ * reading again.  A successful result continues to be shared for a short window after the read
+ * completes, to absorb bursts of requests.
+ *
+ * If the caller reading for the others is cancelled (its thread is interrupted) before the read
+ * completes, its read is abandoned rather than failed: the callers waiting for it do not share its
+ * failure, and one of them reads again for the rest.
+ *
+ * Instances are safe for use by multiple threads.
+ */
+public class RequestCoalescer {
+    private long window;
+    private Map<String, Flight> flights;
+    private int requests;
+    private int reads;
+    private int joined;
+    private int windowHits;
+
+    /**
+     * Constructs coalescer
+     *
+     * @param window  time (in ms) for which result of a completed read is shared with later callers
+     */
+    public RequestCoalescer(long window) {
+        this.window = window;
+        flights = new HashMap<String, Flight>();
+    }
+
+    /**
+     * Read data with given key from given source, or share the result of a read of the same key that
+     * is in flight or completed within the window
+     *
+     * @param key     key identifying data
+     * @param source  source from which data is to be read
+     * @return  data read from source
+     * @throws IOException  when error occurs reading from source (on this caller's read, or on the
+     * read it shared)
+     */
+    String read(String key, DataProvider source) throws IOException {
+        synchronized (this) {
+            requests++;
+        }
+
+        while (true) {
+            Flight flight;
+            boolean leader = false;
+
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                flight = flights.get(key);
+                if (flight != null && flight.isExpired(now)) {
+                    flight = null;
+                }
+
+                if (flight == null) {
+                    removeExpired(now);
+                    flight = new Flight();
+                    flights.put(key, flight);
+                    leader = true;
+                    reads++;
+                }
+                else if (flight.isDone()) {
+                    windowHits++;
+                }
+                else {
+                    joined++;
+                }
+            }
+
+            if (leader) {
+                return lead(key, flight, source);
+            }
+
+            String data = flight.await();
+            if (!flight.isAbandoned()) {
+                return data;
+            }
+            // reader was cancelled: try again, possibly reading for the others this time
+        }
+    }
+
+    /**
+     * Read data with given key from given source on behalf of callers sharing given flight, and
+     * complete the flight however the read ends
+     */
+    private String lead(String key, Flight flight, DataProvider source) throws IOException {
+        try {
+            String data = source.dataSourceToString();
+            flight.succeed(data);
+            return data;
+        } catch (IOException e) {
+            if (isCancelled(e)) {
+                flight.abandon();
+            }
+            else {
+                flight.fail(e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            flight.fail(new IOException(e));
+            throw e;
+        } finally {
+            if (!flight.isDone()) {
+                flight.fail(new IOException("Shared read did not complete"));
+            }
+            synchronized (this) {
+                if (flight.isFailed() && flights.get(key) == flight) {
+                    flights.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determine if read on this thread ended with given exception because the thread was interrupted
+     * (e.g. its task was cancelled), rather than because the source failed
+     */
+    private static boolean isCancelled(IOException e) {
+        return Thread.currentThread().isInterrupted()
+                || (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException));
+    }
+
+    /**
+     * Get total number of requests for data
+     */
+    public synchronized int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * Get number of requests for which data was read from source
+     */
+    public synchronized int getReadCount() {
+        return reads;
+    }
+
+    /**
+     * Get number of requests that shared a read in flight
+     */
+    public synchronized int getJoinedCount() {
+        return joined;
+    }
+
+    /**
+     * Get number of requests that shared the result of a read completed within the window
+     */
+    public synchronized int getWindowHitCount() {
+        return windowHits;
+    }
+
+    /**
+     * Get number of requests that did not read from source (duplicates suppressed)
+     */
+    public synchronized int getSuppressedCount() {
+        return joined + windowHits;
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Flight> it = flights.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * A read of a data source, in flight or completed
+     */
+    private class Flight {
+        private boolean done;
+        private boolean abandoned;
+        private String data;
+        private IOException error;
+        private long completedAt;
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Determine if read failed or was abandoned
+         */
+        synchronized boolean isFailed() {
+            return done && error != null;
+        }
+
+        synchronized boolean isAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * Determine if result of this read may no longer be shared at given time
+         */
+        synchronized boolean isExpired(long now) {
+            return done && (error != null || now - completedAt >= window);
+        }
+
+        synchronized void succeed(String data) {
+            this.data = data;
+            complete();
+        }
+
+        synchronized void fail(IOException error) {
+            this.error = error;
+            complete();
+        }
+
+        /**
+         * Complete read as abandoned by a cancelled reader; waiting callers are to read again
+         */
+        synchronized void abandon() {
+            abandoned = true;
+            fail(new InterruptedIOException("Shared read abandoned"));
+        }
+
+        private void complete() {
+            done = true;
+            completedAt = System.currentTimeMillis();
+            notifyAll();
+        }
+
+        /**
+         * Wait for read to complete and produce its result (null if read was abandoned)
+         */
+        synchronized String await() throws IOException {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for shared read");
+                }
+            }
+
+            if (abandoned) {
+                return null;
+            }
+            if (error != null) {
+                throw new IOException("Shared read failed: " + error.getMessage(), error);
+            }
+            return data;
+        }
+    }
+}
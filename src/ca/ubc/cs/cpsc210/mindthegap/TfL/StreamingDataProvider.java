@@ -0,0 +1,19 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Specifies behaviours for data providers that can also deliver their data as a stream, so that
+ * it can be parsed as it is read instead of first being read into a string
+ */
+public interface StreamingDataProvider extends DataProvider {
+
+    /**
+     * Open data source as a character stream.  The caller must close the stream.
+     *
+     * @return  stream from which data is read
+     * @throws IOException  when error occurs opening source
+     */
+    Reader dataSourceToReader() throws IOException;
+}
@@ -0,0 +1,81 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.io.File;
+import java.net.MalformedURLException;
+
+/**
+ * Produces data providers for TfL data that share a single cache and request coalescer
+ * across the whole application, so that every screen (and background refresh) asking for
+ * the same data benefits from reads made by the others.
+ */
+public class TfLDataProviders {
+    private static final long MAX_CACHE_BYTES = 1024 * 1024;
+    private static final long MAX_DISK_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final long ARRIVALS_TIME_TO_LIVE = 30 * 1000;    // ms
+    private static final String CACHE_DIR = "tfl";
+    private static final long COALESCE_WINDOW = 2000;               // ms
+
+    private static DataCache cache;
+    private static RequestCoalescer coalescer = new RequestCoalescer(COALESCE_WINDOW);
+
+    /**
+     * Set directory under which TfL data is cached across processes.  Has no effect after first call,
+     * or after first provider has been produced.
+     *
+     * @param cacheDir  the application's cache directory
+     */
+    public static synchronized void init(File cacheDir) {
+        if (cache == null) {
+            cache = new DataCache(MAX_CACHE_BYTES, new File(cacheDir, CACHE_DIR), MAX_DISK_CACHE_BYTES,
+                    ARRIVALS_TIME_TO_LIVE);
+        }
+    }
+
+    /**
+     * Get cache shared by all providers
+     *
+     * @return  the cache
+     */
+    public static synchronized DataCache getCache() {
+        if (cache == null) {
+            cache = new DataCache(MAX_CACHE_BYTES, null, ARRIVALS_TIME_TO_LIVE);
+        }
+        return cache;
+    }
+
+    /**
+     * Get request coalescer shared by all providers
+     *
+     * @return  the request coalescer
+     */
+    public static RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Determine if arrivals at given station are fresh: they were brought up to date no longer ago
+     * than a cached copy of them would be served for
+     *
+     * @param stn  the station
+     * @param now  the current time (in milliseconds since the epoch)
+     * @return  true if arrivals at station are fresh
+     */
+    public static boolean hasFreshArrivals(Station stn, long now) {
+        return stn.getArrivalsUpdated() != 0 && now - stn.getArrivalsUpdated() < ARRIVALS_TIME_TO_LIVE;
+    }
+
+    /**
+     * Produce provider of arrivals data for given station, answered from the shared cache where
+     * possible and coalesced with other requests for the same data
+     *
+     * @param stn  the station
+     * @return  provider of arrivals data for station
+     * @throws MalformedURLException  when URL for station's arrivals data is malformed
+     */
+    public static DataProvider arrivalsFor(Station stn) throws MalformedURLException {
+        CachingDataProvider cachingProvider = new CachingDataProvider(new TfLHttpArrivalDataProvider(stn), getCache());
+        return new CoalescingDataProvider(cachingProvider, coalescer, cachingProvider.getKey());
+    }
+}
@@ -0,0 +1,120 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wrapper for TfL Arrival Data Provider that queries expected arrivals at several stations
+ * in a single request.  Response is demultiplexed into the stations by
+ * TfLArrivalsParser.readArrivals(Collection, Reader), which can parse it as it is read from
+ * dataSourceToReader.
+ */
+public class TfLHttpBatchArrivalDataProvider extends AbstractHttpDataProvider {
+    /** longest URL produced (URLs longer than about 2000 characters are refused by some servers and proxies) */
+    public static final int MAX_URL_LENGTH = 2000;
+    private static final String URL_PREFIX = "https://api.tfl.gov.uk/StopPoint/";
+    private static final String URL_SUFFIX = "/Arrivals?app_id=&app_key=";
+
+    private List<Station> stns;
+    private String urlPrefix;
+
+    /**
+     * Constructs provider for arrivals at given stations
+     *
+     * @param stns  the stations (must fit in a URL of at most MAX_URL_LENGTH characters; see forStations)
+     */
+    public TfLHttpBatchArrivalDataProvider(Collection<Station> stns) {
+        this(stns, URL_PREFIX);
+    }
+
+    /**
+     * Constructs provider for arrivals at given stations, queried from a server other than TfL's
+     * (e.g. a stub server under test)
+     *
+     * @param stns       the stations
+     * @param urlPrefix  start of URL, up to and including "/StopPoint/"
+     */
+    TfLHttpBatchArrivalDataProvider(Collection<Station> stns, String urlPrefix) {
+        super();
+        this.stns = new ArrayList<Station>(stns);
+        this.urlPrefix = urlPrefix;
+    }
+
+    /**
+     * Produce providers that between them query arrivals at all given stations in as few requests
+     * as possible, none of which has a URL longer than MAX_URL_LENGTH characters
+     *
+     * @param stns  the stations
+     * @return  providers for arrivals at given stations
+     */
+    public static List<TfLHttpBatchArrivalDataProvider> forStations(Collection<Station> stns) {
+        return forStations(stns, URL_PREFIX);
+    }
+
+    /**
+     * Produce providers as in forStations(Collection), querying a server other than TfL's
+     *
+     * @param stns       the stations
+     * @param urlPrefix  start of URL, up to and including "/StopPoint/"
+     * @return  providers for arrivals at given stations
+     */
+    static List<TfLHttpBatchArrivalDataProvider> forStations(Collection<Station> stns, String urlPrefix) {
+        List<TfLHttpBatchArrivalDataProvider> providers = new ArrayList<TfLHttpBatchArrivalDataProvider>();
+        List<Station> batch = new ArrayList<Station>();
+        int length = urlPrefix.length() + URL_SUFFIX.length();
+
+        for (Station next : stns) {
+            int idLength = next.getID().length() + (batch.isEmpty() ? 0 : 1);
+            if (!batch.isEmpty() && length + idLength > MAX_URL_LENGTH) {
+                providers.add(new TfLHttpBatchArrivalDataProvider(batch, urlPrefix));
+                batch = new ArrayList<Station>();
+                length = urlPrefix.length() + URL_SUFFIX.length();
+                idLength = next.getID().length();
+            }
+            batch.add(next);
+            length += idLength;
+        }
+
+        if (!batch.isEmpty()) {
+            providers.add(new TfLHttpBatchArrivalDataProvider(batch, urlPrefix));
+        }
+
+        return providers;
+    }
+
+    /**
+     * Get stations whose arrivals are queried by this provider
+     *
+     * @return  the stations
+     */
+    public List<Station> getStations() {
+        return Collections.unmodifiableList(stns);
+    }
+
+    @Override
+    /**
+     * Produces URL used to query TfL web service for expected arrivals at
+     * stations specified in call to constructor.
+     *
+     * @returns URL to query TfL web service for arrival data
+     */
+    protected URL getURL() throws MalformedURLException {
+        StringBuilder request = new StringBuilder(urlPrefix);
+
+        for (int i = 0; i < stns.size(); i++) {
+            if (i > 0) {
+                request.append(',');
+            }
+            request.append(stns.get(i).getID());
+        }
+        request.append(URL_SUFFIX);
+
+        return new URL(request.toString());
+    }
+}
@@ -2,7 +2,11 @@ package ca.ubc.cs.cpsc210.mindthegap.model;
 
 /**
  * Represents an estimated arrival with time to arrival in seconds,
- * name of destination and platform at which train arrives.  Platform
+ * name of destination and platform at which train arrives.  The expected
+ * time of arrival is also held as an absolute time on the local clock (in
+ * milliseconds since the epoch), so that time remaining can be counted down
+ * locally without downloading arrivals data again.  It must never be taken
+ * from the server's clock, which may differ from the device's.  Platform
  * data is assumed to be of the form:
  *    "Travel Direction - Platform Name"
  * with an arbitrary number of spaces either side of "-" and at the
@@ -10,22 +14,64 @@ package ca.ubc.cs.cpsc210.mindthegap.model;
  */
 public class Arrival implements Comparable<Arrival>{
     private static final int SECS_PER_MIN = 60;
+    private static final int MILLIS_PER_SEC = 1000;
+    private String id;
     private int timeToStation;
+    private long expectedArrival;
     private String destination;
     private String platform;
+    private String travelDirn;
+    private String platformName;
 
     /**
      * Constructs a new arrival with the given time to station (in seconds),
-     * destination and platform.
+     * destination and platform.  Platform is split into travel direction and
+     * platform name here, once.  Time to station is taken to be measured from now.
      *
      * @param timeToStation  time until train arrives at station (in seconds)
      * @param destination    name of destination station
      * @param platform       platform at which train will arrive
      */
     public Arrival(int timeToStation, String destination, String platform) {
+        this(null, timeToStation, destination, platform);
+    }
+
+    /**
+     * Constructs a new arrival with the given prediction id, time to station (in seconds),
+     * destination and platform.  The id identifies the same prediction across successive
+     * downloads of arrivals data, so that an arrival can be updated rather than replaced.
+     *
+     * @param id             id of the prediction (null if unknown)
+     * @param timeToStation  time until train arrives at station (in seconds)
+     * @param destination    name of destination station
+     * @param platform       platform at which train will arrive
+     */
+    public Arrival(String id, int timeToStation, String destination, String platform) {
+        this(id, timeToStation, System.currentTimeMillis() + (long) timeToStation * MILLIS_PER_SEC,
+                destination, platform);
+    }
+
+    /**
+     * Constructs a new arrival with the given prediction id, time to station (in seconds) when
+     * predicted, expected time of arrival, destination and platform.
+     *
+     * @param id               id of the prediction (null if unknown)
+     * @param timeToStation    time until train arrives at station when prediction was made (in seconds)
+     * @param expectedArrival  expected time of arrival at station on the local clock (in milliseconds
+     *                         since the epoch)
+     * @param destination      name of destination station
+     * @param platform         platform at which train will arrive
+     */
+    public Arrival(String id, int timeToStation, long expectedArrival, String destination, String platform) {
+        this.id = id;
         this.timeToStation = timeToStation;
+        this.expectedArrival = expectedArrival;
         this.destination = destination;
         this.platform = platform;
+
+        int dash = platform.indexOf("-");
+        travelDirn = platform.substring(0, dash - 1).trim();
+        platformName = platform.substring(dash + 1).trim();
     }
 
     /**
@@ -35,7 +81,7 @@ public class Arrival implements Comparable<Arrival>{
      * @return direction of travel
      */
     public String getTravelDirn() {
-        return platform.substring(0, platform.indexOf("-") - 1).trim();
+        return travelDirn;
     }
 
     /**
@@ -45,11 +91,11 @@ public class Arrival implements Comparable<Arrival>{
      * @return  platform name
      */
     public String getPlatformName() {
-        return platform.substring(platform.indexOf("-") + 1).trim();
+        return platformName;
     }
 
     /**
-     * Get time until train arrives at station rounded up to nearest minute.
+     * Get time until train arrives at station, as predicted, rounded up to nearest minute.
      *
      * @return  time until train arrives at station in minutes
      */
@@ -62,6 +108,59 @@ public class Arrival implements Comparable<Arrival>{
         }
     }
 
+    /**
+     * Get time remaining until train arrives at station, at given time, rounded up to nearest minute.
+     *
+     * @param now  the current time on the local clock (in milliseconds since the epoch)
+     * @return  time remaining until train arrives at station in minutes (0 if train is due or has arrived)
+     */
+    public int getTimeToStationInMins(long now) {
+        long millis = expectedArrival - now;
+        if (millis <= 0) {
+            return 0;
+        }
+        long millisPerMin = (long) SECS_PER_MIN * MILLIS_PER_SEC;
+        return (int) ((millis + millisPerMin - 1) / millisPerMin);
+    }
+
+    /**
+     * Determine if train has already arrived at station at given time
+     *
+     * @param now  the current time on the local clock (in milliseconds since the epoch)
+     * @return  true if expected time of arrival is before now
+     */
+    public boolean hasArrived(long now) {
+        return expectedArrival < now;
+    }
+
+    public long getExpectedArrival() {
+        return expectedArrival;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getTimeToStation() {
+        return timeToStation;
+    }
+
+    /**
+     * Update time to station, expected time of arrival and destination of this arrival from a
+     * newer prediction of the same arrival
+     *
+     * @param newer  the newer prediction
+     * @return  true if expected time of arrival (by a second or more) or destination changed
+     */
+    boolean update(Arrival newer) {
+        boolean changed = Math.abs(expectedArrival - newer.expectedArrival) >= MILLIS_PER_SEC
+                || (destination != null ? !destination.equals(newer.destination) : newer.destination != null);
+        timeToStation = newer.timeToStation;
+        expectedArrival = newer.expectedArrival;
+        destination = newer.destination;
+        return changed;
+    }
+
     public String getDestination() {
         return destination;
     }
@@ -71,11 +170,11 @@ public class Arrival implements Comparable<Arrival>{
     }
 
     /**
-     * Order train arrivals by time until train arrives at station
-     * (shorter times ordered before longer times)
+     * Order train arrivals by expected time of arrival at station
+     * (earlier times ordered before later times)
      */
     @Override
     public int compareTo(Arrival arrival) {
-        return this.timeToStation - arrival.timeToStation;
+        return expectedArrival < arrival.expectedArrival ? -1 : (expectedArrival == arrival.expectedArrival ? 0 : 1);
     }
 }
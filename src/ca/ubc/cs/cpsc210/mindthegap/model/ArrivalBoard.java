@@ -6,13 +6,18 @@ import java.util.*;
  * Represents an arrivals board for a particular station, on a particular line,
  * for trains traveling in a particular direction (as indicated by platform prefix).
  *
- * Invariant: iterator provides arrivals in order of time to station
+ * Invariant: iterator provides arrivals in order of expected time of arrival
  * (first train to arrive will be listed first).
+ *
+ * Arrivals are appended as they are added and sorted only when next iterated over (and only if
+ * an arrival was added out of order), so a board of n arrivals is built in O(n log n) time.
+ * Arrivals with equal expected times of arrival are produced in the order in which they were added.
  */
 public class ArrivalBoard implements Iterable<Arrival> {
     private Line line;
     private String travelDirn;
     private List<Arrival> arrivals;
+    private boolean sorted;
 
     /**
      * Constructs an arrival board for the given line with an empty list of arrivals
@@ -24,6 +29,7 @@ public class ArrivalBoard implements Iterable<Arrival> {
     public ArrivalBoard(Line line, String travelDirn) {
         this.line = line;
         arrivals = new ArrayList<Arrival>();
+        sorted = true;
         this.travelDirn = travelDirn;
     }
 
@@ -51,8 +57,56 @@ public class ArrivalBoard implements Iterable<Arrival> {
      * @param arrival  the arrival to add to this arrivals board
      */
     public void addArrival(Arrival arrival) {
+        if (sorted && !arrivals.isEmpty() && arrival.compareTo(arrivals.get(arrivals.size() - 1)) < 0) {
+            sorted = false;
+        }
         arrivals.add(arrival);
-        Collections.sort(arrivals);
+    }
+
+    /**
+     * Add train arrivals to this arrivals board, in any order.
+     *
+     * @param toAdd  the arrivals to add to this arrivals board
+     */
+    public void addArrivals(Collection<Arrival> toAdd) {
+        arrivals.addAll(toAdd);
+        sorted = false;
+    }
+
+    /**
+     * Remove arrivals for trains that have already arrived at station at given time
+     *
+     * @param now  the current time (in milliseconds since the epoch)
+     * @return  arrivals removed from this board
+     */
+    public List<Arrival> removeArrived(long now) {
+        sort();
+        int count = 0;
+        while (count < arrivals.size() && arrivals.get(count).hasArrived(now)) {
+            count++;
+        }
+
+        List<Arrival> arrived = arrivals.subList(0, count);
+        List<Arrival> removed = new ArrayList<Arrival>(arrived);
+        arrived.clear();
+        return removed;
+    }
+
+    /**
+     * Remove arrival from this arrival board
+     *
+     * @param arrival  the arrival to remove
+     * @return  true if arrival was on this board
+     */
+    boolean removeArrival(Arrival arrival) {
+        return arrivals.remove(arrival);
+    }
+
+    /**
+     * Note that time to station of an arrival on this board has changed
+     */
+    void arrivalUpdated() {
+        sorted = false;
     }
 
     /**
@@ -60,6 +114,7 @@ public class ArrivalBoard implements Iterable<Arrival> {
      */
     public void clearArrivals() {
         arrivals.clear();
+        sorted = true;
     }
 
     /**
@@ -94,6 +149,14 @@ public class ArrivalBoard implements Iterable<Arrival> {
      */
     @Override
     public Iterator<Arrival> iterator() {
+        sort();
         return arrivals.iterator();
     }
+
+    private void sort() {
+        if (!sorted) {
+            Collections.sort(arrivals);
+            sorted = true;
+        }
+    }
 }
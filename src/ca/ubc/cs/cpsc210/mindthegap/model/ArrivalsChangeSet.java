@@ -0,0 +1,113 @@
+package ca.ubc.cs.cpsc210.mindthegap.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes made to the arrival boards of a station by merging newly downloaded arrivals
+ * into them (see Station.beginArrivalsUpdate) or by removing arrivals for trains that have
+ * arrived (see Station.removeArrivedArrivals).
+ */
+public class ArrivalsChangeSet {
+    private List<ArrivalBoard> addedBoards;
+    private List<ArrivalBoard> removedBoards;
+    private List<ArrivalBoard> updatedBoards;
+    private List<Arrival> addedArrivals;
+    private List<Arrival> removedArrivals;
+    private List<Arrival> updatedArrivals;
+
+    /**
+     * Constructs an empty change set
+     */
+    ArrivalsChangeSet() {
+        addedBoards = new ArrayList<ArrivalBoard>();
+        removedBoards = new ArrayList<ArrivalBoard>();
+        updatedBoards = new ArrayList<ArrivalBoard>();
+        addedArrivals = new ArrayList<Arrival>();
+        removedArrivals = new ArrayList<Arrival>();
+        updatedArrivals = new ArrayList<Arrival>();
+    }
+
+    /**
+     * Get boards created by the update
+     */
+    public List<ArrivalBoard> getAddedBoards() {
+        return Collections.unmodifiableList(addedBoards);
+    }
+
+    /**
+     * Get boards removed by the update because no arrivals remain on them
+     */
+    public List<ArrivalBoard> getRemovedBoards() {
+        return Collections.unmodifiableList(removedBoards);
+    }
+
+    /**
+     * Get boards that existed before the update, still exist after it and on which an arrival
+     * was added, removed or updated
+     */
+    public List<ArrivalBoard> getUpdatedBoards() {
+        return Collections.unmodifiableList(updatedBoards);
+    }
+
+    public List<Arrival> getAddedArrivals() {
+        return Collections.unmodifiableList(addedArrivals);
+    }
+
+    /**
+     * Get arrivals that were not in the newly downloaded data (e.g. because the train has departed)
+     * or whose train has arrived
+     */
+    public List<Arrival> getRemovedArrivals() {
+        return Collections.unmodifiableList(removedArrivals);
+    }
+
+    /**
+     * Get arrivals whose time to station, destination or board was changed in place
+     */
+    public List<Arrival> getUpdatedArrivals() {
+        return Collections.unmodifiableList(updatedArrivals);
+    }
+
+    /**
+     * Determine if update changed nothing
+     *
+     * @return  true if no board or arrival was added, removed or updated
+     */
+    public boolean isEmpty() {
+        return addedBoards.isEmpty() && removedBoards.isEmpty() && updatedBoards.isEmpty()
+                && addedArrivals.isEmpty() && removedArrivals.isEmpty() && updatedArrivals.isEmpty();
+    }
+
+    void boardAdded(ArrivalBoard board) {
+        addedBoards.add(board);
+    }
+
+    void boardRemoved(ArrivalBoard board) {
+        removedBoards.add(board);
+    }
+
+    void boardUpdated(ArrivalBoard board) {
+        updatedBoards.add(board);
+    }
+
+    void arrivalAdded(Arrival arrival) {
+        addedArrivals.add(arrival);
+    }
+
+    void arrivalRemoved(Arrival arrival) {
+        removedArrivals.add(arrival);
+    }
+
+    void arrivalUpdated(Arrival arrival) {
+        updatedArrivals.add(arrival);
+    }
+
+    @Override
+    public String toString() {
+        return "boards +" + addedBoards.size() + " -" + removedBoards.size() + " ~" + updatedBoards.size()
+                + ", arrivals +" + addedArrivals.size() + " -" + removedArrivals.size()
+                + " ~" + updatedArrivals.size();
+    }
+}
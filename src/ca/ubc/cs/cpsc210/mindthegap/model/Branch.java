@@ -4,6 +4,9 @@ import ca.ubc.cs.cpsc210.mindthegap.parsers.BranchStringParser;
 import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -11,8 +14,12 @@ import java.util.List;
  * A branch of a line consisting of a path of lat/lon points.
  * These points are used to draw the branch on a map.  Note that the points used to
  * represent the branch are not necessarily co-located with stations.
+ *
+ * Points are held in a packed coordinate array; a list of LatLon objects is only built
+ * if getPoints or iterator is called.
  */
 public class Branch implements Iterable<LatLon> {
+    private double[] coords;
     private List<LatLon> pts;
 
     /**
@@ -22,21 +29,77 @@ public class Branch implements Iterable<LatLon> {
      * @param lineString  string of coordinates representing points on branch
      */
     public Branch(String lineString) {
-        pts = BranchStringParser.parseBranch(lineString);
+        coords = BranchStringParser.parseCoordinates(lineString);
+    }
+
+    /**
+     * Constructs a Branch from packed coordinates (latitude of point i at index 2*i,
+     * longitude at index 2*i + 1).  The array is not copied.
+     *
+     * @param coords  packed lat/lon coordinates of points on branch
+     */
+    public Branch(double[] coords) {
+        this.coords = coords;
+    }
+
+    /**
+     * Get number of points on this branch
+     *
+     * @return  number of points on branch
+     */
+    public int getNumPoints() {
+        return coords.length / 2;
+    }
+
+    /**
+     * Get latitude of point at given index
+     *
+     * @param index  index of point on branch
+     * @return  latitude of point
+     */
+    public double getLatitude(int index) {
+        return coords[2 * index];
+    }
+
+    /**
+     * Get longitude of point at given index
+     *
+     * @param index  index of point on branch
+     * @return  longitude of point
+     */
+    public double getLongitude(int index) {
+        return coords[2 * index + 1];
+    }
+
+    /**
+     * Get packed coordinates of all points on this branch: latitude of point i is at index 2*i,
+     * longitude at index 2*i + 1.  The array is shared with this branch and must not be modified.
+     *
+     * @return  packed lat/lon coordinates of points on branch
+     */
+    public double[] getCoordinates() {
+        return coords;
     }
 
     /**
      * Get list of all points on this branch
      *
-     * @return  all points on branch
+     * @return  all points on branch (unmodifiable)
      */
     public List<LatLon> getPoints() {
+        if (pts == null) {
+            List<LatLon> points = new ArrayList<LatLon>(getNumPoints());
+            for (int i = 0; i < coords.length; i += 2) {
+                points.add(new LatLon(coords[i], coords[i + 1]));
+            }
+            pts = Collections.unmodifiableList(points);
+        }
         return pts;
     }
 
     @Override
     public Iterator<LatLon> iterator() {
-        return pts.iterator();
+        return getPoints().iterator();
     }
 
     /**
@@ -49,7 +112,7 @@ public class Branch implements Iterable<LatLon> {
 
         Branch geoPoints = (Branch) o;
 
-        return pts.equals(geoPoints.pts);
+        return Arrays.equals(coords, geoPoints.coords);
 
     }
 
@@ -58,6 +121,6 @@ public class Branch implements Iterable<LatLon> {
      */
     @Override
     public int hashCode() {
-        return pts.hashCode();
+        return Arrays.hashCode(coords);
     }
 }
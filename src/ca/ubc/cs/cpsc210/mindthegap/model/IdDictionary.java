@@ -0,0 +1,47 @@
+package ca.ubc.cs.cpsc210.mindthegap.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary encoding of string ids as dense integer indices.  The first id seen gets index 0, the
+ * next new id index 1 and so on; an id keeps its index for the life of the dictionary, so objects
+ * that are equal because their ids are equal have the same index.  Indices can therefore be used to
+ * look objects up in arrays and bitsets, without hashing.
+ *
+ * Safe for use by several threads at once (e.g. when lines are parsed in parallel).
+ */
+class IdDictionary {
+    private ConcurrentMap<String, Integer> indices;
+
+    IdDictionary() {
+        indices = new ConcurrentHashMap<String, Integer>();
+    }
+
+    /**
+     * Get index of given id, assigning the next index if the id has not been seen before
+     *
+     * @param id  the id
+     * @return  index of id
+     */
+    int indexOf(String id) {
+        Integer index = indices.get(id);
+        if (index == null) {
+            synchronized (this) {
+                index = indices.get(id);
+                if (index == null) {
+                    index = indices.size();
+                    indices.put(id, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get number of ids seen so far (every index is less than this)
+     */
+    int size() {
+        return indices.size();
+    }
+}
@@ -3,22 +3,31 @@ package ca.ubc.cs.cpsc210.mindthegap.model;
 import java.util.*;
 
 /**
- * Represents a line on the underground with a name, id, list of stations and list of branches.
+ * Represents a line on the underground with a name, id, list of stations, list of branches and
+ * list of stop sequences.  Each stop sequence is the ordered list of stations served by one section
+ * of the line (consecutive stations in a sequence are adjacent on the line); sections join at
+ * stations they share.
  *
  * Invariants:
  * - no duplicates in list of stations
  * - stations must be maintained in the order in which they were added to the line
+ * - bitset of station indices holds exactly the indices of stations in list of stations
  */
 public class Line implements Iterable<Station> {
+    private static final IdDictionary IDS = new IdDictionary();
+    private int index;
     private LineResourceData lmd;
     private List<Station> stns;
+    private BitSet stnBits;
     private Set<Branch> branches;
+    private List<List<Station>> stopSequences;
     private String name;
     private String id;
 
     /**
      * Constructs a line with given resource data, id and name.
      * List of stations and list of branches are empty.
+     * Line is given the dense index of its id (see getIndex).
      *
      * @param lmd     the line meta-data
      * @param id      the line id
@@ -28,8 +37,11 @@ public class Line implements Iterable<Station> {
         this.lmd = lmd;
         this.id = id;
         this.name = name;
+        index = IDS.indexOf(id == null ? "" : id);
         stns = new ArrayList<Station>();
+        stnBits = new BitSet();
         branches = new HashSet<Branch>();
+        stopSequences = new ArrayList<List<Station>>();
     }
 
     public String getName() {
@@ -40,6 +52,30 @@ public class Line implements Iterable<Station> {
         return id;
     }
 
+    /**
+     * Get dense index of this line: lines with the same id have the same index, and indices are
+     * numbered from 0 in the order ids were first seen, so they can be used to look lines up in
+     * arrays and bitsets
+     *
+     * @return  index of this line (less than getNumIndices())
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get number of line indices assigned so far
+     *
+     * @return  one more than greatest line index
+     */
+    public static int getNumIndices() {
+        return IDS.size();
+    }
+
+    public LineResourceData getResourceData() {
+        return lmd;
+    }
+
     /**
      * Get colour specified by line resource data
      *
@@ -55,8 +91,9 @@ public class Line implements Iterable<Station> {
      * @param stn  the station to add to this line
      */
     public void addStation(Station stn) {
-        if(!stns.contains(stn)) {
+        if(!stnBits.get(stn.getIndex())) {
             stns.add(stn);
+            stnBits.set(stn.getIndex());
             stn.addLine(this);
         }
     }
@@ -67,19 +104,21 @@ public class Line implements Iterable<Station> {
      * @param stn  the station to remove from this line
      */
     public void removeStation(Station stn) {
-        if(stns.contains(stn)) {
+        if(stnBits.get(stn.getIndex())) {
             stns.remove(stn);
+            stnBits.clear(stn.getIndex());
             stn.removeLine(this);
         }
     }
 
     /**
-     * Remove all stations from this line
+     * Remove all stations (and so all stop sequences) from this line
      */
     public void clearStations() {
         for(Station next : new ArrayList<Station>(stns)) {   // iterate over a copy to avoid concurrent mod
             removeStation(next);
         }
+        stopSequences.clear();
     }
 
     public List<Station> getStations() {
@@ -93,7 +132,7 @@ public class Line implements Iterable<Station> {
      * @return  true if line has the given station
      */
     public boolean hasStation(Station stn) {
-        return stns.contains(stn);
+        return stnBits.get(stn.getIndex());
     }
 
     /**
@@ -109,6 +148,28 @@ public class Line implements Iterable<Station> {
         return branches;
     }
 
+    /**
+     * Add a stop sequence to this line.  Stations in sequence that are not already on this line
+     * are added to it.
+     *
+     * @param sequence  stations in the order in which they are served
+     */
+    public void addStopSequence(List<Station> sequence) {
+        for (Station next : sequence) {
+            addStation(next);
+        }
+        stopSequences.add(Collections.unmodifiableList(new ArrayList<Station>(sequence)));
+    }
+
+    /**
+     * Get stop sequences of this line
+     *
+     * @return  stop sequences, in the order in which they were added (unmodifiable)
+     */
+    public List<List<Station>> getStopSequences() {
+        return Collections.unmodifiableList(stopSequences);
+    }
+
     /**
      * Two lines are equal if their ids are equal
      */
@@ -3,21 +3,31 @@ package ca.ubc.cs.cpsc210.mindthegap.model;
 import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * Represents a station on the underground with an id, name, location (lat/lon)
- * set of lines that stop at this station and a list of arrival boards.
+ * set of lines that stop at this station and a collection of arrival boards
+ * (one for each line and direction of travel).
  */
 public class Station implements Iterable<ArrivalBoard> {
+    private static final IdDictionary IDS = new IdDictionary();
+    private static final int BITS_PER_WORD = 64;
+    private int index;
     private String name;
     private LatLon locn;
     private String id;
     private Set<Line> lines;
-    private List<ArrivalBoard> arrivalBoards;
+    /** bitset of indices of lines in set of lines (replaced, never modified, when lines change) */
+    private volatile long[] lineBits;
+    private Map<BoardKey, ArrivalBoard> arrivalBoards;
+    private ArrivalsUpdate update;
+    private long arrivalsUpdated;
 
     /**
      * Constructs a station with given id, name and location.
-     * Set of lines and list of arrival boards are empty.
+     * Set of lines and collection of arrival boards are empty.
+     * Station is given the dense index of its id (see getIndex).
      *
      * @param id    the id of this station (cannot by null)
      * @param name  name of this station
@@ -27,8 +37,10 @@ public class Station implements Iterable<ArrivalBoard> {
         this.id = id;
         this.name = name;
         this.locn = locn;
-        lines = new HashSet<Line>();
-        arrivalBoards = new ArrayList<ArrivalBoard>();
+        index = IDS.indexOf(id);
+        lines = new CopyOnWriteArraySet<Line>();
+        lineBits = new long[0];
+        arrivalBoards = new LinkedHashMap<BoardKey, ArrivalBoard>();
     }
 
     public String getName() {
@@ -43,6 +55,26 @@ public class Station implements Iterable<ArrivalBoard> {
         return id;
     }
 
+    /**
+     * Get dense index of this station: stations with the same id have the same index, and indices
+     * are numbered from 0 in the order ids were first seen, so they can be used to look stations up
+     * in arrays and bitsets
+     *
+     * @return  index of this station (less than getNumIndices())
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get number of station indices assigned so far
+     *
+     * @return  one more than greatest station index
+     */
+    public static int getNumIndices() {
+        return IDS.size();
+    }
+
     public Set<Line> getLines() {
         return lines;
     }
@@ -52,13 +84,25 @@ public class Station implements Iterable<ArrivalBoard> {
     }
 
     /**
-     * Add line to set of lines with stops at this station.
+     * Get time at which arrivals at this station were last brought up to date
+     *
+     * @return  time (in milliseconds since the epoch) at which the most recent arrivals update was
+     * ended, or 0 if no update has been ended
+     */
+    public long getArrivalsUpdated() {
+        return arrivalsUpdated;
+    }
+
+    /**
+     * Add line to set of lines with stops at this station.  Lines that share this station may be
+     * built on different threads, and the set of lines may be read on one thread while another
+     * adds to it.
      *
      * @param line  the line to add
      */
     public void addLine(Line line) {
-        if(!lines.contains(line)) {
-            lines.add(line);
+        if(lines.add(line)) {
+            setLineBit(line.getIndex(), true);
             line.addStation(this);
         }
     }
@@ -69,8 +113,8 @@ public class Station implements Iterable<ArrivalBoard> {
      * @param line the line to remove
      */
     public void removeLine(Line line) {
-        if(lines.contains(line)) {
-            lines.remove(line);
+        if(lines.remove(line)) {
+            setLineBit(line.getIndex(), false);
             line.removeStation(this);
         }
     }
@@ -81,7 +125,20 @@ public class Station implements Iterable<ArrivalBoard> {
      * @return  true if this station is on given line
      */
     public boolean hasLine(Line line) {
-        return lines.contains(line);
+        long[] bits = lineBits;
+        int li = line.getIndex();
+        return li / BITS_PER_WORD < bits.length && (bits[li / BITS_PER_WORD] & (1L << (li % BITS_PER_WORD))) != 0;
+    }
+
+    /**
+     * Set or clear bit for line with given index, replacing bitset so that readers on other threads
+     * always see a complete one
+     */
+    private synchronized void setLineBit(int li, boolean on) {
+        long[] bits = Arrays.copyOf(lineBits, Math.max(lineBits.length, li / BITS_PER_WORD + 1));
+        long bit = 1L << (li % BITS_PER_WORD);
+        bits[li / BITS_PER_WORD] = on ? bits[li / BITS_PER_WORD] | bit : bits[li / BITS_PER_WORD] & ~bit;
+        lineBits = bits;
     }
 
     /**
@@ -91,20 +148,112 @@ public class Station implements Iterable<ArrivalBoard> {
      * board for given line and travel direction does not exist, it is created and added to
      * arrival boards for this station.
      *
+     * While an update is in progress (see beginArrivalsUpdate), the arrival is held back until
+     * the update ends, when an arrival with the same id as one already at this station is merged
+     * into the existing arrival instead of being added.
+     *
      * @param line    line on which train is travelling
      * @param arrival the train arrival to add to station
      */
     public void addArrival(Line line, Arrival arrival) {
-        for(ArrivalBoard ab : arrivalBoards) {
-            if(ab.getLine().equals(line) && ab.getTravelDirn().equals(arrival.getTravelDirn())) {
-                ab.addArrival(arrival);
-                return;
+        if (update != null) {
+            update.hold(line, arrival);
+        }
+        else {
+            getOrCreateBoard(line, arrival.getTravelDirn()).addArrival(arrival);
+        }
+    }
+
+    /**
+     * Start merging newly downloaded arrivals into the arrival boards at this station.  Arrivals
+     * passed to addArrival are held back, leaving the boards untouched, until endArrivalsUpdate is
+     * called.  Then each arrival that has the same id as an arrival already at this station updates
+     * that arrival in place (moving it to another board if its line or direction of travel has
+     * changed); other arrivals are added as usual.  Boards and arrivals held by the UI therefore
+     * stay current across downloads, and never reflect a download that was only partly parsed.
+     */
+    public void beginArrivalsUpdate() {
+        update = new ArrivalsUpdate();
+    }
+
+    /**
+     * Finish update started by beginArrivalsUpdate.  Arrivals that were at this station before
+     * the update but were not passed to addArrival during it (e.g. because the train has departed)
+     * are removed, as are boards left with no arrivals.
+     *
+     * @return  changes made to arrival boards by the update
+     */
+    public ArrivalsChangeSet endArrivalsUpdate() {
+        return finishUpdate(true);
+    }
+
+    /**
+     * Finish update started by beginArrivalsUpdate without changing the arrival boards (e.g.
+     * because downloaded data could not be fully parsed): arrivals passed to addArrival during the
+     * update are discarded.
+     *
+     * @return  changes made to arrival boards by the update (always empty)
+     */
+    public ArrivalsChangeSet abandonArrivalsUpdate() {
+        return finishUpdate(false);
+    }
+
+    /**
+     * Remove arrivals for trains that have already arrived at this station at given time.  Boards
+     * are kept even if no arrivals remain on them.
+     *
+     * @param now  the current time (in milliseconds since the epoch)
+     * @return  changes made to arrival boards
+     */
+    public ArrivalsChangeSet removeArrivedArrivals(long now) {
+        ArrivalsChangeSet changes = new ArrivalsChangeSet();
+
+        for (ArrivalBoard ab : arrivalBoards.values()) {
+            List<Arrival> arrived = ab.removeArrived(now);
+            if (!arrived.isEmpty()) {
+                changes.boardUpdated(ab);
+                for (Arrival next : arrived) {
+                    changes.arrivalRemoved(next);
+                }
             }
         }
 
-        ArrivalBoard ab = new ArrivalBoard(line, arrival.getTravelDirn());
-        ab.addArrival(arrival);
-        arrivalBoards.add(ab);
+        return changes;
+    }
+
+    private ArrivalsChangeSet finishUpdate(boolean apply) {
+        if (update == null) {
+            return new ArrivalsChangeSet();
+        }
+
+        ArrivalsChangeSet changes = update.finish(apply);
+        update = null;
+        if (apply) {
+            arrivalsUpdated = System.currentTimeMillis();
+        }
+        return changes;
+    }
+
+    private ArrivalBoard getOrCreateBoard(Line line, String travelDirn) {
+        BoardKey key = new BoardKey(line, travelDirn);
+        ArrivalBoard ab = arrivalBoards.get(key);
+
+        if (ab == null) {
+            ab = new ArrivalBoard(line, travelDirn);
+            arrivalBoards.put(key, ab);
+        }
+        return ab;
+    }
+
+    /**
+     * Get arrival board for given line and travel direction
+     *
+     * @param line        the line
+     * @param travelDirn  the direction of travel
+     * @return  arrival board for given line and travel direction, or null if this station has no such board
+     */
+    public ArrivalBoard getArrivalBoard(Line line, String travelDirn) {
+        return arrivalBoards.get(new BoardKey(line, travelDirn));
     }
 
     /**
@@ -112,6 +261,7 @@ public class Station implements Iterable<ArrivalBoard> {
      */
     public void clearArrivalBoards() {
         arrivalBoards.clear();
+        update = null;
     }
 
     /**
@@ -136,8 +286,145 @@ public class Station implements Iterable<ArrivalBoard> {
         return id.hashCode();
     }
 
+    /**
+     * Produces an iterator over the arrival boards at this station in the order in which
+     * they were created
+     */
     @Override
     public Iterator<ArrivalBoard> iterator() {
-        return arrivalBoards.iterator();
+        return arrivalBoards.values().iterator();
+    }
+
+    /**
+     * Arrivals update in progress: holds arrivals passed to addArrival until the update finishes,
+     * then merges them into the boards, tracking arrivals that were at this station and have not
+     * been matched by a newly downloaded arrival, and the boards that have changed.
+     */
+    private class ArrivalsUpdate {
+        private List<Line> heldLines;
+        private List<Arrival> held;
+        private Map<Arrival, ArrivalBoard> unseen;
+        private Map<String, Arrival> unseenById;
+        private Set<ArrivalBoard> createdBoards;
+        private Set<ArrivalBoard> changedBoards;
+        private ArrivalsChangeSet changes;
+
+        ArrivalsUpdate() {
+            heldLines = new ArrayList<Line>();
+            held = new ArrayList<Arrival>();
+            unseen = new LinkedHashMap<Arrival, ArrivalBoard>();
+            unseenById = new HashMap<String, Arrival>();
+            createdBoards = new HashSet<ArrivalBoard>();
+            changedBoards = new LinkedHashSet<ArrivalBoard>();
+            changes = new ArrivalsChangeSet();
+        }
+
+        void hold(Line line, Arrival arrival) {
+            heldLines.add(line);
+            held.add(arrival);
+        }
+
+        private void merge(Line line, Arrival arrival) {
+            ArrivalBoard ab = arrivalBoards.get(new BoardKey(line, arrival.getTravelDirn()));
+            if (ab == null) {
+                ab = getOrCreateBoard(line, arrival.getTravelDirn());
+                createdBoards.add(ab);
+                changes.boardAdded(ab);
+            }
+
+            Arrival existing = arrival.getId() == null ? null : unseenById.remove(arrival.getId());
+            if (existing == null) {
+                ab.addArrival(arrival);
+                changedBoards.add(ab);
+                changes.arrivalAdded(arrival);
+                return;
+            }
+
+            ArrivalBoard from = unseen.remove(existing);
+            if (from != ab) {
+                from.removeArrival(existing);
+                existing.update(arrival);
+                ab.addArrival(existing);
+                changedBoards.add(from);
+                changedBoards.add(ab);
+                changes.arrivalUpdated(existing);
+            }
+            else if (existing.update(arrival)) {
+                ab.arrivalUpdated();
+                changedBoards.add(ab);
+                changes.arrivalUpdated(existing);
+            }
+        }
+
+        /**
+         * Finish update, merging held arrivals into boards and removing arrivals not matched by any
+         * of them if apply is true, or discarding held arrivals if it is false
+         */
+        ArrivalsChangeSet finish(boolean apply) {
+            if (!apply) {
+                return changes;
+            }
+
+            for (ArrivalBoard ab : arrivalBoards.values()) {
+                for (Arrival next : ab) {
+                    unseen.put(next, ab);
+                    if (next.getId() != null) {
+                        unseenById.put(next.getId(), next);
+                    }
+                }
+            }
+            for (int i = 0; i < held.size(); i++) {
+                merge(heldLines.get(i), held.get(i));
+            }
+
+            for (Map.Entry<Arrival, ArrivalBoard> next : unseen.entrySet()) {
+                next.getValue().removeArrival(next.getKey());
+                changedBoards.add(next.getValue());
+                changes.arrivalRemoved(next.getKey());
+            }
+
+            for (ArrivalBoard ab : changedBoards) {
+                if (ab.getNumArrivals() == 0) {
+                    arrivalBoards.remove(new BoardKey(ab.getLine(), ab.getTravelDirn()));
+                    changes.boardRemoved(ab);
+                }
+                else if (!createdBoards.contains(ab)) {
+                    changes.boardUpdated(ab);
+                }
+            }
+
+            return changes;
+        }
+    }
+
+    /**
+     * Key under which arrival board for a line and direction of travel is held
+     */
+    private static class BoardKey {
+        private Line line;
+        private String travelDirn;
+
+        BoardKey(Line line, String travelDirn) {
+            this.line = line;
+            this.travelDirn = travelDirn;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            BoardKey other = (BoardKey) o;
+
+            if (line != null ? !line.equals(other.line) : other.line != null) return false;
+            return !(travelDirn != null ? !travelDirn.equals(other.travelDirn) : other.travelDirn != null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = line != null ? line.hashCode() : 0;
+            result = 31 * result + (travelDirn != null ? travelDirn.hashCode() : 0);
+            return result;
+        }
     }
 }
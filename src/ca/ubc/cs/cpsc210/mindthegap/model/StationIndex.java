@@ -0,0 +1,227 @@
+package ca.ubc.cs.cpsc210.mindthegap.model;
+
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import ca.ubc.cs.cpsc210.mindthegap.util.SphericalGeometry;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Uniform-grid spatial index over stations.  Stations are bucketed into cells of CELL_DEGREES of
+ * latitude by CELL_DEGREES of longitude; queries visit cells in rings of increasing distance from
+ * the query point and stop as soon as no unvisited cell can hold a closer station.
+ *
+ * Stations may be added on one thread while queries run on others.
+ */
+class StationIndex {
+    /** cell size in degrees (about 1.1km of latitude, 0.7km of longitude in London) */
+    private static final double CELL_DEGREES = 0.01;
+    private static final double EARTH_RADIUS = 6371000;   // metres
+    private static final double METRES_PER_CELL = EARTH_RADIUS * Math.toRadians(CELL_DEGREES);
+    /** allowance for the difference between distance along a parallel and great circle distance */
+    private static final double BOUND_SLACK = 0.99;
+
+    private ConcurrentMap<Long, List<Station>> cells;
+    private volatile int minRow;
+    private volatile int maxRow;
+    private volatile int minCol;
+    private volatile int maxCol;
+    private volatile int size;
+
+    StationIndex() {
+        cells = new ConcurrentHashMap<Long, List<Station>>();
+        clear();
+    }
+
+    /**
+     * Add station to index (station must not already be in index)
+     *
+     * @param stn  the station to add
+     */
+    void add(Station stn) {
+        int row = row(stn.getLocn().getLatitude());
+        int col = col(stn.getLocn().getLongitude());
+        Long key = key(row, col);
+
+        List<Station> cell = cells.get(key);
+        if (cell == null) {
+            List<Station> created = new CopyOnWriteArrayList<Station>();
+            cell = cells.putIfAbsent(key, created);
+            if (cell == null) {
+                cell = created;
+            }
+        }
+        cell.add(stn);
+
+        if (size == 0) {
+            minRow = maxRow = row;
+            minCol = maxCol = col;
+        }
+        else {
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+            minCol = Math.min(minCol, col);
+            maxCol = Math.max(maxCol, col);
+        }
+        size++;
+    }
+
+    /**
+     * Remove station from index (the bounds of the occupied cells are left as they are; they may then
+     * be wider than needed, which costs queries a few empty cells but never misses a station)
+     *
+     * @param stn  the station to remove
+     * @return  true if station was in index
+     */
+    boolean remove(Station stn) {
+        List<Station> cell = cells.get(key(row(stn.getLocn().getLatitude()), col(stn.getLocn().getLongitude())));
+        if (cell == null || !cell.remove(stn)) {
+            return false;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove all stations from index
+     */
+    void clear() {
+        cells.clear();
+        size = 0;
+        minRow = maxRow = minCol = maxCol = 0;
+    }
+
+    /**
+     * Find stations nearest to given point, ordered by distance (nearest first)
+     *
+     * @param pt        the point
+     * @param k         maximum number of stations to find
+     * @param maxDist   only stations strictly closer than this many metres are found
+     * @return  up to k stations nearest to pt and within maxDist metres of it
+     */
+    List<Station> nearest(LatLon pt, int k, double maxDist) {
+        List<Neighbour> found = new ArrayList<Neighbour>();
+        if (k <= 0 || size == 0) {
+            return new ArrayList<Station>();
+        }
+
+        int row = row(pt.getLatitude());
+        int col = col(pt.getLongitude());
+        int firstRing = Math.max(Math.max(minRow - row, row - maxRow), Math.max(minCol - col, col - maxCol));
+        int lastRing = Math.max(Math.max(maxRow - row, row - minRow), Math.max(maxCol - col, col - minCol));
+        firstRing = Math.max(0, firstRing);
+
+        for (int ring = firstRing; ring <= lastRing; ring++) {
+            double bound = lowerBound(pt, ring);
+            if (bound >= maxDist) {
+                break;
+            }
+            if (found.size() >= k && found.get(k - 1).distance <= bound) {
+                break;
+            }
+            visitRing(pt, row, col, ring, maxDist, found);
+            Collections.sort(found);
+        }
+
+        List<Station> result = new ArrayList<Station>(Math.min(k, found.size()));
+        for (int i = 0; i < found.size() && i < k; i++) {
+            result.add(found.get(i).stn);
+        }
+        return result;
+    }
+
+    /**
+     * Find all stations within given distance of point, ordered by distance (nearest first)
+     *
+     * @param pt        the point
+     * @param maxDist   distance in metres
+     * @return  stations no more than maxDist metres from pt
+     */
+    List<Station> withinRadius(LatLon pt, double maxDist) {
+        // nearest() excludes stations at exactly maxDist; nudge the limit up to include them
+        return nearest(pt, Integer.MAX_VALUE, Math.nextUp(maxDist));
+    }
+
+    /**
+     * Add all stations in cells on given ring around (row, col) that are closer than maxDist to found
+     */
+    private void visitRing(LatLon pt, int row, int col, int ring, double maxDist, List<Neighbour> found) {
+        int fromRow = Math.max(row - ring, minRow);
+        int toRow = Math.min(row + ring, maxRow);
+
+        for (int r = fromRow; r <= toRow; r++) {
+            if (r == row - ring || r == row + ring) {
+                for (int c = Math.max(col - ring, minCol); c <= Math.min(col + ring, maxCol); c++) {
+                    visitCell(pt, r, c, maxDist, found);
+                }
+            }
+            else {
+                if (col - ring >= minCol) {
+                    visitCell(pt, r, col - ring, maxDist, found);
+                }
+                if (ring > 0 && col + ring <= maxCol) {
+                    visitCell(pt, r, col + ring, maxDist, found);
+                }
+            }
+        }
+    }
+
+    private void visitCell(LatLon pt, int row, int col, double maxDist, List<Neighbour> found) {
+        List<Station> cell = cells.get(key(row, col));
+        if (cell == null) {
+            return;
+        }
+        for (Station stn : cell) {
+            double distance = SphericalGeometry.distanceBetween(stn.getLocn(), pt);
+            if (distance < maxDist) {
+                found.add(new Neighbour(stn, distance));
+            }
+        }
+    }
+
+    /**
+     * Lower bound on distance from pt to any station in a cell on the given ring (or beyond) around the
+     * cell containing pt.  Such a station is separated from pt by at least ring - 1 whole cells of
+     * latitude or of longitude.
+     */
+    private double lowerBound(LatLon pt, int ring) {
+        if (ring <= 1) {
+            return 0;
+        }
+        double maxLat = Math.min(90, Math.abs(pt.getLatitude()) + (ring + 1) * CELL_DEGREES);
+        double lonScale = Math.cos(Math.toRadians(maxLat));
+        return BOUND_SLACK * (ring - 1) * METRES_PER_CELL * Math.min(1.0, lonScale);
+    }
+
+    private static int row(double lat) {
+        return (int) Math.floor(lat / CELL_DEGREES);
+    }
+
+    private static int col(double lon) {
+        return (int) Math.floor(lon / CELL_DEGREES);
+    }
+
+    private static Long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Station found by a query, with its distance from the query point
+     */
+    private static class Neighbour implements Comparable<Neighbour> {
+        private Station stn;
+        private double distance;
+
+        Neighbour(Station stn, double distance) {
+            this.stn = stn;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Neighbour other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+}
@@ -2,23 +2,39 @@ package ca.ubc.cs.cpsc210.mindthegap.model;
 
 import ca.ubc.cs.cpsc210.mindthegap.model.exception.StationException;
 import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
-import ca.ubc.cs.cpsc210.mindthegap.util.SphericalGeometry;
 
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Manages all tube stations on network.
  *
  * Singleton pattern applied to ensure only a single instance of this class
  * is globally accessible throughout application.
+ *
+ * Stations may be looked up and iterated over on one thread while lines are being
+ * added on another; iteration then reflects the stations added so far.
+ *
+ * Stations are indexed by id, by normalised name and by the id of each line on which they
+ * have been added, so that lookups take the same time however large the network.
  */
 public class StationManager implements Iterable<Station> {
     public static final int RADIUS = 10000;
     private static StationManager instance;
     private Set<Station> stns;
+    private StationIndex index;
+    private ConcurrentMap<String, Station> stnsById;
+    private ConcurrentMap<String, List<Station>> stnsByName;
+    private ConcurrentMap<String, Set<Station>> stnsByLine;
+    /** every station handed out by getOrCreateStation, whether or not it has been added to this manager yet */
+    private ConcurrentMap<String, Station> knownStns;
     private Station selected;
 
     /**
@@ -26,7 +42,12 @@ public class StationManager implements Iterable<Station> {
      */
     private StationManager() {
         selected = null;
-        stns = new HashSet<Station>();
+        stns = Collections.newSetFromMap(new ConcurrentHashMap<Station, Boolean>());
+        index = new StationIndex();
+        stnsById = new ConcurrentHashMap<String, Station>();
+        stnsByName = new ConcurrentHashMap<String, List<Station>>();
+        stnsByLine = new ConcurrentHashMap<String, Set<Station>>();
+        knownStns = new ConcurrentHashMap<String, Station>();
     }
 
     /**
@@ -34,7 +55,7 @@ public class StationManager implements Iterable<Station> {
      *
      * @return  instance of class
      */
-    public static StationManager getInstance() {
+    public static synchronized StationManager getInstance() {
         if(instance == null) {
             instance = new StationManager();
         }
@@ -54,13 +75,58 @@ public class StationManager implements Iterable<Station> {
      * @return  station with given id or null if no such station is found
      */
     public Station getStationWithId(String id) {
-        for(Station stn : stns) {
-            if(stn.getID().equals(id)) {
-                return stn;
-            }
+        return id == null ? null : stnsById.get(id);
+    }
+
+    /**
+     * Get stations with given name, ignoring case and differences in white space
+     *
+     * @param name  the name of the station
+     * @return  stations in this manager with given name (empty if there are none)
+     */
+    public List<Station> getStationsWithName(String name) {
+        List<Station> named = name == null ? null : stnsByName.get(normaliseName(name));
+        if (named == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(named);
+    }
+
+    /**
+     * Get stations that have been added to this manager on line with given id
+     *
+     * @param lineId  the id of the line
+     * @return  stations on line with given id (empty if there are none)
+     */
+    public Set<Station> getStationsOnLine(String lineId) {
+        Set<Station> onLine = lineId == null ? null : stnsByLine.get(lineId);
+        if (onLine == null) {
+            return Collections.emptySet();
         }
+        return Collections.unmodifiableSet(onLine);
+    }
 
-        return null;
+    /**
+     * Get the one station instance with given id, creating it from the given name and location if no
+     * station with that id has been seen before.  Safe to call from several threads at once (e.g. when
+     * lines are parsed in parallel), so that lines sharing a station always share the same instance.
+     * The station is not added to this manager; that happens in addStationsOnLine.
+     *
+     * @param id    the id of the station
+     * @param name  name of the station (used only if station is created)
+     * @param locn  location of the station (used only if station is created)
+     * @return  station with given id
+     */
+    public Station getOrCreateStation(String id, String name, LatLon locn) {
+        Station stn = knownStns.get(id);
+        if (stn == null) {
+            Station created = new Station(id, name, locn);
+            stn = knownStns.putIfAbsent(id, created);
+            if (stn == null) {
+                stn = created;
+            }
+        }
+        return stn;
     }
 
     /**
@@ -87,12 +153,35 @@ public class StationManager implements Iterable<Station> {
 
     /**
      * Add all stations on given line. Station added only if it is not already in the collection.
+     * If a line with the same id has been added before (e.g. the line has been reloaded), the
+     * stations on it are replaced by those now on given line: a station that was on the line
+     * before and is now on no line added to this manager is removed from the manager (and from
+     * all its indexes), and is no longer selected.
      *
      * @param line  the line from which stations are to be added
      */
-    public void addStationsOnLine(Line line) {
+    public synchronized void addStationsOnLine(Line line) {
+        Set<Station> onLine = Collections.newSetFromMap(new ConcurrentHashMap<Station, Boolean>());
+        for(Station stn : line) {
+            onLine.add(stn);
+        }
+        Set<Station> old = stnsByLine.put(line.getId(), onLine);
+
+        if (old != null) {
+            for (Station stn : old) {
+                if (!onLine.contains(stn) && !isOnAnyLine(stn)) {
+                    removeStation(stn);
+                }
+            }
+        }
+
         for(Station stn : line) {
-            stns.add(stn);
+            if (stns.add(stn)) {
+                stnsById.put(stn.getID(), stn);
+                addByName(stn);
+                index.add(stn);
+            }
+            knownStns.putIfAbsent(stn.getID(), stn);
         }
     }
 
@@ -110,29 +199,100 @@ public class StationManager implements Iterable<Station> {
      */
     public void clearStations() {
         stns.clear();
+        stnsById.clear();
+        stnsByName.clear();
+        stnsByLine.clear();
+        index.clear();
+        knownStns.clear();
         selected = null;
     }
 
 
     /**
      * Find nearest station to given point.  Returns null if no station is closer than RADIUS metres.
+     * Only stations in the neighbourhood of pt are examined (see StationIndex).
      *
      * @param pt  point to which nearest station is sought
      * @return    station closest to pt but less than 10,000m away; null if no station is within RADIUS metres of pt
      */
     public Station findNearestTo(LatLon pt) {
-        Station nearest = null;
-        double closestDistance = RADIUS;
-
-        for(Station stn : stns) {
-            double distance = SphericalGeometry.distanceBetween(stn.getLocn(), pt);
-            if(distance < closestDistance) {
-                nearest = stn;
-                closestDistance = distance;
+        List<Station> nearest = index.nearest(pt, 1, RADIUS);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * Find the k stations nearest to given point, at any distance
+     *
+     * @param pt  point to which nearest stations are sought
+     * @param k   maximum number of stations to find
+     * @return    up to k stations ordered by distance from pt (nearest first)
+     */
+    public List<Station> kNearest(LatLon pt, int k) {
+        return index.nearest(pt, k, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Find all stations within given distance of point
+     *
+     * @param pt      the point
+     * @param metres  the distance
+     * @return    stations no more than given distance from pt, ordered by distance from pt (nearest first)
+     */
+    public List<Station> withinRadius(LatLon pt, double metres) {
+        return index.withinRadius(pt, metres);
+    }
+
+    private boolean isOnAnyLine(Station stn) {
+        for (Set<Station> next : stnsByLine.values()) {
+            if (next.contains(stn)) {
+                return true;
             }
         }
+        return false;
+    }
 
-        return nearest;
+    /**
+     * Remove station from manager and all its indexes
+     */
+    private void removeStation(Station stn) {
+        stns.remove(stn);
+        stnsById.remove(stn.getID(), stn);
+        knownStns.remove(stn.getID(), stn);
+        index.remove(stn);
+
+        String key = normaliseName(stn.getName());
+        List<Station> named = stnsByName.get(key);
+        if (named != null) {
+            named.remove(stn);
+            if (named.isEmpty()) {
+                stnsByName.remove(key, named);
+            }
+        }
+
+        if (stn.equals(selected)) {
+            selected = null;
+        }
+    }
+
+    private void addByName(Station stn) {
+        String key = normaliseName(stn.getName());
+        List<Station> named = stnsByName.get(key);
+        if (named == null) {
+            List<Station> created = new CopyOnWriteArrayList<Station>();
+            named = stnsByName.putIfAbsent(key, created);
+            if (named == null) {
+                named = created;
+            }
+        }
+        named.add(stn);
+    }
+
+    /**
+     * Produce name in lower case with leading and trailing white space removed and each
+     * run of internal white space replaced by a single space
+     */
+    private static String normaliseName(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
     }
 
     @Override
@@ -4,13 +4,20 @@ package ca.ubc.cs.cpsc210.mindthegap.parsers;
 import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
- * Parser for route strings in TfL line data
+ * Parser for route strings in TfL line data.  Route strings have the form
+ *    [[[lon,lat],[lon,lat],...]]
+ * and are scanned by hand, one character at a time, directly into a packed coordinate array.
  */
 public class BranchStringParser {
+    /** exact powers of ten; an integer mantissa below 2^53 divided by one of these is correctly rounded */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
 
     /**
      * Parse a branch string obtained from TFL
@@ -19,15 +26,129 @@ public class BranchStringParser {
      * @return       list of lat/lon points parsed from branch string
      */
     public static List<LatLon> parseBranch(String branch) {
-        List<LatLon> points = new ArrayList<LatLon>();
+        double[] coords = parseCoordinates(branch);
+        List<LatLon> points = new ArrayList<LatLon>(coords.length / 2);
 
-        Pattern p = Pattern.compile("\\[{3}|\\],\\[|,|\\]{3}");
-        String[] coords = p.split(branch, 0);
-
-        for (int i = 1; i < coords.length; i+=2) {
-            points.add(new LatLon(Double.parseDouble(coords[i+1]), Double.parseDouble(coords[i])));
+        for (int i = 0; i < coords.length; i += 2) {
+            points.add(new LatLon(coords[i], coords[i + 1]));
         }
 
         return points;
     }
+
+    /**
+     * Parse a branch string obtained from TFL into a packed array of coordinates.  Point i of the
+     * branch has latitude at index 2*i and longitude at index 2*i + 1 (note that this is the reverse
+     * of the lon,lat order used in the branch string).
+     *
+     * @param branch  branch string
+     * @return        packed lat/lon coordinates parsed from branch string
+     * @throws NumberFormatException  when branch string contains a malformed coordinate
+     */
+    public static double[] parseCoordinates(String branch) {
+        double[] coords = new double[estimatePoints(branch) * 2];
+        int count = 0;
+        int len = branch.length();
+        int i = 0;
+
+        while (i < len) {
+            char c = branch.charAt(i);
+            if (c == '-' || c == '.' || (c >= '0' && c <= '9')) {
+                int end = endOfNumber(branch, i);
+                if (count == coords.length) {
+                    coords = Arrays.copyOf(coords, Math.max(4, coords.length * 2));
+                }
+                coords[count++] = parseNumber(branch, i, end);
+                i = end;
+            }
+            else {
+                i++;
+            }
+        }
+
+        if (count % 2 != 0) {
+            throw new NumberFormatException("Unpaired coordinate in branch string");
+        }
+
+        // branch strings list lon before lat; swap into lat/lon order
+        for (int k = 0; k < count; k += 2) {
+            double lon = coords[k];
+            coords[k] = coords[k + 1];
+            coords[k + 1] = lon;
+        }
+
+        return count == coords.length ? coords : Arrays.copyOf(coords, count);
+    }
+
+    /**
+     * Estimate number of points in branch string by counting opening brackets
+     */
+    private static int estimatePoints(String branch) {
+        int brackets = 0;
+        for (int i = 0; i < branch.length(); i++) {
+            if (branch.charAt(i) == '[') {
+                brackets++;
+            }
+        }
+        return Math.max(0, brackets - 2);
+    }
+
+    private static int endOfNumber(String s, int start) {
+        int i = start;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E') {
+                i++;
+            }
+            else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Parse decimal number in s[start, end).  Plain decimals whose digits fit in 53 bits
+     * are converted without allocation; anything else falls back to Double.parseDouble.
+     */
+    private static double parseNumber(String s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (s.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                seenDigit = true;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(s.substring(start, end));
+                }
+            }
+            else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            }
+            else {
+                return Double.parseDouble(s.substring(start, end));
+            }
+        }
+
+        if (!seenDigit || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(s.substring(start, end));
+        }
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
 }
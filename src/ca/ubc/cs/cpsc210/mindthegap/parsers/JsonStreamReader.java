@@ -0,0 +1,451 @@
+package ca.ubc.cs.cpsc210.mindthegap.parsers;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull parser that reads JSON one token at a time from a character stream.  Unlike org.json,
+ * no object tree is built: callers walk the document with beginObject/nextName/endObject etc.
+ * and skip whatever they do not need with skipValue, which consumes input without allocating.
+ */
+class JsonStreamReader {
+    /** kinds of token that can be produced by peek */
+    enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_DEPTH = 64;
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+
+    /** scratch space holding the characters of the most recent string or number */
+    private char[] scratch = new char[64];
+    private int scratchLen;
+
+    /** nesting stack: true for object scopes, false for array scopes */
+    private final boolean[] inObject = new boolean[MAX_DEPTH];
+    /** whether the next element in the scope at the same depth will need a preceding comma */
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    /** whether the scope at the same depth is expecting a value after a name */
+    private final boolean[] expectingValue = new boolean[MAX_DEPTH];
+    private int depth;
+
+    /**
+     * Constructs a reader that pulls tokens from given character stream
+     *
+     * @param in  stream from which JSON text is read
+     */
+    JsonStreamReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Get kind of next token without consuming it
+     *
+     * @return  kind of next token
+     * @throws JSONException  when input is not well-formed JSON
+     */
+    Token peek() throws JSONException {
+        int c = nextNonWhitespace();
+
+        if (depth > 0) {
+            if (inObject[depth - 1] && !expectingValue[depth - 1]) {
+                if (c == '}') return Token.END_OBJECT;
+                if (needsComma[depth - 1]) {
+                    if (c != ',') throw syntaxError("Expected ',' or '}'");
+                    pos++;
+                    needsComma[depth - 1] = false;
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') throw syntaxError("Expected name");
+                return Token.NAME;
+            }
+            if (!inObject[depth - 1]) {
+                if (c == ']') return Token.END_ARRAY;
+                if (needsComma[depth - 1]) {
+                    if (c != ',') throw syntaxError("Expected ',' or ']'");
+                    pos++;
+                    needsComma[depth - 1] = false;
+                    c = nextNonWhitespace();
+                }
+            }
+        }
+
+        switch (c) {
+            case -1: return Token.END_DOCUMENT;
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't': case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return Token.NUMBER;
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Determine if current object or array has another element
+     *
+     * @return  true if there is another name/value pair or array element
+     * @throws JSONException  when input is not well-formed JSON
+     */
+    boolean hasNext() throws JSONException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    void beginObject() throws JSONException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        push(true);
+    }
+
+    void endObject() throws JSONException {
+        expect(Token.END_OBJECT);
+        pos++;
+        pop();
+    }
+
+    void beginArray() throws JSONException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        push(false);
+    }
+
+    void endArray() throws JSONException {
+        expect(Token.END_ARRAY);
+        pos++;
+        pop();
+    }
+
+    /**
+     * Consume next name in current object
+     *
+     * @return  the name
+     * @throws JSONException  when next token is not a name
+     */
+    String nextName() throws JSONException {
+        readName();
+        return new String(scratch, 0, scratchLen);
+    }
+
+    /**
+     * Consume next name in current object and match it against given candidates without
+     * allocating a string.
+     *
+     * @param names  candidate names
+     * @return  index of matching candidate or -1 if name matches none of the candidates
+     * @throws JSONException  when next token is not a name
+     */
+    int selectName(String[] names) throws JSONException {
+        readName();
+        for (int i = 0; i < names.length; i++) {
+            if (scratchMatches(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Consume next value as a string; numbers and booleans are produced in their textual form.
+     *
+     * @return  the string value
+     * @throws JSONException  when next value is not a string, number or boolean
+     */
+    String nextString() throws JSONException {
+        Token t = peek();
+        if (t == Token.STRING) {
+            readString();
+        }
+        else if (t == Token.NUMBER || t == Token.BOOLEAN) {
+            readLiteral();
+        }
+        else {
+            throw syntaxError("Expected string but was " + t);
+        }
+        valueConsumed();
+        return new String(scratch, 0, scratchLen);
+    }
+
+    /**
+     * Consume next value as a double; strings holding a number are accepted.
+     *
+     * @return  the double value
+     * @throws JSONException  when next value cannot be read as a number
+     */
+    double nextDouble() throws JSONException {
+        readNumeric();
+        try {
+            return Double.parseDouble(new String(scratch, 0, scratchLen));
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected number");
+        }
+    }
+
+    /**
+     * Consume next value as an int; strings holding a number are accepted and fractional
+     * parts are truncated.
+     *
+     * @return  the int value
+     * @throws JSONException  when next value cannot be read as a number
+     */
+    int nextInt() throws JSONException {
+        readNumeric();
+        long result = 0;
+        boolean negative = false;
+        int i = 0;
+        if (scratchLen > 0 && scratch[0] == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == scratchLen) throw syntaxError("Expected number");
+        for (; i < scratchLen; i++) {
+            char c = scratch[i];
+            if (c >= '0' && c <= '9') {
+                result = result * 10 + (c - '0');
+                if (result > Integer.MAX_VALUE + 1L) throw syntaxError("Number out of range");
+            }
+            else if (c == '.' || c == 'e' || c == 'E') {
+                try {
+                    return (int) Double.parseDouble(new String(scratch, 0, scratchLen));
+                } catch (NumberFormatException e) {
+                    throw syntaxError("Expected number");
+                }
+            }
+            else {
+                throw syntaxError("Expected number");
+            }
+        }
+        return (int) (negative ? -result : result);
+    }
+
+    /**
+     * Consume a null literal
+     *
+     * @throws JSONException  when next value is not null
+     */
+    void nextNull() throws JSONException {
+        expect(Token.NULL);
+        readLiteral();
+        valueConsumed();
+    }
+
+    /**
+     * Skip next value (including nested objects and arrays) without allocating
+     *
+     * @throws JSONException  when input is not well-formed JSON
+     */
+    void skipValue() throws JSONException {
+        int startDepth = depth;
+        do {
+            Token t = peek();
+            switch (t) {
+                case BEGIN_OBJECT: beginObject(); break;
+                case BEGIN_ARRAY: beginArray(); break;
+                case END_OBJECT: endObject(); break;
+                case END_ARRAY: endArray(); break;
+                case NAME: skipName(); break;
+                case STRING: skipString(); valueConsumed(); break;
+                case NUMBER: case BOOLEAN: case NULL: readLiteral(); valueConsumed(); break;
+                default: throw syntaxError("Unexpected end of input");
+            }
+        } while (depth > startDepth);
+    }
+
+    /**
+     * Release underlying stream
+     */
+    void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // nothing further to read, so nothing to recover
+        }
+    }
+
+    private void readNumeric() throws JSONException {
+        Token t = peek();
+        if (t == Token.NUMBER) {
+            readLiteral();
+        }
+        else if (t == Token.STRING) {
+            readString();
+        }
+        else {
+            throw syntaxError("Expected number but was " + t);
+        }
+        valueConsumed();
+    }
+
+    private void readName() throws JSONException {
+        expect(Token.NAME);
+        readString();
+        if (nextNonWhitespace() != ':') throw syntaxError("Expected ':'");
+        pos++;
+        expectingValue[depth - 1] = true;
+    }
+
+    private void skipName() throws JSONException {
+        skipString();
+        if (nextNonWhitespace() != ':') throw syntaxError("Expected ':'");
+        pos++;
+        expectingValue[depth - 1] = true;
+    }
+
+    /**
+     * Read quoted string at current position into scratch buffer, decoding escapes
+     */
+    private void readString() throws JSONException {
+        pos++;  // opening quote
+        scratchLen = 0;
+        while (true) {
+            if (pos == limit && !fill()) throw syntaxError("Unterminated string");
+            char c = buf[pos++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = readEscape();
+            }
+            appendScratch(c);
+        }
+    }
+
+    private void skipString() throws JSONException {
+        pos++;  // opening quote
+        while (true) {
+            if (pos == limit && !fill()) throw syntaxError("Unterminated string");
+            char c = buf[pos++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                readEscape();
+            }
+        }
+    }
+
+    private char readEscape() throws JSONException {
+        if (pos == limit && !fill()) throw syntaxError("Unterminated escape");
+        char c = buf[pos++];
+        switch (c) {
+            case 'b': return '\b';
+            case 't': return '\t';
+            case 'n': return '\n';
+            case 'f': return '\f';
+            case 'r': return '\r';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos == limit && !fill()) throw syntaxError("Unterminated escape");
+                    int digit = Character.digit(buf[pos++], 16);
+                    if (digit < 0) throw syntaxError("Malformed unicode escape");
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                return c;
+        }
+    }
+
+    /**
+     * Read unquoted literal (number, true, false or null) at current position into scratch buffer
+     */
+    private void readLiteral() throws JSONException {
+        scratchLen = 0;
+        while (pos < limit || fill()) {
+            char c = buf[pos];
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c <= ' ') {
+                break;
+            }
+            appendScratch(c);
+            pos++;
+        }
+    }
+
+    private void appendScratch(char c) {
+        if (scratchLen == scratch.length) {
+            char[] larger = new char[scratch.length * 2];
+            System.arraycopy(scratch, 0, larger, 0, scratchLen);
+            scratch = larger;
+        }
+        scratch[scratchLen++] = c;
+    }
+
+    private boolean scratchMatches(String s) {
+        if (s.length() != scratchLen) return false;
+        for (int i = 0; i < scratchLen; i++) {
+            if (s.charAt(i) != scratch[i]) return false;
+        }
+        return true;
+    }
+
+    private void expect(Token expected) throws JSONException {
+        Token t = peek();
+        if (t != expected) {
+            throw syntaxError("Expected " + expected + " but was " + t);
+        }
+    }
+
+    private void push(boolean object) throws JSONException {
+        if (depth > 0) {
+            valueConsumed();
+        }
+        if (depth == MAX_DEPTH) throw syntaxError("Nesting too deep");
+        inObject[depth] = object;
+        needsComma[depth] = false;
+        expectingValue[depth] = false;
+        depth++;
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    /**
+     * Record that a value has been consumed in current scope
+     */
+    private void valueConsumed() {
+        if (depth > 0) {
+            needsComma[depth - 1] = true;
+            expectingValue[depth - 1] = false;
+        }
+    }
+
+    private int nextNonWhitespace() throws JSONException {
+        while (pos < limit || fill()) {
+            char c = buf[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            }
+            else {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fill() throws JSONException {
+        try {
+            int read = in.read(buf, 0, buf.length);
+            if (read <= 0) {
+                return false;
+            }
+            pos = 0;
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    private JSONException syntaxError(String msg) {
+        return new JSONException(msg + " at depth " + depth);
+    }
+}
@@ -0,0 +1,71 @@
+package ca.ubc.cs.cpsc210.mindthegap.parsers;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+
+/**
+ * Outcome of loading a single line: the line (or the error that prevented it from loading)
+ * together with the time spent reading and parsing its data.
+ */
+public class LineLoadResult {
+    private static final double NANOS_PER_MILLI = 1e6;
+    private LineResourceData lmd;
+    private Line line;
+    private Exception error;
+    private long readNanos;
+    private long parseNanos;
+
+    /**
+     * Constructs result of loading a line
+     *
+     * @param lmd         resource data for line
+     * @param line        the line loaded (null if line could not be loaded)
+     * @param error       error that prevented line from loading (null if line was loaded)
+     * @param readNanos   time spent reading line data, in nanoseconds
+     * @param parseNanos  time spent parsing line data, in nanoseconds
+     */
+    public LineLoadResult(LineResourceData lmd, Line line, Exception error, long readNanos, long parseNanos) {
+        this.lmd = lmd;
+        this.line = line;
+        this.error = error;
+        this.readNanos = readNanos;
+        this.parseNanos = parseNanos;
+    }
+
+    public LineResourceData getResourceData() {
+        return lmd;
+    }
+
+    /**
+     * Get line that was loaded
+     *
+     * @return  the line, or null if line could not be loaded
+     */
+    public Line getLine() {
+        return line;
+    }
+
+    /**
+     * Get error that prevented line from loading
+     *
+     * @return  the error, or null if line was loaded
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s (read %.1f ms, parse %.1f ms)", lmd,
+                line != null ? line.getStations().size() + " stations" : "failed",
+                readNanos / NANOS_PER_MILLI, parseNanos / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,125 @@
+package ca.ubc.cs.cpsc210.mindthegap.parsers;
+
+import ca.ubc.cs.cpsc210.mindthegap.TfL.DataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.TfL.StreamingDataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.StationManager;
+
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads lines in parallel: each line's data is read and parsed on a pool of worker threads (one per
+ * core, at most one per line).  Stations shared between lines are shared through
+ * StationManager.getOrCreateStation while parsing; each line is then merged into the station manager
+ * on the calling thread as soon as it has been parsed, so the station manager itself is only ever
+ * modified by one thread.
+ */
+public abstract class ParallelLineLoader {
+
+    /**
+     * Load given lines, adding the stations on every line that loads to the station manager.
+     * Blocks until all lines have been loaded or have failed.
+     *
+     * @param lmds  resource data for the lines to load
+     * @return  result for each line, in the same order as lmds
+     */
+    public List<LineLoadResult> loadLines(Collection<LineResourceData> lmds) {
+        List<LineLoadResult> results = new ArrayList<LineLoadResult>();
+        if (lmds.isEmpty()) {
+            return results;
+        }
+
+        int numThreads = Math.min(lmds.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        CompletionService<LineLoadResult> completion = new ExecutorCompletionService<LineLoadResult>(pool);
+        Map<LineResourceData, LineLoadResult> byLine = new EnumMap<LineResourceData, LineLoadResult>(LineResourceData.class);
+
+        try {
+            for (final LineResourceData lmd : lmds) {
+                completion.submit(new Callable<LineLoadResult>() {
+                    @Override
+                    public LineLoadResult call() {
+                        return loadLine(lmd);
+                    }
+                });
+            }
+
+            StationManager stnManager = StationManager.getInstance();
+            for (int i = 0; i < lmds.size(); i++) {
+                LineLoadResult result = completion.take().get();
+                if (result.getLine() != null) {
+                    stnManager.addStationsOnLine(result.getLine());
+                }
+                byLine.put(result.getResourceData(), result);
+                onLineLoaded(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // loadLine catches everything it can, so only an Error can get here
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (LineResourceData lmd : lmds) {
+            if (byLine.containsKey(lmd)) {
+                results.add(byLine.get(lmd));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Read and parse a single line (runs on a worker thread).  Data from a streaming provider is
+     * parsed as it is read, in which case reading and parsing overlap: the read time recorded is
+     * the time taken to open the source and the parse time is the rest.
+     *
+     * @param lmd  resource data for line to load
+     * @return  result of loading line
+     */
+    private LineLoadResult loadLine(LineResourceData lmd) {
+        long start = System.nanoTime();
+        long readNanos = 0;
+
+        try {
+            DataProvider dataProvider = getDataProvider(lmd);
+            Line line;
+            if (dataProvider instanceof StreamingDataProvider) {
+                Reader lineData = ((StreamingDataProvider) dataProvider).dataSourceToReader();
+                readNanos = System.nanoTime() - start;
+                line = TfLLineParser.parseLine(lmd, lineData);
+            }
+            else {
+                String lineData = dataProvider.dataSourceToString();
+                readNanos = System.nanoTime() - start;
+                line = TfLLineParser.parseLine(lmd, lineData);
+            }
+            return new LineLoadResult(lmd, line, null, readNanos, System.nanoTime() - start - readNanos);
+        } catch (Exception e) {
+            long elapsed = System.nanoTime() - start;
+            return new LineLoadResult(lmd, null, e, readNanos == 0 ? elapsed : readNanos,
+                    readNanos == 0 ? 0 : elapsed - readNanos);
+        }
+    }
+
+    /**
+     * Called on the thread that called loadLines, after each line has been loaded (or has failed)
+     * and, if it loaded, been merged into the station manager.  Does nothing by default.
+     *
+     * @param result  result of loading line
+     */
+    protected void onLineLoaded(LineLoadResult result) {
+    }
+
+    /**
+     * Get provider for data for given line.  May be called from several worker threads at once.
+     *
+     * @param lmd  resource data for line
+     * @return  data provider for line
+     */
+    protected abstract DataProvider getDataProvider(LineResourceData lmd);
+}
@@ -0,0 +1,146 @@
+package ca.ubc.cs.cpsc210.mindthegap.parsers;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLArrivalsDataMissingException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Arrivals parsed from a TfL arrivals response (see TfLArrivalsParser.readArrivals) that have not
+ * yet been merged into their stations' arrival boards.  Parsing touches no station, so it can be
+ * done on a background thread as the response is downloaded; only merge must be called on the
+ * thread that owns the arrival boards (the UI thread).
+ */
+public class ParsedArrivals {
+    private Map<Station, StationArrivals> arrivalsByStn;
+    private boolean dataMissing;
+
+    /**
+     * Constructs empty set of arrivals for given stations
+     *
+     * @param stns  stations queried
+     */
+    ParsedArrivals(Collection<Station> stns) {
+        arrivalsByStn = new LinkedHashMap<Station, StationArrivals>();
+        for (Station next : stns) {
+            arrivalsByStn.put(next, new StationArrivals());
+        }
+        dataMissing = false;
+    }
+
+    /**
+     * Add arrival at given station (one of the stations queried), on given line
+     */
+    void add(Station stn, Line line, Arrival arrival) {
+        StationArrivals stnArrivals = arrivalsByStn.get(stn);
+        stnArrivals.lines.add(line);
+        stnArrivals.arrivals.add(arrival);
+    }
+
+    /**
+     * Record that every arrival in the response was missing expected data
+     */
+    void setDataMissing() {
+        dataMissing = true;
+    }
+
+    /**
+     * Get stations queried
+     *
+     * @return  stations queried, in the order given to the parser
+     */
+    public List<Station> getStations() {
+        return new ArrayList<Station>(arrivalsByStn.keySet());
+    }
+
+    /**
+     * Get number of arrivals parsed for given station
+     *
+     * @param stn  the station
+     * @return  number of arrivals parsed for station (0 if station was not queried)
+     */
+    public int getArrivalCount(Station stn) {
+        StationArrivals stnArrivals = arrivalsByStn.get(stn);
+        return stnArrivals == null ? 0 : stnArrivals.arrivals.size();
+    }
+
+    /**
+     * Determine if every arrival in the response was missing expected data
+     *
+     * @return  true if no arrival in the response had all expected data
+     */
+    public boolean isDataMissing() {
+        return dataMissing;
+    }
+
+    /**
+     * Merge arrivals into the arrival boards already at each station queried, as in
+     * TfLArrivalsParser.mergeArrivals: arrivals are matched to those already at the station by
+     * prediction id and updated in place, new arrivals are added and arrivals no longer predicted are
+     * removed.  Must be called on the thread that owns the stations' arrival boards.
+     *
+     * @return  changes made to arrival boards of each station, in the order stations were queried
+     * @throws TfLArrivalsDataMissingException  when all arrivals in the response were missing expected
+     * data (all arrivals are then removed from all stations queried)
+     */
+    public Map<Station, ArrivalsChangeSet> merge() throws TfLArrivalsDataMissingException {
+        Map<Station, ArrivalsChangeSet> changes = new LinkedHashMap<Station, ArrivalsChangeSet>();
+        for (Map.Entry<Station, StationArrivals> next : arrivalsByStn.entrySet()) {
+            Station stn = next.getKey();
+            stn.beginArrivalsUpdate();
+            next.getValue().addTo(stn);
+            changes.put(stn, stn.endArrivalsUpdate());
+        }
+
+        if (dataMissing) {
+            throw new TfLArrivalsDataMissingException("All arrivals missing expected data component");
+        }
+        return changes;
+    }
+
+    /**
+     * Add arrivals to arrival boards at each station queried, without matching them to arrivals
+     * already there (as in TfLArrivalsParser.parseArrivals)
+     *
+     * @throws TfLArrivalsDataMissingException  when all arrivals in the response were missing expected data
+     */
+    void addToStations() throws TfLArrivalsDataMissingException {
+        for (Map.Entry<Station, StationArrivals> next : arrivalsByStn.entrySet()) {
+            next.getValue().addTo(next.getKey());
+        }
+
+        if (dataMissing) {
+            throw new TfLArrivalsDataMissingException("All arrivals missing expected data component");
+        }
+    }
+
+    @Override
+    public String toString() {
+        int count = 0;
+        for (StationArrivals next : arrivalsByStn.values()) {
+            count += next.arrivals.size();
+        }
+        return count + " arrivals at " + arrivalsByStn.size() + " stations" + (dataMissing ? " (data missing)" : "");
+    }
+
+    /**
+     * Arrivals parsed for one station, with the line of each
+     */
+    private static class StationArrivals {
+        private List<Line> lines = new ArrayList<Line>();
+        private List<Arrival> arrivals = new ArrayList<Arrival>();
+
+        void addTo(Station stn) {
+            for (int i = 0; i < arrivals.size(); i++) {
+                stn.addArrival(lines.get(i), arrivals.get(i));
+            }
+        }
+    }
+}
@@ -28,4 +28,80 @@ abstract class TfLAbstractParser {
         }
         return shortName;
     }
+
+    /**
+     * Parse time in the ISO 8601 form used by TfL, "yyyy-MM-ddTHH:mm:ss" followed by an optional
+     * fraction of a second (of any number of digits) and "Z".  So,
+     * - parseTime("1970-01-01T00:00:01.5Z") produces 1500
+     *
+     * @param time  the time
+     *
+     * @return time in milliseconds since the epoch, or -1 if time is not of expected form
+     */
+    static long parseTime(String time) {
+        if (time.length() < 20 || time.charAt(4) != '-' || time.charAt(7) != '-' || time.charAt(10) != 'T'
+                || time.charAt(13) != ':' || time.charAt(16) != ':' || time.charAt(time.length() - 1) != 'Z') {
+            return -1;
+        }
+
+        int year = parseDigits(time, 0, 4);
+        int month = parseDigits(time, 5, 7);
+        int day = parseDigits(time, 8, 10);
+        int hour = parseDigits(time, 11, 13);
+        int min = parseDigits(time, 14, 16);
+        int sec = parseDigits(time, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || min < 0 || min > 59 || sec < 0 || sec > 60) {
+            return -1;
+        }
+
+        int millis = 0;
+        int end = time.length() - 1;
+        if (end > 19) {
+            if (time.charAt(19) != '.' || end == 20) {
+                return -1;
+            }
+            int fraction = parseDigits(time, 20, Math.min(end, 23));
+            if (fraction < 0 || (end > 23 && parseDigits(time, 23, end) < 0)) {
+                return -1;
+            }
+            for (int i = Math.min(end, 23); i < 23; i++) {
+                fraction *= 10;
+            }
+            millis = fraction;
+        }
+        else if (end != 19) {
+            return -1;
+        }
+
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + min) * 60000L + sec * 1000L + millis;
+    }
+
+    /**
+     * Parse decimal digits in s from index start (inclusive) to end (exclusive); produce -1 if any is not a digit
+     */
+    private static int parseDigits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Number of days from 1970-01-01 to given date in the proleptic Gregorian calendar
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
 }
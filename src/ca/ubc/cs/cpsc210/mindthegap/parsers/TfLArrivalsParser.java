@@ -1,19 +1,43 @@
 package ca.ubc.cs.cpsc210.mindthegap.parsers;
 
 import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
 import ca.ubc.cs.cpsc210.mindthegap.model.Line;
 import ca.ubc.cs.cpsc210.mindthegap.model.Station;
 import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLArrivalsDataMissingException;
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
- * A parser for the data returned by the TfL station arrivals query
+ * A parser for the data returned by the TfL station arrivals query.  Predictions are read
+ * as a stream of tokens and only the fields needed to build an Arrival are decoded.
+ *
+ * The expected time of arrival of each Arrival is held on the local clock, anchored to the time at
+ * which the response was received (taken to be the time at which parsing started).  The server's
+ * clock may differ from the device's, so server times are only ever used as differences: the
+ * arrival is expected expectedArrival - timestamp after the response was received or, if either
+ * element is missing, timeToStation seconds after it was received.
  */
 public class TfLArrivalsParser extends TfLAbstractParser {
+    private static final String[] ARRIVAL_FIELDS =
+            { "timeToStation", "platformName", "lineId", "destinationName", "towards", "id",
+              "expectedArrival", "timestamp", "naptanId" };
+    private static final int TIME_TO_STATION = 0;
+    private static final int PLATFORM_NAME = 1;
+    private static final int LINE_ID = 2;
+    private static final int DESTINATION_NAME = 3;
+    private static final int TOWARDS = 4;
+    private static final int ID = 5;
+    private static final int EXPECTED_ARRIVAL = 6;
+    private static final int TIMESTAMP = 7;
+    private static final int NAPTAN_ID = 8;
 
     /**
      * Parse arrivals from JSON response produced by TfL query.  All parsed arrivals are
@@ -34,51 +58,282 @@ public class TfLArrivalsParser extends TfLAbstractParser {
      */
     public static void parseArrivals(Station stn, String jsonResponse)
             throws JSONException, TfLArrivalsDataMissingException {
-        JSONArray arrivals = new JSONArray(jsonResponse);
+        parseArrivals(stn, new StringReader(jsonResponse));
+    }
+
+    /**
+     * Parse arrivals from stream of JSON data produced by TfL query, with the same semantics as
+     * parseArrivals(Station, String).  The stream is consumed incrementally and closed on return.
+     *
+     * @param stn             station to which parsed arrivals are to be added
+     * @param jsonStream      stream from which JSON response is read
+     * @throws JSONException  when JSON response does not have expected format or cannot be read
+     * @throws TfLArrivalsDataMissingException  when all arrivals are missing expected data
+     */
+    public static void parseArrivals(Station stn, Reader jsonStream)
+            throws JSONException, TfLArrivalsDataMissingException {
+        readArrivals(stn, jsonStream).addToStations();
+    }
+
+    /**
+     * Parse arrivals at given station from JSON response produced by TfL query, without adding them
+     * to the station: arrivals are held by the result until merged (see ParsedArrivals.merge), so
+     * this may be called on a thread other than the one that owns the station's arrival boards.
+     * Arrivals with missing data are skipped as in parseArrivals.
+     *
+     * @param stn             station whose arrivals were queried
+     * @param jsonResponse    the JSON response produced by TfL
+     * @return                arrivals parsed
+     * @throws JSONException  when JSON response does not have expected format
+     */
+    public static ParsedArrivals readArrivals(Station stn, String jsonResponse) throws JSONException {
+        return readArrivals(stn, new StringReader(jsonResponse));
+    }
+
+    /**
+     * Parse arrivals at given station from stream of JSON data produced by TfL query, with the same
+     * semantics as readArrivals(Station, String).  The stream is consumed incrementally and closed
+     * on return.
+     *
+     * @param stn             station whose arrivals were queried
+     * @param jsonStream      stream from which JSON response is read
+     * @return                arrivals parsed
+     * @throws JSONException  when JSON response does not have expected format or cannot be read
+     */
+    public static ParsedArrivals readArrivals(Station stn, Reader jsonStream) throws JSONException {
+        return readArrivals(stn, Collections.singletonList(stn), jsonStream);
+    }
+
+    /**
+     * Parse arrivals for several stations from stream of JSON data produced by a single TfL query for
+     * all of them (see TfLHttpBatchArrivalDataProvider), without adding them to the stations.  Each
+     * arrival is routed to the station identified by its naptanId element; arrivals for other
+     * stations, or on lines that do not operate through the station, are skipped as though they were
+     * missing data.  The stream is consumed incrementally and closed on return.
+     *
+     * @param stns            stations queried
+     * @param jsonStream      stream from which JSON response is read
+     * @return                arrivals parsed
+     * @throws JSONException  when JSON response does not have expected format or cannot be read
+     */
+    public static ParsedArrivals readArrivals(Collection<Station> stns, Reader jsonStream) throws JSONException {
+        return readArrivals(null, stns, jsonStream);
+    }
+
+    /**
+     * Parse arrivals either for a single station or, if stn is null, for the stations in stns
+     * (each arrival being routed to the station identified by its naptanId element).
+     */
+    private static ParsedArrivals readArrivals(Station stn, Collection<Station> stns, Reader jsonStream)
+            throws JSONException {
+        ParsedArrivals parsed = new ParsedArrivals(stns);
+        Map<String, Station> stnsById = null;
+        if (stn == null) {
+            stnsById = new HashMap<String, Station>();
+            for (Station next : stns) {
+                stnsById.put(next.getID(), next);
+            }
+        }
+
+        JsonStreamReader reader = new JsonStreamReader(jsonStream);
+        long receiveTime = System.currentTimeMillis();
+        int count = 0;
         int countMissing = 0;
 
-        for(int index = 0; index < arrivals.length(); index++) {
-            JSONObject jsonArrival = arrivals.getJSONObject(index);
-            try {
-                addArrivalToStn(stn, jsonArrival);
-            } catch(TfLArrivalsDataMissingException e) {
-                countMissing++;
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                count++;
+                if (!addArrival(parsed, stn, stnsById, reader, receiveTime)) {
+                    countMissing++;
+                }
             }
+            reader.endArray();
+        } finally {
+            reader.close();
         }
 
-        if (countMissing == arrivals.length()) {
-            throw new TfLArrivalsDataMissingException("All arrivals missing expected data component");
+        if (countMissing == count) {
+            parsed.setDataMissing();
         }
+        return parsed;
     }
 
     /**
-     * Add arrival to station
+     * Parse arrivals from JSON response produced by TfL query and merge them into the arrival boards
+     * already at given station: arrivals are matched to those already at the station by prediction id
+     * and updated in place, new arrivals are added and arrivals no longer predicted are removed
+     * (see Station.beginArrivalsUpdate).  Arrivals with missing data are skipped as in parseArrivals.
+     * Nothing is merged until the whole response has been parsed, so if JSON response cannot be
+     * parsed, the station's arrival boards are left untouched.
      *
-     * @param stn              station to which arrival is to be added
-     * @param jsonArrival      JSON object representing arrival
-     * @throws JSONException   when JSON object does not have expected format
-     * @throws TfLArrivalsDataMissingException  when expected data component is missing from JSON data
+     * @param stn             station into which parsed arrivals are to be merged
+     * @param jsonResponse    the JSON response produced by TfL
+     * @return                changes made to station's arrival boards
+     * @throws JSONException  when JSON response does not have expected format
+     * @throws TfLArrivalsDataMissingException  when all arrivals are missing expected data (all
+     * arrivals are then removed from station)
      */
-    private static void addArrivalToStn(Station stn, JSONObject jsonArrival)
+    public static ArrivalsChangeSet mergeArrivals(Station stn, String jsonResponse)
             throws JSONException, TfLArrivalsDataMissingException {
-        if (! (jsonArrival.has("timeToStation") && jsonArrival.has("platformName") && jsonArrival.has("lineId")
-                && (jsonArrival.has("destinationName") || jsonArrival.has("towards"))))
-            throw new TfLArrivalsDataMissingException("Required data missing from JSON response");
+        return mergeArrivals(stn, new StringReader(jsonResponse));
+    }
 
-        int timeToStation = jsonArrival.getInt("timeToStation");
+    /**
+     * Parse arrivals from stream of JSON data produced by TfL query and merge them into the arrival
+     * boards already at given station, with the same semantics as mergeArrivals(Station, String).
+     * The stream is consumed incrementally and closed on return.
+     *
+     * @param stn             station into which parsed arrivals are to be merged
+     * @param jsonStream      stream from which JSON response is read
+     * @return                changes made to station's arrival boards
+     * @throws JSONException  when JSON response does not have expected format or cannot be read
+     * @throws TfLArrivalsDataMissingException  when all arrivals are missing expected data
+     */
+    public static ArrivalsChangeSet mergeArrivals(Station stn, Reader jsonStream)
+            throws JSONException, TfLArrivalsDataMissingException {
+        return readArrivals(stn, jsonStream).merge().get(stn);
+    }
+
+    /**
+     * Parse arrivals for several stations from JSON response produced by a single TfL query for all
+     * of them (see TfLHttpBatchArrivalDataProvider) and merge each station's arrivals into its arrival
+     * boards, as in mergeArrivals(Station, String).  Arrivals are routed to stations as in
+     * readArrivals(Collection, Reader).
+     *
+     * @param stns            stations into which parsed arrivals are to be merged
+     * @param jsonResponse    the JSON response produced by TfL
+     * @return                changes made to arrival boards of each station
+     * @throws JSONException  when JSON response does not have expected format
+     * @throws TfLArrivalsDataMissingException  when all arrivals are missing expected data (all
+     * arrivals are then removed from all stations)
+     */
+    public static Map<Station, ArrivalsChangeSet> mergeArrivals(Collection<Station> stns, String jsonResponse)
+            throws JSONException, TfLArrivalsDataMissingException {
+        return mergeArrivals(stns, new StringReader(jsonResponse));
+    }
 
-        String destination;
-        if(jsonArrival.has("destinationName")) {
-            destination = parseName(jsonArrival.getString("destinationName"));
+    /**
+     * Parse arrivals for several stations from stream of JSON data produced by a single TfL query for
+     * all of them and merge each station's arrivals into its arrival boards, with the same semantics as
+     * mergeArrivals(Collection, String).  The stream is consumed incrementally and closed on return.
+     *
+     * @param stns            stations into which parsed arrivals are to be merged
+     * @param jsonStream      stream from which JSON response is read
+     * @return                changes made to arrival boards of each station
+     * @throws JSONException  when JSON response does not have expected format or cannot be read
+     * @throws TfLArrivalsDataMissingException  when all arrivals are missing expected data
+     */
+    public static Map<Station, ArrivalsChangeSet> mergeArrivals(Collection<Station> stns, Reader jsonStream)
+            throws JSONException, TfLArrivalsDataMissingException {
+        return readArrivals(stns, jsonStream).merge();
+    }
+
+    /**
+     * Read arrival and add it to parsed arrivals of station
+     *
+     * @param parsed           arrivals parsed so far
+     * @param stn              station to which arrival is to be added, or null if arrival is to be
+     *                         added to station in stnsById with id given by its naptanId
+     * @param stnsById         stations by id (used only if stn is null)
+     * @param reader           reader positioned at JSON object representing arrival
+     * @param receiveTime      local time at which response was received (in milliseconds since the epoch)
+     * @return                 true if arrival was added; false if expected data component is missing
+     * @throws JSONException   when JSON object does not have expected format
+     */
+    private static boolean addArrival(ParsedArrivals parsed, Station stn, Map<String, Station> stnsById,
+                                      JsonStreamReader reader, long receiveTime) throws JSONException {
+        int timeToStation = 0;
+        boolean hasTimeToStation = false;
+        String platform = null;
+        String lineId = null;
+        String destinationName = null;
+        String towards = null;
+        String id = null;
+        long expectedArrival = -1;
+        long timestamp = -1;
+        String naptanId = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(ARRIVAL_FIELDS)) {
+                case TIME_TO_STATION:
+                    timeToStation = reader.nextInt();
+                    hasTimeToStation = true;
+                    break;
+                case PLATFORM_NAME:
+                    platform = reader.nextString();
+                    break;
+                case LINE_ID:
+                    lineId = reader.nextString();
+                    break;
+                case DESTINATION_NAME:
+                    destinationName = reader.nextString();
+                    break;
+                case TOWARDS:
+                    towards = reader.nextString();
+                    break;
+                case ID:
+                    id = nextOptionalString(reader);
+                    break;
+                case EXPECTED_ARRIVAL:
+                    expectedArrival = parseOptionalTime(nextOptionalString(reader));
+                    break;
+                case TIMESTAMP:
+                    timestamp = parseOptionalTime(nextOptionalString(reader));
+                    break;
+                case NAPTAN_ID:
+                    naptanId = nextOptionalString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasTimeToStation || platform == null || lineId == null
+                || (destinationName == null && towards == null)) {
+            return false;
+        }
+
+        Line line;
+        if (stn == null) {
+            stn = naptanId == null ? null : stnsById.get(naptanId);
+            line = stn == null ? null : getLineFromId(stn, lineId);
+            if (line == null) {
+                return false;
+            }
+        }
+        else {
+            line = getLineFromId(stn, lineId);
+        }
+
+        String destination = destinationName != null ? parseName(destinationName) : towards;
+        long localArrival;
+        if (expectedArrival >= 0 && timestamp >= 0) {
+            localArrival = receiveTime + (expectedArrival - timestamp);
         }
         else {
-            destination = jsonArrival.getString("towards");
+            localArrival = receiveTime + timeToStation * 1000L;
         }
 
-        String platform = jsonArrival.getString("platformName");
-        Line line = getLineFromId(stn, jsonArrival.getString("lineId"));
+        parsed.add(stn, line, new Arrival(id, timeToStation, localArrival, destination, platform));
+        return true;
+    }
+
+    /**
+     * Read next value as a string, or produce null if it is null
+     */
+    private static String nextOptionalString(JsonStreamReader reader) throws JSONException {
+        if (reader.peek() == JsonStreamReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
 
-        stn.addArrival(line, new Arrival(timeToStation, destination, platform));
+    private static long parseOptionalTime(String time) {
+        return time == null ? -1 : parseTime(time);
     }
 
     /**
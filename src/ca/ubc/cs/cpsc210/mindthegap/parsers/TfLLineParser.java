@@ -3,20 +3,41 @@ package ca.ubc.cs.cpsc210.mindthegap.parsers;
 import ca.ubc.cs.cpsc210.mindthegap.model.*;
 import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLLineDataMissingException;
 import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * A parser for the data returned by TFL line route query
+ * A parser for the data returned by TFL line route query.  Data is read as a stream of tokens:
+ * only lineId, lineName, lineStrings and stopPointSequences are decoded, all other elements
+ * are skipped without being materialised.
  */
 public class TfLLineParser extends TfLAbstractParser {
+    private static final String[] ROOT_FIELDS = { "lineName", "lineId", "lineStrings", "stopPointSequences" };
+    private static final int LINE_NAME = 0;
+    private static final int LINE_ID = 1;
+    private static final int LINE_STRINGS = 2;
+    private static final int STOP_POINT_SEQUENCES = 3;
+
+    private static final String[] SEQUENCE_FIELDS = { "stopPoint" };
+
+    private static final String[] STOP_POINT_FIELDS = { "name", "lat", "lon", "stationId" };
+    private static final int NAME = 0;
+    private static final int LAT = 1;
+    private static final int LON = 2;
+    private static final int STATION_ID = 3;
 
     /**
-     * Parse line from JSON response produced by TfL.  No stations added to line if TfLLineDataMissingException
-     * is thrown.
+     * Parse line from JSON response produced by TfL.  No stations are created (or added to the line)
+     * if TfLLineDataMissingException is thrown.
      *
      * @param lmd              line meta-data
+     * @param jsonResponse     the JSON response produced by TfL
      * @return                 line parsed from TfL data
      * @throws JSONException   when JSON data does not have expected format
      * @throws TfLLineDataMissingException when
@@ -31,134 +52,250 @@ public class TfLLineParser extends TfLAbstractParser {
      */
     public static Line parseLine(LineResourceData lmd, String jsonResponse)
             throws JSONException, TfLLineDataMissingException {
-        JSONObject rootJSON = new JSONObject(jsonResponse);
+        return parseLine(lmd, new StringReader(jsonResponse));
+    }
+
+    /**
+     * Parse line from stream of JSON data produced by TfL, with the same semantics as
+     * parseLine(LineResourceData, String).  The stream is consumed incrementally and closed on return.
+     *
+     * @param lmd              line meta-data
+     * @param jsonStream       stream from which JSON data produced by TfL is read
+     * @return                 line parsed from TfL data
+     * @throws JSONException   when JSON data does not have expected format or cannot be read
+     * @throws TfLLineDataMissingException  when JSON data is missing expected element
+     */
+    public static Line parseLine(LineResourceData lmd, Reader jsonStream)
+            throws JSONException, TfLLineDataMissingException {
+        JsonStreamReader reader = new JsonStreamReader(jsonStream);
+        String lineName = null;
+        String lineId = null;
+        List<Branch> branches = null;
+        Map<String, StopPoint> stopPoints = new LinkedHashMap<String, StopPoint>();
+        List<List<String>> sequences = null;
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.selectName(ROOT_FIELDS)) {
+                    case LINE_NAME:
+                        lineName = reader.nextString();
+                        break;
+                    case LINE_ID:
+                        lineId = reader.nextString();
+                        break;
+                    case LINE_STRINGS:
+                        branches = readBranches(reader);
+                        break;
+                    case STOP_POINT_SEQUENCES:
+                        sequences = readSequences(reader, stopPoints);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
 
-        if (!(rootJSON.has("lineName") && rootJSON.has("lineId"))) {
+        if (lineName == null || lineId == null) {
             throw new TfLLineDataMissingException("JSON data missing required data elements");
         }
+        if (branches == null) {
+            throw new TfLLineDataMissingException("Required data missing from JSON response");
+        }
+        if (sequences == null) {
+            throw new TfLLineDataMissingException("stopPointSequences missing from JSON response");
+        }
 
-        String lineName = rootJSON.getString("lineName");
-        String lineId = rootJSON.getString("lineId");
-        Line tubeLine = new Line(lmd, lineId, lineName);
+        // line is complete, so its stations can now be shared with other lines
+        StationManager stnManager = StationManager.getInstance();
+        Map<String, Station> stns = new LinkedHashMap<String, Station>();
+        for (StopPoint next : stopPoints.values()) {
+            stns.put(next.id, stnManager.getOrCreateStation(next.id, next.name, next.locn));
+        }
 
-        addBranches(rootJSON, tubeLine);
-        addStations(rootJSON, tubeLine);
+        Line tubeLine = new Line(lmd, lineId, lineName);
+        for (Branch next : branches) {
+            tubeLine.addBranch(next);
+        }
+        for (List<String> next : sequences) {
+            if (!next.isEmpty()) {
+                List<Station> sequence = new ArrayList<Station>(next.size());
+                for (String id : next) {
+                    sequence.add(stns.get(id));
+                }
+                tubeLine.addStopSequence(sequence);
+            }
+        }
 
         return tubeLine;
     }
 
     /**
-     * Add stations parsed from JSON response to a given line
+     * Read stop points from all stop point sequences.  Stop points are collected rather than turned
+     * into stations so that no station is created, shared with other lines or attached to the line
+     * when a sequence is found to be missing data.  Stop points with missing data are left out of
+     * their sequence.
      *
-     * @param rootJSON        the JSON response produced by TfL query
-     * @param tubeLine        the line to which stations are to be added
+     * @param reader          reader positioned at stopPointSequences array
+     * @param stopPoints      map (by station id) to which each stop point read is added
+     * @return                station ids in each sequence, in order
      * @throws JSONException  when JSON data does not have expected format
      * @throws TfLLineDataMissingException  when JSON data is missing expected element (for stopPointSequences
      * data, exception thrown if ANY ONE of the sequences is completely missing data)
      */
-    private static void addStations(JSONObject rootJSON, Line tubeLine)
+    private static List<List<String>> readSequences(JsonStreamReader reader, Map<String, StopPoint> stopPoints)
             throws JSONException, TfLLineDataMissingException {
-        if (!rootJSON.has("stopPointSequences")) {
-            throw new TfLLineDataMissingException("stopPointSequences missing from JSON response");
-        }
+        List<List<String>> sequences = new ArrayList<List<String>>();
 
-        JSONArray sequences = rootJSON.getJSONArray("stopPointSequences");
-
-        try {
-            for (int index = 0; index < sequences.length(); index++) {
-                JSONObject sequence = sequences.getJSONObject(index);
-                addSequenceToLine(sequence, tubeLine);
-            }
-        } catch(TfLLineDataMissingException e) {
-            tubeLine.clearStations();
-            throw e;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            List<String> ids = new ArrayList<String>();
+            readSequence(reader, stopPoints, ids);
+            sequences.add(ids);
         }
+        reader.endArray();
+
+        return sequences;
     }
 
     /**
-     * Add sequence of stop points to line
+     * Read sequence of stop points
      *
-     * @param sequence        JSON object containing sequence of stop points
-     * @param tubeLine        line to which sequence of stop points is to be added
+     * @param reader          reader positioned at a stop point sequence object
+     * @param stopPoints      map (by station id) to which each stop point read is added
+     * @param ids             list to which station ids in sequence are to be appended
      * @throws JSONException  when JSON data does not have expected format
      * @throws TfLLineDataMissingException  when JSON data is missing expected element (for stopPoint
      * data, exception thrown only if ALL stopPoints have missing data)
      */
-    private static void addSequenceToLine(JSONObject sequence, Line tubeLine)
+    private static void readSequence(JsonStreamReader reader, Map<String, StopPoint> stopPoints, List<String> ids)
             throws JSONException, TfLLineDataMissingException {
-        if (!sequence.has("stopPoint")) {
+        boolean hasStopPoints = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.selectName(SEQUENCE_FIELDS) == 0) {
+                hasStopPoints = true;
+                readStopPoints(reader, stopPoints, ids);
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasStopPoints) {
             throw new TfLLineDataMissingException("stopPoint array missing from stopPointSequences");
         }
+    }
 
+    private static void readStopPoints(JsonStreamReader reader, Map<String, StopPoint> stopPoints, List<String> ids)
+            throws JSONException, TfLLineDataMissingException {
+        int count = 0;
         int countMissing = 0;
-        JSONArray stopPoints = sequence.getJSONArray("stopPoint");
 
-        for(int index = 0; index < stopPoints.length(); index++) {
-            JSONObject stopPoint = stopPoints.getJSONObject(index);
-            try {
-                addStationToLine(tubeLine, stopPoint);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            count++;
+            StopPoint stopPoint = readStopPoint(reader);
+            if (stopPoint != null) {
+                if (!stopPoints.containsKey(stopPoint.id)) {
+                    stopPoints.put(stopPoint.id, stopPoint);
+                }
+                ids.add(stopPoint.id);
             }
-            catch(TfLLineDataMissingException e) {
+            else {
                 countMissing++;
             }
         }
+        reader.endArray();
 
-        if (countMissing == stopPoints.length()) {
+        if (countMissing == count) {
             throw new TfLLineDataMissingException("All stations missing required data");
         }
     }
 
     /**
-     * Add stations to line
+     * Read stop point
      *
-     * @param tubeLine        line to which stations are to be added
-     * @param jsonStation     JSOn object representing station (stop point)
+     * @param reader          reader positioned at a stop point object
+     * @return                stop point read, or null if required data is missing from stop point
      * @throws JSONException  when JSON data does not have expected format
-     * @throws TfLLineDataMissingException  when JSON data is missing expected element
      */
-    private static void addStationToLine(Line tubeLine, JSONObject jsonStation)
-            throws JSONException, TfLLineDataMissingException {
-        if (!(jsonStation.has("name") && jsonStation.has("lat") && jsonStation.has("lon")
-                && jsonStation.has("stationId"))) {
-            throw new TfLLineDataMissingException("Required data missing from stopPoint");
-        }
+    private static StopPoint readStopPoint(JsonStreamReader reader) throws JSONException {
+        String fullName = null;
+        String id = null;
+        double lat = 0;
+        double lon = 0;
+        boolean hasLat = false;
+        boolean hasLon = false;
 
-        String fullName = jsonStation.getString("name");
-        String shortName = parseName(fullName);
-        double lat = jsonStation.getDouble("lat");
-        double lon = jsonStation.getDouble("lon");
-        String id = jsonStation.getString("stationId");
-        LatLon locn = new LatLon(lat, lon);
-
-        Station lookup = StationManager.getInstance().getStationWithId(id);
-        if(lookup != null) {
-            tubeLine.addStation(lookup);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(STOP_POINT_FIELDS)) {
+                case NAME:
+                    fullName = reader.nextString();
+                    break;
+                case LAT:
+                    lat = reader.nextDouble();
+                    hasLat = true;
+                    break;
+                case LON:
+                    lon = reader.nextDouble();
+                    hasLon = true;
+                    break;
+                case STATION_ID:
+                    id = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
         }
-        else {
-            tubeLine.addStation(new Station(id, shortName, locn));
+        reader.endObject();
+
+        if (fullName == null || id == null || !hasLat || !hasLon) {
+            return null;
         }
+
+        return new StopPoint(id, parseName(fullName), new LatLon(lat, lon));
     }
 
     /**
-     * Add branches to tube line
+     * Read branches from lineStrings array
      *
-     * @param rootJSON        the JSON object that contains the branch data
-     * @param tubeLine        the line to which branches are to be added
+     * @param reader          reader positioned at lineStrings array
+     * @return                branches parsed from line strings
      * @throws JSONException  when JSON data does not have expected format
-     * @throws TfLLineDataMissingException  when JSON data is missing expected element
      */
-    private static void addBranches(JSONObject rootJSON, Line tubeLine)
-            throws JSONException, TfLLineDataMissingException {
-        if (!rootJSON.has("lineStrings")) {
-            throw new TfLLineDataMissingException("Required data missing from JSON response");
+    private static List<Branch> readBranches(JsonStreamReader reader) throws JSONException {
+        List<Branch> branches = new ArrayList<Branch>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            branches.add(new Branch(reader.nextString()));
         }
+        reader.endArray();
+
+        return branches;
+    }
 
-        JSONArray lineStrings = rootJSON.getJSONArray("lineStrings");
+    /**
+     * Station data read from a stop point.  It becomes a station (shared with other lines, including
+     * lines being parsed concurrently, that have a station with the same id) only once the whole line
+     * has been parsed.
+     */
+    private static class StopPoint {
+        final String id;
+        final String name;
+        final LatLon locn;
 
-        for(int index = 0; index < lineStrings.length(); index++) {
-            String branchString = lineStrings.getString(index);
-            tubeLine.addBranch(new Branch(branchString));
+        StopPoint(String id, String name, LatLon locn) {
+            this.id = id;
+            this.name = name;
+            this.locn = locn;
         }
     }
-
 }
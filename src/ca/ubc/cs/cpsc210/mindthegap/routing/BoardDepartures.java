@@ -0,0 +1,174 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalBoard;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.util.SphericalGeometry;
+
+import java.util.*;
+
+/**
+ * Departures read from the live arrival boards at stations, for use in a single journey planning query.
+ *
+ * A train is taken to leave a station when it is expected to arrive there.  The board serving a
+ * journey from a station towards an adjacent station is the board for the line whose compass travel
+ * direction (e.g. "Westbound") is closest to the bearing of the adjacent station, provided it is
+ * within 90 degrees; if none of the line's boards has a compass direction, all of them are used.
+ *
+ * Where live departures are not available (the station's arrivals have never been downloaded or are
+ * older than maxAge, or no train is expected on the board after the time asked about) the next
+ * departure is assumed to be half a headway away.  Stations whose arrivals were not available are
+ * recorded, so that they can be downloaded and the query repeated.
+ *
+ * Each station's boards are read once, when the query first asks about the station, so that the
+ * query sees a consistent set of departures.  Instances must be used on the thread that owns the
+ * stations' arrival boards (the UI thread).
+ */
+public class BoardDepartures implements DepartureSource {
+    public static final long DEFAULT_HEADWAY = 5 * 60 * 1000;      // ms
+    private static final String[] COMPASS_DIRNS = { "North", "East", "South", "West" };
+    private long now;
+    private long maxAge;
+    private long headway;
+    private Map<Station, List<Platform>> platforms;
+    private Set<Station> missing;
+
+    /**
+     * Constructs departures from arrival boards as they are at given time, assuming default headway
+     * where live departures are not available
+     *
+     * @param now     current time (ms since epoch)
+     * @param maxAge  maximum age (in ms) of arrivals that are used
+     */
+    public BoardDepartures(long now, long maxAge) {
+        this(now, maxAge, DEFAULT_HEADWAY);
+    }
+
+    /**
+     * Constructs departures from arrival boards as they are at given time
+     *
+     * @param now      current time (ms since epoch)
+     * @param maxAge   maximum age (in ms) of arrivals that are used
+     * @param headway  assumed interval (in ms) between trains where live departures are not available
+     */
+    public BoardDepartures(long now, long maxAge, long headway) {
+        this.now = now;
+        this.maxAge = maxAge;
+        this.headway = headway;
+        platforms = new HashMap<Station, List<Platform>>();
+        missing = new LinkedHashSet<Station>();
+    }
+
+    @Override
+    public long nextDeparture(Station stn, Line line, Station next, long time) {
+        List<Platform> stnPlatforms = platformsAt(stn);
+        if (stnPlatforms == null) {
+            missing.add(stn);
+            return time + headway / 2;
+        }
+
+        double bearing = SphericalGeometry.bearingBetween(stn.getLocn(), next.getLocn());
+        Platform best = null;
+        double bestDiff = 90.0;
+        boolean anyCompass = false;
+        for (Platform p : stnPlatforms) {
+            if (p.line.equals(line) && !Double.isNaN(p.bearing)) {
+                anyCompass = true;
+                double diff = Math.abs(bearing - p.bearing) % 360.0;
+                diff = Math.min(diff, 360.0 - diff);
+                if (diff <= bestDiff) {
+                    best = p;
+                    bestDiff = diff;
+                }
+            }
+        }
+
+        long departure = Long.MAX_VALUE;
+        if (best != null) {
+            departure = best.nextDeparture(time);
+        } else if (!anyCompass) {
+            for (Platform p : stnPlatforms) {
+                if (p.line.equals(line)) {
+                    departure = Math.min(departure, p.nextDeparture(time));
+                }
+            }
+        }
+
+        return departure == Long.MAX_VALUE ? time + headway / 2 : departure;
+    }
+
+    /**
+     * Get stations asked about whose live departures were not available
+     *
+     * @return  stations without live departures, in the order they were first asked about
+     */
+    public Set<Station> getMissingStations() {
+        return Collections.unmodifiableSet(missing);
+    }
+
+    /**
+     * Get departures at given station, reading them from its arrival boards the first time they
+     * are needed; null if station's arrivals are not available
+     */
+    private List<Platform> platformsAt(Station stn) {
+        if (platforms.containsKey(stn)) {
+            return platforms.get(stn);
+        }
+
+        List<Platform> stnPlatforms = null;
+        long updated = stn.getArrivalsUpdated();
+        if (updated != 0 && now - updated <= maxAge) {
+            stnPlatforms = new ArrayList<Platform>(stn.getNumArrivalBoards());
+            for (ArrivalBoard board : stn) {
+                stnPlatforms.add(new Platform(board));
+            }
+        }
+
+        platforms.put(stn, stnPlatforms);
+        return stnPlatforms;
+    }
+
+    /**
+     * Get bearing in degrees of given compass travel direction, or NaN if it is not a compass direction
+     */
+    private static double compassBearing(String travelDirn) {
+        for (int i = 0; i < COMPASS_DIRNS.length; i++) {
+            if (travelDirn != null && travelDirn.startsWith(COMPASS_DIRNS[i])) {
+                return i * 90.0;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Departure times read from one arrival board, in increasing order
+     */
+    private static class Platform {
+        final Line line;
+        final double bearing;
+        final long[] departures;
+
+        Platform(ArrivalBoard board) {
+            line = board.getLine();
+            bearing = compassBearing(board.getTravelDirn());
+            departures = new long[board.getNumArrivals()];
+            int i = 0;
+            for (Arrival next : board) {
+                departures[i++] = next.getExpectedArrival();
+            }
+            Arrays.sort(departures);
+        }
+
+        /**
+         * Get first departure no earlier than given time, or Long.MAX_VALUE if there is none
+         */
+        long nextDeparture(long time) {
+            int i = Arrays.binarySearch(departures, time);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < departures.length ? departures[i] : Long.MAX_VALUE;
+        }
+    }
+}
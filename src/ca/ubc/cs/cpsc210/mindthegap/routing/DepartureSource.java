@@ -0,0 +1,21 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+/**
+ * Source of departure times of trains used by time-dependent journey planning
+ */
+public interface DepartureSource {
+
+    /**
+     * Find time at which next train on given line leaves given station towards an adjacent station
+     *
+     * @param stn   station at which train is boarded
+     * @param line  line on which train runs
+     * @param next  station adjacent to stn on line, towards which train is travelling
+     * @param time  earliest time (ms since epoch) at which train can be boarded
+     * @return  departure time (ms since epoch) of next train, no earlier than time
+     */
+    long nextDeparture(Station stn, Line line, Station next, long time);
+}
@@ -0,0 +1,88 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A timed journey between two stations: a list of rides, each on a single train, starting at a
+ * given time.  An itinerary from a station to itself has no rides.
+ */
+public class Itinerary {
+    private static final long MILLIS_PER_MIN = 60 * 1000;
+    private Station from;
+    private Station to;
+    private List<Ride> rides;
+    private long start;
+    private long arrival;
+
+    Itinerary(Station from, Station to, List<Ride> rides, long start, long arrival) {
+        this.from = from;
+        this.to = to;
+        this.rides = Collections.unmodifiableList(new ArrayList<Ride>(rides));
+        this.start = start;
+        this.arrival = arrival;
+    }
+
+    public Station getFrom() {
+        return from;
+    }
+
+    public Station getTo() {
+        return to;
+    }
+
+    public List<Ride> getRides() {
+        return rides;
+    }
+
+    /**
+     * Get number of changes of train made on this itinerary
+     *
+     * @return  number of changes
+     */
+    public int getNumChanges() {
+        return Math.max(0, rides.size() - 1);
+    }
+
+    /**
+     * Get time at which traveller is ready to leave from station
+     *
+     * @return  start time (ms since epoch)
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Get time at which traveller reaches to station
+     *
+     * @return  arrival time (ms since epoch)
+     */
+    public long getArrival() {
+        return arrival;
+    }
+
+    /**
+     * Get time taken by this itinerary, including time spent waiting for trains
+     *
+     * @return  duration in ms
+     */
+    public long getDuration() {
+        return arrival - start;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(from.getName());
+        for (Ride ride : rides) {
+            sb.append(" -[").append(ride.getLine().getName())
+                    .append(" +").append((ride.getDeparture() - start) / MILLIS_PER_MIN).append("m]-> ")
+                    .append(ride.getTo().getName());
+        }
+        sb.append(" (").append(getDuration() / MILLIS_PER_MIN).append("m)");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A journey between two stations: a list of legs, each on a single line, with a change of line
+ * between consecutive legs.  A journey from a station to itself has no legs.
+ */
+public class Journey {
+    private Station from;
+    private Station to;
+    private List<Leg> legs;
+    private double distance;
+
+    Journey(Station from, Station to, List<Leg> legs, double distance) {
+        this.from = from;
+        this.to = to;
+        this.legs = Collections.unmodifiableList(new ArrayList<Leg>(legs));
+        this.distance = distance;
+    }
+
+    public Station getFrom() {
+        return from;
+    }
+
+    public Station getTo() {
+        return to;
+    }
+
+    public List<Leg> getLegs() {
+        return legs;
+    }
+
+    /**
+     * Get number of changes of line made on this journey
+     *
+     * @return  number of changes
+     */
+    public int getNumChanges() {
+        return Math.max(0, legs.size() - 1);
+    }
+
+    /**
+     * Get distance travelled on this journey (sum of straight-line distances between consecutive stations)
+     *
+     * @return  distance in metres
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Get all stations passed through on this journey, in order (a station at which line is
+     * changed appears once)
+     *
+     * @return  stations on journey
+     */
+    public List<Station> getStations() {
+        List<Station> stns = new ArrayList<Station>();
+        stns.add(from);
+        for (Leg leg : legs) {
+            List<Station> legStns = leg.getStations();
+            stns.addAll(legStns.subList(1, legStns.size()));
+        }
+        return stns;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(from.getName());
+        for (Leg leg : legs) {
+            sb.append(" -[").append(leg.getLine().getName()).append("]-> ").append(leg.getTo().getName());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,229 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import ca.ubc.cs.cpsc210.mindthegap.util.SphericalGeometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Plans journeys on a StationGraph by A* search.
+ *
+ * A path is costed by its number of changes and the distance travelled, compared lexicographically
+ * in the order given by the criterion: fewest changes (shortest distance breaking ties) or shortest
+ * distance (fewest changes breaking ties).  The straight-line distance from a station to the
+ * destination is a lower bound on the distance still to travel (every ride edge is weighted by the
+ * straight-line distance it covers), so it is used as the search heuristic for the distance part of
+ * the cost; it never overestimates, so the journey found is optimal.
+ *
+ * Instances are not safe for use by multiple threads at once.
+ */
+public class JourneyPlanner {
+    private StationGraph graph;
+    private int[] changes;
+    private double[] distance;
+    private double[] heuristic;
+    private int[] prev;
+    private boolean[] settled;
+    private int settledCount;
+
+    /**
+     * Criterion by which journeys are compared
+     */
+    public enum Criterion { FEWEST_CHANGES, SHORTEST_DISTANCE }
+
+    /**
+     * Constructs planner for journeys on given graph
+     *
+     * @param graph  the graph
+     */
+    public JourneyPlanner(StationGraph graph) {
+        this.graph = graph;
+        int n = graph.getNumNodes();
+        changes = new int[n];
+        distance = new double[n];
+        heuristic = new double[n];
+        prev = new int[n];
+        settled = new boolean[n];
+    }
+
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Find journey with fewest changes between given stations
+     *
+     * @param from  station at which journey starts
+     * @param to    station at which journey ends
+     * @return  journey with fewest changes (shortest such journey if there are several), or null if
+     * there is no journey between the stations
+     */
+    public Journey fewestChanges(Station from, Station to) {
+        return plan(from, to, Criterion.FEWEST_CHANGES);
+    }
+
+    /**
+     * Find shortest journey between given stations
+     *
+     * @param from  station at which journey starts
+     * @param to    station at which journey ends
+     * @return  shortest journey (with fewest changes if there are several), or null if there is no
+     * journey between the stations
+     */
+    public Journey shortestDistance(Station from, Station to) {
+        return plan(from, to, Criterion.SHORTEST_DISTANCE);
+    }
+
+    /**
+     * Find best journey between given stations by given criterion
+     *
+     * @param from       station at which journey starts
+     * @param to         station at which journey ends
+     * @param criterion  criterion by which journeys are compared
+     * @return  best journey, or null if there is no journey between the stations
+     */
+    public Journey plan(Station from, Station to, Criterion criterion) {
+        if (!graph.hasStation(from) || !graph.hasStation(to)) {
+            return null;
+        }
+        if (from.equals(to)) {
+            return new Journey(from, to, new ArrayList<Leg>(), 0);
+        }
+
+        Arrays.fill(changes, Integer.MAX_VALUE);
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(heuristic, -1);
+        Arrays.fill(prev, -1);
+        Arrays.fill(settled, false);
+        settledCount = 0;
+
+        boolean changesFirst = criterion == Criterion.FEWEST_CHANGES;
+        LatLon dest = to.getLocn();
+        PriorityQueue<Label> queue = new PriorityQueue<Label>();
+
+        for (int i = graph.getPlatformStart(from); i < graph.getPlatformEnd(from); i++) {
+            int start = graph.getPlatform(i);
+            changes[start] = 0;
+            distance[start] = 0;
+            queue.add(new Label(start, 0, estimate(start, dest), changesFirst));
+        }
+
+        while (!queue.isEmpty()) {
+            Label label = queue.poll();
+            int u = label.node;
+            if (settled[u]) {
+                continue;
+            }
+            settled[u] = true;
+            settledCount++;
+
+            if (graph.getStation(u).getIndex() == to.getIndex()) {
+                return buildJourney(from, to, u);
+            }
+
+            for (int e = graph.getEdgeStart(u); e < graph.getEdgeEnd(u); e++) {
+                int v = graph.getEdgeTo(e);
+                if (settled[v]) {
+                    continue;
+                }
+
+                int c = changes[u] + (graph.isInterchange(e) ? 1 : 0);
+                double d = distance[u] + graph.getEdgeDistance(e);
+                if (isBetter(c, d, changes[v], distance[v], changesFirst)) {
+                    changes[v] = c;
+                    distance[v] = d;
+                    prev[v] = u;
+                    queue.add(new Label(v, c, d + estimate(v, dest), changesFirst));
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get number of nodes settled by most recent search (a measure of the work it did)
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    private double estimate(int node, LatLon dest) {
+        if (heuristic[node] < 0) {
+            heuristic[node] = SphericalGeometry.distanceBetween(graph.getStation(node).getLocn(), dest);
+        }
+        return heuristic[node];
+    }
+
+    private static boolean isBetter(int c1, double d1, int c2, double d2, boolean changesFirst) {
+        if (changesFirst) {
+            return c1 < c2 || (c1 == c2 && d1 < d2);
+        }
+        return d1 < d2 || (d1 == d2 && c1 < c2);
+    }
+
+    /**
+     * Build journey from path ending at given node, splitting it into legs at interchanges
+     */
+    private Journey buildJourney(Station from, Station to, int end) {
+        List<Integer> path = new ArrayList<Integer>();
+        for (int u = end; u != -1; u = prev[u]) {
+            path.add(u);
+        }
+
+        List<Leg> legs = new ArrayList<Leg>();
+        List<Station> legStns = new ArrayList<Station>();
+        int legStart = path.get(path.size() - 1);
+        Line line = graph.getLine(legStart);
+
+        for (int i = path.size() - 1; i >= 0; i--) {
+            int node = path.get(i);
+            if (graph.getLine(node) != line) {
+                int legEnd = path.get(i + 1);
+                legs.add(new Leg(line, legStns, distance[legEnd] - distance[legStart]));
+                legStns = new ArrayList<Station>();
+                legStart = node;
+                line = graph.getLine(node);
+            }
+            legStns.add(graph.getStation(node));
+        }
+        legs.add(new Leg(line, legStns, distance[end] - distance[legStart]));
+
+        return new Journey(from, to, legs, distance[end]);
+    }
+
+    /**
+     * Entry in search queue: a node with the cost of the path by which it was reached plus
+     * the estimated distance still to travel
+     */
+    private static class Label implements Comparable<Label> {
+        final int node;
+        final int changes;
+        final double estimate;
+        final boolean changesFirst;
+
+        Label(int node, int changes, double estimate, boolean changesFirst) {
+            this.node = node;
+            this.changes = changes;
+            this.estimate = estimate;
+            this.changesFirst = changesFirst;
+        }
+
+        @Override
+        public int compareTo(Label other) {
+            if (changesFirst && changes != other.changes) {
+                return changes < other.changes ? -1 : 1;
+            }
+            int byEstimate = Double.compare(estimate, other.estimate);
+            if (byEstimate != 0 || changesFirst) {
+                return byEstimate;
+            }
+            return changes < other.changes ? -1 : (changes == other.changes ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Part of a journey travelled on a single line
+ */
+public class Leg {
+    private Line line;
+    private List<Station> stns;
+    private double distance;
+
+    Leg(Line line, List<Station> stns, double distance) {
+        this.line = line;
+        this.stns = Collections.unmodifiableList(new ArrayList<Station>(stns));
+        this.distance = distance;
+    }
+
+    public Line getLine() {
+        return line;
+    }
+
+    /**
+     * Get stations passed through on this leg, from boarding to alighting station inclusive
+     *
+     * @return  stations on leg
+     */
+    public List<Station> getStations() {
+        return stns;
+    }
+
+    public Station getFrom() {
+        return stns.get(0);
+    }
+
+    public Station getTo() {
+        return stns.get(stns.size() - 1);
+    }
+
+    public int getNumStops() {
+        return stns.size() - 1;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+}
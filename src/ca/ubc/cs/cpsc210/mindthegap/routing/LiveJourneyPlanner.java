@@ -0,0 +1,182 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.TfL.TfLHttpBatchArrivalDataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.ParsedArrivals;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLArrivalsParser;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Plans itineraries using live departures from stations' arrival boards, downloading boards that
+ * are missing as they turn out to be needed.
+ *
+ * A query is answered at once from the arrivals already held, assuming a headway wherever live
+ * departures are not available.  If the itinerary found boards a train at stations whose arrivals
+ * are missing, their arrivals are downloaded in as few batched requests as possible (as USER tasks
+ * on a TaskScheduler, each parsing its response as it is downloaded), merged into the stations, and
+ * the query is repeated; this is done at most
+ * MAX_FETCH_ROUNDS times.  Each answer is passed to the listener, the last one marked as complete.
+ * A query is cheap enough to be repeated whenever arrivals are refreshed.
+ *
+ * The scheduler must deliver results on the thread that owns the stations' arrival boards (the UI
+ * thread), and plan and cancel must also be called on that thread.
+ */
+public class LiveJourneyPlanner {
+    public static final long MAX_ARRIVALS_AGE = 2 * 60 * 1000;     // ms
+    public static final int MAX_FETCH_ROUNDS = 2;
+    private TimeDependentPlanner planner;
+    private TaskScheduler scheduler;
+    private Map<TfLHttpBatchArrivalDataProvider, TaskScheduler.Task<ParsedArrivals>> tasks;
+    private int query;
+
+    /**
+     * Listener notified of itineraries found by a query
+     */
+    public interface Listener {
+
+        /**
+         * Called when an itinerary has been found
+         *
+         * @param itinerary  itinerary found (null if there is no itinerary between the stations)
+         * @param complete   true if no further itinerary will be found by this query
+         */
+        void onItinerary(Itinerary itinerary, boolean complete);
+    }
+
+    /**
+     * Constructs live planner for itineraries on given graph
+     *
+     * @param graph      the graph
+     * @param scheduler  scheduler on which downloads of arrivals run
+     */
+    public LiveJourneyPlanner(StationGraph graph, TaskScheduler scheduler) {
+        planner = new TimeDependentPlanner(graph);
+        this.scheduler = scheduler;
+        tasks = new HashMap<TfLHttpBatchArrivalDataProvider, TaskScheduler.Task<ParsedArrivals>>();
+        query = 0;
+    }
+
+    public StationGraph getGraph() {
+        return planner.getGraph();
+    }
+
+    /**
+     * Plan itinerary leaving now between given stations, cancelling any query in progress
+     *
+     * @param from      station at which itinerary starts
+     * @param to        station at which itinerary ends
+     * @param listener  listener notified of itineraries found
+     * @return  itinerary found from arrivals already held (null if there is no itinerary between the
+     * stations); it is also passed to the listener
+     */
+    public Itinerary plan(Station from, Station to, Listener listener) {
+        cancel();
+        return plan(from, to, listener, query, 0);
+    }
+
+    /**
+     * Cancel query in progress (no further itineraries are passed to its listener)
+     */
+    public void cancel() {
+        for (TaskScheduler.Task<ParsedArrivals> next : tasks.values()) {
+            next.cancel();
+        }
+        tasks.clear();
+        query++;
+    }
+
+    /**
+     * Answer query from arrivals held now, and download missing arrivals if they are needed and
+     * fewer than MAX_FETCH_ROUNDS rounds of downloads have been made
+     */
+    private Itinerary plan(Station from, Station to, Listener listener, int thisQuery, int round) {
+        long now = System.currentTimeMillis();
+        BoardDepartures departures = new BoardDepartures(now, MAX_ARRIVALS_AGE);
+        Itinerary itinerary = planner.earliestArrival(from, to, now, departures);
+
+        List<Station> wanted = new ArrayList<Station>();
+        if (itinerary != null && round < MAX_FETCH_ROUNDS) {
+            Set<Station> missing = departures.getMissingStations();
+            for (Ride ride : itinerary.getRides()) {
+                if (missing.contains(ride.getFrom()) && !wanted.contains(ride.getFrom())) {
+                    wanted.add(ride.getFrom());
+                }
+            }
+        }
+
+        if (!wanted.isEmpty()) {
+            fetch(wanted, from, to, listener, thisQuery, round + 1);
+        }
+        listener.onItinerary(itinerary, wanted.isEmpty());
+        return itinerary;
+    }
+
+    /**
+     * Download arrivals at given stations and repeat query once all downloads have completed
+     */
+    private void fetch(List<Station> stns, final Station from, final Station to, final Listener listener,
+                       final int thisQuery, final int round) {
+        for (final TfLHttpBatchArrivalDataProvider provider : TfLHttpBatchArrivalDataProvider.forStations(stns)) {
+            tasks.put(provider, scheduler.submit(TaskScheduler.Priority.USER, null,
+                    new Callable<ParsedArrivals>() {
+                        @Override
+                        public ParsedArrivals call() throws Exception {
+                            return readArrivals(provider);
+                        }
+                    },
+                    new TaskScheduler.Callback<ParsedArrivals>() {
+                        @Override
+                        public void onSuccess(ParsedArrivals arrivals) {
+                            deliver(provider, arrivals, from, to, listener, thisQuery, round);
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            deliver(provider, null, from, to, listener, thisQuery, round);
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * Download arrivals at stations queried by given provider, parsing them as they are read; called
+     * on one of the scheduler's threads (overridden in tests to answer without a network)
+     */
+    ParsedArrivals readArrivals(TfLHttpBatchArrivalDataProvider provider) throws IOException, JSONException {
+        return TfLArrivalsParser.readArrivals(provider.getStations(), provider.dataSourceToReader());
+    }
+
+    /**
+     * Merge arrivals downloaded by given provider into its stations (arrivals is null if download or
+     * parsing failed), and repeat query if it was the last download outstanding
+     */
+    private void deliver(TfLHttpBatchArrivalDataProvider provider, ParsedArrivals arrivals, Station from,
+                         Station to, Listener listener, int thisQuery, int round) {
+        if (thisQuery != query) {
+            return;
+        }
+
+        if (arrivals != null) {
+            try {
+                arrivals.merge();
+            } catch (TfLArrivalsDataMissingException e) {
+                // stations stay without live departures; headway is assumed for them
+            }
+        }
+
+        tasks.remove(provider);
+        if (tasks.isEmpty()) {
+            plan(from, to, listener, thisQuery, round);
+        }
+    }
+}
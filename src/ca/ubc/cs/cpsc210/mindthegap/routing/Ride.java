@@ -0,0 +1,69 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Part of an itinerary travelled on a single train, with the times at which the train is boarded
+ * and left
+ */
+public class Ride {
+    private Line line;
+    private List<Station> stns;
+    private long departure;
+    private long arrival;
+
+    Ride(Line line, List<Station> stns, long departure, long arrival) {
+        this.line = line;
+        this.stns = Collections.unmodifiableList(new ArrayList<Station>(stns));
+        this.departure = departure;
+        this.arrival = arrival;
+    }
+
+    public Line getLine() {
+        return line;
+    }
+
+    /**
+     * Get stations passed through on this ride, from boarding to alighting station inclusive
+     *
+     * @return  stations on ride
+     */
+    public List<Station> getStations() {
+        return stns;
+    }
+
+    public Station getFrom() {
+        return stns.get(0);
+    }
+
+    public Station getTo() {
+        return stns.get(stns.size() - 1);
+    }
+
+    public int getNumStops() {
+        return stns.size() - 1;
+    }
+
+    /**
+     * Get time at which train leaves boarding station
+     *
+     * @return  departure time (ms since epoch)
+     */
+    public long getDeparture() {
+        return departure;
+    }
+
+    /**
+     * Get time at which train reaches alighting station
+     *
+     * @return  arrival time (ms since epoch)
+     */
+    public long getArrival() {
+        return arrival;
+    }
+}
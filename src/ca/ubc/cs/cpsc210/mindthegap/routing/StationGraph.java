@@ -0,0 +1,259 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.util.SphericalGeometry;
+
+import java.util.*;
+
+/**
+ * Directed, weighted graph of the underground network used for journey planning.
+ *
+ * There is a node for each line at each station it serves (a "platform"), so that changing line is
+ * an edge of its own.  Stations adjacent in one of a line's stop sequences are joined by a ride edge
+ * in each direction, weighted by the distance between them.  Platforms of different lines at the same
+ * station are joined by interchange edges, which have no distance.  Sections of a line meet at the
+ * stations they share, so moving between branches of a line at a junction is not a change.
+ *
+ * Nodes and edges are numbered densely from 0 and held in compressed sparse row form: the edges
+ * leaving node u are numbered getEdgeStart(u) to getEdgeEnd(u) - 1, and their ends, distances and
+ * kinds are held in primitive arrays indexed by edge number.  Platforms at each station are held
+ * the same way, indexed by the station's dense index, so search runs without hashing or boxing.
+ */
+public class StationGraph {
+    private Station[] nodeStns;
+    private Line[] nodeLines;
+    private int[] edgeStart;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private double[] edgeDistance;
+    private BitSet interchanges;
+    private int[] platformStart;
+    private int[] platforms;
+
+    private StationGraph() {
+    }
+
+    /**
+     * Build graph of given lines
+     *
+     * @param lines  the lines
+     * @return  graph of lines
+     */
+    public static StationGraph build(Collection<Line> lines) {
+        Builder builder = new Builder();
+
+        for (Line line : lines) {
+            Map<Station, Integer> linePlatforms = new HashMap<Station, Integer>();
+            for (List<Station> sequence : line.getStopSequences()) {
+                int prev = -1;
+                for (Station stn : sequence) {
+                    Integer node = linePlatforms.get(stn);
+                    if (node == null) {
+                        node = builder.addNode(stn, line);
+                        linePlatforms.put(stn, node);
+                    }
+                    if (prev != -1 && prev != node) {
+                        double distance = SphericalGeometry.distanceBetween(builder.stns.get(prev).getLocn(),
+                                stn.getLocn());
+                        builder.addEdge(prev, node, distance, false);
+                        builder.addEdge(node, prev, distance, false);
+                    }
+                    prev = node;
+                }
+            }
+        }
+
+        for (List<Integer> stnPlatforms : builder.platformsByStation.values()) {
+            for (int from : stnPlatforms) {
+                for (int to : stnPlatforms) {
+                    if (from != to) {
+                        builder.addEdge(from, to, 0, true);
+                    }
+                }
+            }
+        }
+
+        return builder.toGraph();
+    }
+
+    /**
+     * Build graph of all lines serving given stations
+     *
+     * @param stns  the stations
+     * @return  graph of lines serving stations
+     */
+    public static StationGraph buildFromStations(Iterable<Station> stns) {
+        Set<Line> lines = new LinkedHashSet<Line>();
+        for (Station next : stns) {
+            lines.addAll(next.getLines());
+        }
+        return build(lines);
+    }
+
+    public int getNumNodes() {
+        return nodeStns.length;
+    }
+
+    public int getNumEdges() {
+        return edgeTo.length;
+    }
+
+    /**
+     * Determine if given station is served by any line in this graph
+     *
+     * @param stn  the station
+     * @return  true if station is in this graph
+     */
+    public boolean hasStation(Station stn) {
+        return getPlatformEnd(stn) > getPlatformStart(stn);
+    }
+
+    Station getStation(int node) {
+        return nodeStns[node];
+    }
+
+    Line getLine(int node) {
+        return nodeLines[node];
+    }
+
+    /**
+     * Get number of first edge leaving given node
+     */
+    int getEdgeStart(int node) {
+        return edgeStart[node];
+    }
+
+    /**
+     * Get one more than number of last edge leaving given node
+     */
+    int getEdgeEnd(int node) {
+        return edgeStart[node + 1];
+    }
+
+    int getEdgeFrom(int edge) {
+        return edgeFrom[edge];
+    }
+
+    int getEdgeTo(int edge) {
+        return edgeTo[edge];
+    }
+
+    double getEdgeDistance(int edge) {
+        return edgeDistance[edge];
+    }
+
+    /**
+     * Determine if given edge is an interchange (rather than a ride)
+     */
+    boolean isInterchange(int edge) {
+        return interchanges.get(edge);
+    }
+
+    /**
+     * Get position in platform list of first platform at given station: the platforms at the station
+     * are getPlatform(i) for getPlatformStart(stn) <= i < getPlatformEnd(stn) (none if station is not
+     * in this graph)
+     */
+    int getPlatformStart(Station stn) {
+        int s = stn.getIndex();
+        return s + 1 < platformStart.length ? platformStart[s] : 0;
+    }
+
+    int getPlatformEnd(Station stn) {
+        int s = stn.getIndex();
+        return s + 1 < platformStart.length ? platformStart[s + 1] : 0;
+    }
+
+    int getPlatform(int i) {
+        return platforms[i];
+    }
+
+    /**
+     * Collects nodes and edges while a graph is built, then packs them into the graph's arrays
+     */
+    private static class Builder {
+        final List<Station> stns = new ArrayList<Station>();
+        final List<Line> lines = new ArrayList<Line>();
+        final List<List<Integer>> targets = new ArrayList<List<Integer>>();
+        final List<List<Double>> distances = new ArrayList<List<Double>>();
+        final List<BitSet> kinds = new ArrayList<BitSet>();
+        final Map<Station, List<Integer>> platformsByStation = new LinkedHashMap<Station, List<Integer>>();
+        int numEdges;
+
+        int addNode(Station stn, Line line) {
+            int node = stns.size();
+            stns.add(stn);
+            lines.add(line);
+            targets.add(new ArrayList<Integer>(2));
+            distances.add(new ArrayList<Double>(2));
+            kinds.add(new BitSet());
+
+            List<Integer> stnPlatforms = platformsByStation.get(stn);
+            if (stnPlatforms == null) {
+                stnPlatforms = new ArrayList<Integer>(1);
+                platformsByStation.put(stn, stnPlatforms);
+            }
+            stnPlatforms.add(node);
+            return node;
+        }
+
+        void addEdge(int from, int to, double distance, boolean interchange) {
+            List<Integer> fromTargets = targets.get(from);
+            if (fromTargets.contains(to)) {
+                return;
+            }
+            kinds.get(from).set(fromTargets.size(), interchange);
+            fromTargets.add(to);
+            distances.get(from).add(distance);
+            numEdges++;
+        }
+
+        StationGraph toGraph() {
+            StationGraph graph = new StationGraph();
+            int numNodes = stns.size();
+            graph.nodeStns = stns.toArray(new Station[numNodes]);
+            graph.nodeLines = lines.toArray(new Line[numNodes]);
+            graph.edgeStart = new int[numNodes + 1];
+            graph.edgeFrom = new int[numEdges];
+            graph.edgeTo = new int[numEdges];
+            graph.edgeDistance = new double[numEdges];
+            graph.interchanges = new BitSet(numEdges);
+
+            int e = 0;
+            for (int u = 0; u < numNodes; u++) {
+                graph.edgeStart[u] = e;
+                List<Integer> uTargets = targets.get(u);
+                for (int i = 0; i < uTargets.size(); i++, e++) {
+                    graph.edgeFrom[e] = u;
+                    graph.edgeTo[e] = uTargets.get(i);
+                    graph.edgeDistance[e] = distances.get(u).get(i);
+                    graph.interchanges.set(e, kinds.get(u).get(i));
+                }
+            }
+            graph.edgeStart[numNodes] = e;
+
+            // count platforms at each station index, then turn counts into start positions
+            int maxIndex = -1;
+            for (Station next : platformsByStation.keySet()) {
+                maxIndex = Math.max(maxIndex, next.getIndex());
+            }
+            graph.platformStart = new int[maxIndex + 2];
+            graph.platforms = new int[numNodes];
+            for (Map.Entry<Station, List<Integer>> next : platformsByStation.entrySet()) {
+                graph.platformStart[next.getKey().getIndex() + 1] = next.getValue().size();
+            }
+            for (int s = 0; s <= maxIndex; s++) {
+                graph.platformStart[s + 1] += graph.platformStart[s];
+            }
+            for (Map.Entry<Station, List<Integer>> next : platformsByStation.entrySet()) {
+                int p = graph.platformStart[next.getKey().getIndex()];
+                for (int node : next.getValue()) {
+                    graph.platforms[p++] = node;
+                }
+            }
+
+            return graph;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Plans itineraries arriving as early as possible, given the times at which trains leave stations.
+ *
+ * The search is Dijkstra's algorithm, by time, over two kinds of state: standing on a platform of
+ * the StationGraph, and being on a train that has just travelled along one of its ride edges.  From
+ * a platform, a traveller can board the next train towards an adjacent station (its departure time
+ * comes from a DepartureSource) or walk to another line's platform at the same station, which takes
+ * INTERCHANGE_TIME.  On a train, a traveller can stay on as it continues to a further station (so no
+ * wait is incurred) or get off onto the platform.  Ride times are estimated from the distance
+ * between stations at an average speed that allows for time stopped at stations.  Every departure
+ * function is non-decreasing, so waiting never leads to an earlier arrival and the first state
+ * settled at the destination gives the earliest arrival there.
+ *
+ * Instances are not safe for use by multiple threads at once.
+ */
+public class TimeDependentPlanner {
+    public static final double AVERAGE_SPEED = 9.0;                // m/s, including stops
+    public static final long INTERCHANGE_TIME = 3 * 60 * 1000;    // ms
+    private StationGraph graph;
+    private int numNodes;
+    private long[] rideTime;
+    private long[] time;
+    private long[] boarded;
+    private int[] prev;
+    private boolean[] settled;
+    private int settledCount;
+
+    /**
+     * Constructs planner for itineraries on given graph
+     *
+     * @param graph  the graph
+     */
+    public TimeDependentPlanner(StationGraph graph) {
+        this.graph = graph;
+        numNodes = graph.getNumNodes();
+        rideTime = new long[graph.getNumEdges()];
+        for (int e = 0; e < rideTime.length; e++) {
+            rideTime[e] = Math.round(graph.getEdgeDistance(e) / AVERAGE_SPEED * 1000);
+        }
+
+        // a state is a platform (numbered by node) or being on a train along a ride edge (numbered by
+        // numNodes + edge)
+        int numStates = numNodes + rideTime.length;
+        time = new long[numStates];
+        boarded = new long[numStates];
+        prev = new int[numStates];
+        settled = new boolean[numStates];
+    }
+
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Find itinerary between given stations that arrives as early as possible
+     *
+     * @param from        station at which itinerary starts
+     * @param to          station at which itinerary ends
+     * @param start       time (ms since epoch) at which traveller is ready to leave from station
+     * @param departures  source of departure times of trains
+     * @return  itinerary arriving earliest, or null if there is no itinerary between the stations
+     */
+    public Itinerary earliestArrival(Station from, Station to, long start, DepartureSource departures) {
+        if (!graph.hasStation(from) || !graph.hasStation(to)) {
+            return null;
+        }
+        if (from.equals(to)) {
+            return new Itinerary(from, to, new ArrayList<Ride>(), start, start);
+        }
+
+        Arrays.fill(time, Long.MAX_VALUE);
+        Arrays.fill(prev, -1);
+        Arrays.fill(settled, false);
+        settledCount = 0;
+
+        PriorityQueue<Label> queue = new PriorityQueue<Label>();
+        for (int i = graph.getPlatformStart(from); i < graph.getPlatformEnd(from); i++) {
+            int platform = graph.getPlatform(i);
+            time[platform] = start;
+            queue.add(new Label(platform, start));
+        }
+
+        while (!queue.isEmpty()) {
+            int u = queue.poll().state;
+            if (settled[u]) {
+                continue;
+            }
+            settled[u] = true;
+            settledCount++;
+
+            if (u < numNodes) {
+                for (int e = graph.getEdgeStart(u); e < graph.getEdgeEnd(u); e++) {
+                    int w = graph.getEdgeTo(e);
+                    if (graph.isInterchange(e)) {
+                        relax(u, w, time[u] + INTERCHANGE_TIME, queue);
+                    } else {
+                        long departure = Math.max(time[u], departures.nextDeparture(graph.getStation(u),
+                                graph.getLine(u), graph.getStation(w), time[u]));
+                        int v = numNodes + e;
+                        if (relax(u, v, departure + rideTime[e], queue)) {
+                            boarded[v] = departure;
+                        }
+                    }
+                }
+            } else {
+                int arrived = u - numNodes;
+                int at = graph.getEdgeTo(arrived);
+                if (graph.getStation(at).getIndex() == to.getIndex()) {
+                    return buildItinerary(from, to, start, u);
+                }
+
+                relax(u, at, time[u], queue);
+                for (int e = graph.getEdgeStart(at); e < graph.getEdgeEnd(at); e++) {
+                    if (!graph.isInterchange(e) && graph.getEdgeTo(e) != graph.getEdgeFrom(arrived)) {
+                        relax(u, numNodes + e, time[u] + rideTime[e], queue);
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get number of states settled by most recent search (a measure of the work it did)
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Record that state v is reached from state u at given time, if that is earlier than v was
+     * reached before
+     */
+    private boolean relax(int u, int v, long t, PriorityQueue<Label> queue) {
+        if (settled[v] || t >= time[v]) {
+            return false;
+        }
+        time[v] = t;
+        prev[v] = u;
+        queue.add(new Label(v, t));
+        return true;
+    }
+
+    /**
+     * Build itinerary from path ending at given on-train state, splitting it into rides at each
+     * boarding of a train
+     */
+    private Itinerary buildItinerary(Station from, Station to, long start, int end) {
+        List<Integer> path = new ArrayList<Integer>();
+        for (int u = end; u != -1; u = prev[u]) {
+            path.add(u);
+        }
+
+        List<Ride> rides = new ArrayList<Ride>();
+        List<Station> rideStns = null;
+        int boardedState = -1;
+        int last = -1;
+
+        for (int i = path.size() - 1; i >= 0; i--) {
+            int u = path.get(i);
+            if (u < numNodes) {
+                if (rideStns != null) {
+                    rides.add(newRide(boardedState, rideStns, time[last]));
+                    rideStns = null;
+                }
+                continue;
+            }
+
+            int edge = u - numNodes;
+            if (rideStns == null) {
+                boardedState = u;
+                rideStns = new ArrayList<Station>();
+                rideStns.add(graph.getStation(graph.getEdgeFrom(edge)));
+            }
+            rideStns.add(graph.getStation(graph.getEdgeTo(edge)));
+            last = u;
+        }
+        rides.add(newRide(boardedState, rideStns, time[end]));
+
+        return new Itinerary(from, to, rides, start, time[end]);
+    }
+
+    /**
+     * Create ride on train boarded at given on-train state
+     */
+    private Ride newRide(int boardedState, List<Station> stns, long arrival) {
+        Line line = graph.getLine(graph.getEdgeFrom(boardedState - numNodes));
+        return new Ride(line, stns, boarded[boardedState], arrival);
+    }
+
+    /**
+     * Entry in search queue: a state with the time at which it is reached
+     */
+    private static class Label implements Comparable<Label> {
+        final int state;
+        final long time;
+
+        Label(int state, long time) {
+            this.state = state;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(Label other) {
+            return time < other.time ? -1 : (time == other.time ? 0 : 1);
+        }
+    }
+}
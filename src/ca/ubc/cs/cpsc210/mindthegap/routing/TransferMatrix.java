@@ -0,0 +1,267 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Precomputed answers to "are these stations on the same line?" and "how many changes of line does it
+ * take to get between them?" for every pair of stations on the lines added so far.
+ *
+ * Stations and lines are looked up by their dense indices (see Station.getIndex and Line.getIndex).
+ * Each station has a bitmask of the lines serving it, so two stations are directly linked if their
+ * masks intersect.  The fewest changes between two lines is found by breadth-first search of the
+ * graph in which lines are adjacent if they share a station, and the fewest changes between two
+ * stations is the least of these over the lines serving each; the result for every pair of stations
+ * is held in a matrix of bytes, so that both queries are constant time.
+ *
+ * When a line is added again (e.g. because it has been reloaded), only the stations whose masks change
+ * have their rows and columns of the matrix recomputed, unless the changes between lines are affected,
+ * in which case the whole matrix is.  Instances are not safe for use by multiple threads at once.
+ */
+public class TransferMatrix {
+    public static final int UNREACHABLE = -1;
+    private static final int BITS_PER_WORD = 64;
+    private BitSet stns;
+    private BitSet lines;
+    private int words;
+    private long[] masks;
+    private byte[] lineChanges;
+    private int capacity;
+    private byte[] changes;
+
+    /**
+     * Constructs empty matrix, to which lines are added by updateLine
+     */
+    public TransferMatrix() {
+        stns = new BitSet();
+        lines = new BitSet();
+        words = 1;
+        masks = new long[0];
+        lineChanges = new byte[0];
+        capacity = 0;
+        changes = new byte[0];
+    }
+
+    /**
+     * Build matrix of given lines
+     *
+     * @param lines  the lines
+     * @return  matrix of lines
+     */
+    public static TransferMatrix build(Collection<Line> lines) {
+        TransferMatrix matrix = new TransferMatrix();
+        for (Line next : lines) {
+            matrix.updateLine(next);
+        }
+        return matrix;
+    }
+
+    /**
+     * Add given line, or bring it up to date with the stations it now serves if it has been added before
+     *
+     * @param line  the line
+     */
+    public void updateLine(Line line) {
+        int li = line.getIndex();
+        lines.set(li);
+        while (li >= words * BITS_PER_WORD) {
+            growWords();
+        }
+
+        // stations whose bit for line flips are the ones whose rows change
+        BitSet dirty = new BitSet();
+        for (int s = stns.nextSetBit(0); s >= 0; s = stns.nextSetBit(s + 1)) {
+            if (hasLine(s, li)) {
+                setLine(s, li, false);
+                dirty.set(s);
+            }
+        }
+
+        for (Station next : line.getStations()) {
+            int s = add(next);
+            setLine(s, li, true);
+            dirty.flip(s);
+        }
+
+        if (updateLineChanges()) {
+            for (int s = stns.nextSetBit(0); s >= 0; s = stns.nextSetBit(s + 1)) {
+                for (int t = stns.nextSetBit(s); t >= 0; t = stns.nextSetBit(t + 1)) {
+                    updatePair(s, t);
+                }
+            }
+        } else {
+            for (int s = dirty.nextSetBit(0); s >= 0; s = dirty.nextSetBit(s + 1)) {
+                for (int t = stns.nextSetBit(0); t >= 0; t = stns.nextSetBit(t + 1)) {
+                    updatePair(s, t);
+                }
+            }
+        }
+    }
+
+    public int getNumStations() {
+        return stns.cardinality();
+    }
+
+    public int getNumLines() {
+        return lines.cardinality();
+    }
+
+    /**
+     * Determine if given stations are served by a common line
+     *
+     * @param a  first station
+     * @param b  second station
+     * @return  true if some line serves both stations
+     */
+    public boolean hasDirectLink(Station a, Station b) {
+        int s = a.getIndex();
+        int t = b.getIndex();
+        if (!stns.get(s) || !stns.get(t)) {
+            return false;
+        }
+
+        for (int w = 0; w < words; w++) {
+            if ((masks[s * words + w] & masks[t * words + w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get fewest changes of line needed to get between given stations
+     *
+     * @param a  first station
+     * @param b  second station
+     * @return  fewest changes, or UNREACHABLE if there is no journey between the stations
+     */
+    public int getNumChanges(Station a, Station b) {
+        int s = a.getIndex();
+        int t = b.getIndex();
+        if (!stns.get(s) || !stns.get(t)) {
+            return UNREACHABLE;
+        }
+        return changes[s * capacity + t];
+    }
+
+    /**
+     * Add given station (with no lines) if it has not been seen before
+     *
+     * @return  index of station
+     */
+    private int add(Station stn) {
+        int s = stn.getIndex();
+        while (s >= capacity) {
+            growCapacity();
+        }
+        stns.set(s);
+        return s;
+    }
+
+    private boolean hasLine(int s, int li) {
+        return (masks[s * words + li / BITS_PER_WORD] & (1L << (li % BITS_PER_WORD))) != 0;
+    }
+
+    private void setLine(int s, int li, boolean on) {
+        int w = s * words + li / BITS_PER_WORD;
+        long bit = 1L << (li % BITS_PER_WORD);
+        masks[w] = on ? masks[w] | bit : masks[w] & ~bit;
+    }
+
+    /**
+     * Double room for stations in masks and matrix, copying what is held so far
+     */
+    private void growCapacity() {
+        int newCapacity = Math.max(16, capacity * 2);
+        masks = Arrays.copyOf(masks, newCapacity * words);
+
+        byte[] newChanges = new byte[newCapacity * newCapacity];
+        Arrays.fill(newChanges, (byte) UNREACHABLE);
+        for (int s = 0; s < capacity; s++) {
+            System.arraycopy(changes, s * capacity, newChanges, s * newCapacity, capacity);
+        }
+        capacity = newCapacity;
+        changes = newChanges;
+    }
+
+    /**
+     * Add a word to each station's mask of lines
+     */
+    private void growWords() {
+        long[] newMasks = new long[capacity * (words + 1)];
+        for (int s = 0; s < capacity; s++) {
+            System.arraycopy(masks, s * words, newMasks, s * (words + 1), words);
+        }
+        words++;
+        masks = newMasks;
+    }
+
+    /**
+     * Recompute fewest changes between each pair of lines
+     *
+     * @return  true if fewest changes between some pair of lines has changed
+     */
+    private boolean updateLineChanges() {
+        int n = lines.length();
+        boolean[] adjacent = new boolean[n * n];
+        for (int s = stns.nextSetBit(0); s >= 0; s = stns.nextSetBit(s + 1)) {
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n && hasLine(s, i); j++) {
+                    if (hasLine(s, j)) {
+                        adjacent[i * n + j] = true;
+                        adjacent[j * n + i] = true;
+                    }
+                }
+            }
+        }
+
+        byte[] newLineChanges = new byte[n * n];
+        Arrays.fill(newLineChanges, (byte) UNREACHABLE);
+        int[] queue = new int[n];
+        for (int from = 0; from < n; from++) {
+            int head = 0;
+            int tail = 0;
+            newLineChanges[from * n + from] = 0;
+            queue[tail++] = from;
+            while (head < tail) {
+                int li = queue[head++];
+                for (int next = 0; next < n; next++) {
+                    if (adjacent[li * n + next] && newLineChanges[from * n + next] == UNREACHABLE) {
+                        newLineChanges[from * n + next] = (byte) (newLineChanges[from * n + li] + 1);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        boolean changed = !Arrays.equals(newLineChanges, lineChanges);
+        lineChanges = newLineChanges;
+        return changed;
+    }
+
+    /**
+     * Recompute fewest changes between stations s and t (in both directions)
+     */
+    private void updatePair(int s, int t) {
+        int n = lines.length();
+        int best = UNREACHABLE;
+        for (int i = 0; i < n && best != 0; i++) {
+            if (!hasLine(s, i)) {
+                continue;
+            }
+            for (int j = 0; j < n; j++) {
+                int c = lineChanges[i * n + j];
+                if (hasLine(t, j) && c != UNREACHABLE && (best == UNREACHABLE || c < best)) {
+                    best = c;
+                }
+            }
+        }
+
+        changes[s * capacity + t] = (byte) best;
+        changes[t * capacity + s] = (byte) best;
+    }
+}
@@ -0,0 +1,48 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+/**
+ * Flyweight view of a branch in a network snapshot.  Coordinates are read from the snapshot
+ * on request rather than copied.
+ */
+public class BranchView {
+    private final NetworkSnapshot snapshot;
+    private final int pos;
+
+    BranchView(NetworkSnapshot snapshot, int pos) {
+        this.snapshot = snapshot;
+        this.pos = pos;
+    }
+
+    public int getNumPoints() {
+        return snapshot.getInt(pos);
+    }
+
+    public double getLatitude(int index) {
+        return snapshot.getDouble(pointPos(index));
+    }
+
+    public double getLongitude(int index) {
+        return snapshot.getDouble(pointPos(index) + 8);
+    }
+
+    /**
+     * Copy coordinates of this branch into a new packed array (latitude of point i at
+     * index 2*i, longitude at 2*i + 1)
+     *
+     * @return  packed lat/lon coordinates of points on branch
+     */
+    public double[] toCoordinates() {
+        double[] coords = new double[2 * getNumPoints()];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = snapshot.getDouble(pos + 4 + 8 * i);
+        }
+        return coords;
+    }
+
+    private int pointPos(int index) {
+        if (index < 0 || index >= getNumPoints()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + getNumPoints());
+        }
+        return pos + 4 + 16 * index;
+    }
+}
@@ -0,0 +1,126 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+
+/**
+ * Flyweight view of a line in a network snapshot.  Holds only the position of the line's
+ * record; all data is read from the snapshot on request.
+ */
+public class LineView {
+    private final NetworkSnapshot snapshot;
+    private final int pos;
+
+    LineView(NetworkSnapshot snapshot, int pos) {
+        this.snapshot = snapshot;
+        this.pos = pos;
+    }
+
+    /**
+     * Get resource data for this line
+     *
+     * @return  line resource data, or null if snapshot names resource data unknown to this version of the app
+     */
+    public LineResourceData getResourceData() {
+        String name = snapshot.string(snapshot.getInt(pos));
+        for (LineResourceData next : LineResourceData.values()) {
+            if (next.name().equals(name)) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    public String getId() {
+        return snapshot.string(snapshot.getInt(pos + 4));
+    }
+
+    public String getName() {
+        return snapshot.string(snapshot.getInt(pos + 8));
+    }
+
+    public int getNumStations() {
+        return snapshot.getInt(pos + 16);
+    }
+
+    /**
+     * Get index in snapshot of station at given position on this line
+     *
+     * @param i  position of station on line, 0 <= i < getNumStations()
+     * @return  index of station in snapshot
+     */
+    public int getStationIndex(int i) {
+        checkIndex(i, getNumStations());
+        return snapshot.getInt(pos + 20 + 4 * i);
+    }
+
+    /**
+     * Get view of station at given position on this line
+     *
+     * @param i  position of station on line, 0 <= i < getNumStations()
+     * @return  view of station
+     */
+    public StationView getStation(int i) {
+        return snapshot.getStation(getStationIndex(i));
+    }
+
+    public int getNumBranches() {
+        return snapshot.getInt(branchCountPos());
+    }
+
+    /**
+     * Get view of branch with given index
+     *
+     * @param i  index of branch, 0 <= i < getNumBranches()
+     * @return  view of branch
+     */
+    public BranchView getBranch(int i) {
+        checkIndex(i, getNumBranches());
+        return new BranchView(snapshot, snapshot.getInt(branchCountPos() + 4 + 4 * i));
+    }
+
+    public int getNumStopSequences() {
+        return snapshot.getInt(sequencesPos());
+    }
+
+    /**
+     * Get number of stations in stop sequence with given index
+     *
+     * @param s  index of stop sequence, 0 <= s < getNumStopSequences()
+     * @return  number of stations in stop sequence
+     */
+    public int getStopSequenceLength(int s) {
+        return snapshot.getInt(sequencePos(s));
+    }
+
+    /**
+     * Get index in snapshot of station at given position in stop sequence with given index
+     *
+     * @param s  index of stop sequence, 0 <= s < getNumStopSequences()
+     * @param i  position of station in sequence, 0 <= i < getStopSequenceLength(s)
+     * @return  index of station in snapshot
+     */
+    public int getStopSequenceStationIndex(int s, int i) {
+        int seqPos = sequencePos(s);
+        checkIndex(i, snapshot.getInt(seqPos));
+        return snapshot.getInt(seqPos + 4 + 4 * i);
+    }
+
+    private int branchCountPos() {
+        return pos + 20 + 4 * getNumStations();
+    }
+
+    private int sequencesPos() {
+        return snapshot.getInt(pos + 12);
+    }
+
+    private int sequencePos(int s) {
+        checkIndex(s, getNumStopSequences());
+        return snapshot.getInt(sequencesPos() + 4 + 4 * s);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
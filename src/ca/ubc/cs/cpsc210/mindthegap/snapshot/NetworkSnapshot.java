@@ -0,0 +1,304 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+import ca.ubc.cs.cpsc210.mindthegap.snapshot.exception.NetworkSnapshotException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only, random-access view of a network snapshot held in a byte buffer.  Nothing is decoded up
+ * front: station, line and branch data are read from the buffer only when asked for, through
+ * StationView, LineView and BranchView flyweights or the index-based accessors on this class.
+ *
+ * When opened with open(File), the snapshot file is memory-mapped, so processes that map the same
+ * file share its pages and opening cost does not depend on the size of the network.
+ *
+ * Instances are immutable and safe for use by multiple threads.
+ */
+public class NetworkSnapshot {
+    private final ByteBuffer buf;
+    private final int base;
+    private final int numStrings;
+    private final int stringTablePos;
+    private final int numStations;
+    private final int stationTablePos;
+    private final int stationIdIndexPos;
+    private final int numLines;
+    private final int lineTablePos;
+
+    private NetworkSnapshot(ByteBuffer buf) throws NetworkSnapshotException {
+        this.buf = buf;
+        base = NetworkSnapshotFormat.HEADER_SIZE;
+        numStrings = buf.getInt(base);
+        stringTablePos = buf.getInt(base + 4);
+        numStations = buf.getInt(base + 8);
+        stationTablePos = buf.getInt(base + 12);
+        stationIdIndexPos = buf.getInt(base + 16);
+        numLines = buf.getInt(base + 20);
+        lineTablePos = buf.getInt(base + 24);
+
+        int payloadLength = buf.limit() - base;
+        if (numStrings < 0 || numStations < 0 || numLines < 0
+                || stringTablePos + 4L * numStrings > payloadLength
+                || stationTablePos + (long) NetworkSnapshotFormat.STATION_RECORD_SIZE * numStations > payloadLength
+                || stationIdIndexPos + 4L * numStations > payloadLength
+                || lineTablePos + 4L * numLines > payloadLength) {
+            throw new NetworkSnapshotException("Malformed snapshot section table");
+        }
+    }
+
+    /**
+     * Memory-map snapshot file and produce a view of it.  The file may be closed (or even deleted)
+     * once this method returns; the mapping stays valid for as long as the snapshot is reachable.
+     *
+     * @param file            the snapshot file
+     * @param verifyChecksum  true if checksum is to be verified (this reads every page of the file)
+     * @return  view of snapshot in file
+     * @throws IOException    when file cannot be mapped
+     * @throws NetworkSnapshotException  when file is not a snapshot of a supported version, or fails its checksum
+     */
+    public static NetworkSnapshot open(File file, boolean verifyChecksum)
+            throws IOException, NetworkSnapshotException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return wrap(mapped, verifyChecksum);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Produce view of snapshot held in given buffer, starting at position 0 of the buffer.
+     * Buffer must not be modified while snapshot is in use.
+     *
+     * @param buf             buffer holding snapshot
+     * @param verifyChecksum  true if checksum is to be verified
+     * @return  view of snapshot in buffer
+     * @throws NetworkSnapshotException  when buffer does not hold a snapshot of a supported version,
+     * or fails its checksum
+     */
+    public static NetworkSnapshot wrap(ByteBuffer buf, boolean verifyChecksum) throws NetworkSnapshotException {
+        ByteBuffer view = buf.duplicate();
+        view.clear();
+        if (view.capacity() < NetworkSnapshotFormat.HEADER_SIZE + NetworkSnapshotFormat.SECTION_TABLE_SIZE) {
+            throw new NetworkSnapshotException("Snapshot too short");
+        }
+        if (view.getInt(0) != NetworkSnapshotFormat.MAGIC) {
+            throw new NetworkSnapshotException("Not a network snapshot");
+        }
+        int version = view.getInt(4);
+        if (version != NetworkSnapshotFormat.VERSION) {
+            throw new NetworkSnapshotException("Unsupported snapshot version: " + version);
+        }
+        int length = view.getInt(8);
+        if (length < NetworkSnapshotFormat.SECTION_TABLE_SIZE
+                || length > view.capacity() - NetworkSnapshotFormat.HEADER_SIZE) {
+            throw new NetworkSnapshotException("Malformed snapshot header");
+        }
+        view.limit(NetworkSnapshotFormat.HEADER_SIZE + length);
+
+        if (verifyChecksum && checksum(view, length) != view.getInt(12)) {
+            throw new NetworkSnapshotException("Snapshot checksum mismatch");
+        }
+
+        return new NetworkSnapshot(view);
+    }
+
+    public int getNumStations() {
+        return numStations;
+    }
+
+    public int getNumLines() {
+        return numLines;
+    }
+
+    /**
+     * Get view of station with given index
+     *
+     * @param index  index of station, 0 <= index < getNumStations()
+     * @return  view of station
+     */
+    public StationView getStation(int index) {
+        checkIndex(index, numStations);
+        return new StationView(this, index);
+    }
+
+    /**
+     * Find station with given id by binary search over the station id index
+     *
+     * @param id  the station id
+     * @return  view of station with given id, or null if snapshot has no such station
+     */
+    public StationView findStation(String id) {
+        int index = findStationIndex(id);
+        return index < 0 ? null : new StationView(this, index);
+    }
+
+    /**
+     * Find index of station with given id by binary search over the station id index
+     *
+     * @param id  the station id
+     * @return  index of station with given id, or -1 if snapshot has no such station
+     */
+    public int findStationIndex(String id) {
+        int low = 0;
+        int high = numStations - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int index = buf.getInt(base + stationIdIndexPos + 4 * mid);
+            int cmp = compareString(stationField(index, 0), id);
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get view of line with given index
+     *
+     * @param index  index of line, 0 <= index < getNumLines()
+     * @return  view of line
+     */
+    public LineView getLine(int index) {
+        checkIndex(index, numLines);
+        return new LineView(this, buf.getInt(base + lineTablePos + 4 * index));
+    }
+
+    public String getStationId(int index) {
+        return string(stationField(index, 0));
+    }
+
+    public String getStationName(int index) {
+        return string(stationField(index, 4));
+    }
+
+    public double getStationLatitude(int index) {
+        return buf.getDouble(stationRecord(index) + 8);
+    }
+
+    public double getStationLongitude(int index) {
+        return buf.getDouble(stationRecord(index) + 16);
+    }
+
+    int getInt(int pos) {
+        return buf.getInt(base + pos);
+    }
+
+    double getDouble(int pos) {
+        return buf.getDouble(base + pos);
+    }
+
+    /**
+     * Decode string with given index in string table
+     */
+    String string(int stringIndex) {
+        checkIndex(stringIndex, numStrings);
+        int pos = base + buf.getInt(base + stringTablePos + 4 * stringIndex);
+        int length = buf.getShort(pos) & 0xFFFF;
+        char[] chars = new char[length];
+        int count = 0;
+        int end = pos + 2 + length;
+
+        for (int i = pos + 2; i < end; ) {
+            int b = buf.get(i) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                i++;
+            }
+            else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (buf.get(i + 1) & 0x3F));
+                i += 2;
+            }
+            else {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((buf.get(i + 1) & 0x3F) << 6)
+                        | (buf.get(i + 2) & 0x3F));
+                i += 3;
+            }
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Compare string with given index in string table to s, in String.compareTo order, without decoding it
+     */
+    private int compareString(int stringIndex, String s) {
+        int pos = base + buf.getInt(base + stringTablePos + 4 * stringIndex);
+        int end = pos + 2 + (buf.getShort(pos) & 0xFFFF);
+        int k = 0;
+
+        for (int i = pos + 2; i < end; k++) {
+            int b = buf.get(i) & 0xFF;
+            char c;
+            if (b < 0x80) {
+                c = (char) b;
+                i++;
+            }
+            else if ((b & 0xE0) == 0xC0) {
+                c = (char) (((b & 0x1F) << 6) | (buf.get(i + 1) & 0x3F));
+                i += 2;
+            }
+            else {
+                c = (char) (((b & 0x0F) << 12) | ((buf.get(i + 1) & 0x3F) << 6) | (buf.get(i + 2) & 0x3F));
+                i += 3;
+            }
+            if (k == s.length()) {
+                return 1;
+            }
+            if (c != s.charAt(k)) {
+                return c - s.charAt(k);
+            }
+        }
+
+        return k - s.length();
+    }
+
+    private int stationRecord(int index) {
+        checkIndex(index, numStations);
+        return base + stationTablePos + NetworkSnapshotFormat.STATION_RECORD_SIZE * index;
+    }
+
+    private int stationField(int index, int offset) {
+        return buf.getInt(stationRecord(index) + offset);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    private static int checksum(ByteBuffer view, int length) {
+        final int CHUNK_SIZE = 8192;
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        ByteBuffer payload = view.duplicate();
+        payload.position(NetworkSnapshotFormat.HEADER_SIZE);
+
+        int remaining = length;
+        while (remaining > 0) {
+            int n = Math.min(remaining, CHUNK_SIZE);
+            payload.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+            remaining -= n;
+        }
+
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,48 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+import ca.ubc.cs.cpsc210.mindthegap.TfL.FileDataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.TfL.StreamingDataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.StationManager;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLLineParser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline tool (plain JVM, no Android dependencies) that parses the line data files named in
+ * LineResourceData and compiles them into a single network snapshot.
+ *
+ * Usage: NetworkSnapshotCompiler [input directory] [output file]
+ * (defaults: res/raw and res/raw/network_snapshot.bin)
+ */
+public class NetworkSnapshotCompiler {
+    public static void main(String[] args) throws Exception {
+        File inputDir = new File(args.length > 0 ? args[0] : "res/raw");
+        File output = new File(args.length > 1 ? args[1] : "res/raw/" + NetworkSnapshotLoader.SNAPSHOT_RESOURCE + ".bin");
+        List<Line> lines = new ArrayList<Line>();
+        StationManager stnManager = StationManager.getInstance();
+
+        for (LineResourceData lmd : LineResourceData.values()) {
+            StreamingDataProvider dataProvider = new FileDataProvider(new File(inputDir, lmd.getFileName()));
+            Line line = TfLLineParser.parseLine(lmd, dataProvider.dataSourceToReader());
+            stnManager.addStationsOnLine(line);
+            lines.add(line);
+        }
+
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            NetworkSnapshotWriter.write(lines, os);
+        } finally {
+            os.close();
+        }
+
+        System.out.println("Wrote " + lines.size() + " lines, " + stnManager.getNumStations()
+                + " stations to " + output + " (" + output.length() + " bytes)");
+    }
+}
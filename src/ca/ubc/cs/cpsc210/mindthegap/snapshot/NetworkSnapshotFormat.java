@@ -0,0 +1,42 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+/**
+ * Layout of a binary network snapshot.  All values are big-endian; all positions are byte offsets
+ * from the start of the payload.  Every section can be addressed directly, so a snapshot can be
+ * read in place (e.g. from a memory-mapped file) without first being decoded.
+ *
+ * Header:
+ * <ul>
+ *     <li>int    MAGIC</li>
+ *     <li>int    VERSION</li>
+ *     <li>int    length of payload in bytes</li>
+ *     <li>int    CRC-32 of payload</li>
+ * </ul>
+ * Payload:
+ * <ul>
+ *     <li>section table: int string count, int string table position, int station count,
+ *         int station table position, int station id index position, int line count,
+ *         int line table position</li>
+ *     <li>string table: int position of each string, followed by the strings, each in
+ *         modified UTF-8 (DataOutput.writeUTF)</li>
+ *     <li>station table: for each station, a STATION_RECORD_SIZE record of int id string,
+ *         int name string, double lat, double lon</li>
+ *     <li>station id index: station indices ordered by station id</li>
+ *     <li>line table: int position of each line, followed by the lines.  Each line is int resource
+ *         data name string, int id string, int name string, int position of stop sequences, int station
+ *         count, int station index for each station in line order, int branch count, int position of
+ *         each branch, the branches, each an int point count followed by lat, lon doubles, and then
+ *         the stop sequences: int sequence count, int position of each sequence, and the sequences,
+ *         each an int station count followed by the station index of each station in order</li>
+ * </ul>
+ */
+final class NetworkSnapshotFormat {
+    static final int MAGIC = 0x4D544753;   // "MTGS"
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 16;
+    static final int SECTION_TABLE_SIZE = 28;
+    static final int STATION_RECORD_SIZE = 24;
+
+    private NetworkSnapshotFormat() {
+    }
+}
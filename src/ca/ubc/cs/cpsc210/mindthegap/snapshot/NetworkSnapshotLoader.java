@@ -0,0 +1,102 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.*;
+import ca.ubc.cs.cpsc210.mindthegap.snapshot.exception.NetworkSnapshotException;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds lines, stations and branches from a binary network snapshot written by NetworkSnapshotWriter.
+ */
+public class NetworkSnapshotLoader {
+    /** name (without extension) of snapshot in raw resources */
+    public static final String SNAPSHOT_RESOURCE = "network_snapshot";
+
+    /**
+     * Load lines from snapshot.  As with TfLLineParser, a station already known to the station manager
+     * is shared rather than duplicated.  Stations are not added to the station manager.  Input stream
+     * is closed on return.
+     *
+     * @param is  stream from which snapshot is read
+     * @return    lines in the order in which they were written
+     * @throws IOException  when error occurs reading from stream
+     * @throws NetworkSnapshotException  when snapshot has wrong magic number or version, fails its
+     * checksum or is otherwise malformed
+     */
+    public static List<Line> load(InputStream is) throws IOException, NetworkSnapshotException {
+        byte[] bytes;
+
+        try {
+            bytes = readFully(is);
+        } finally {
+            is.close();
+        }
+
+        try {
+            return load(NetworkSnapshot.wrap(ByteBuffer.wrap(bytes), true));
+        } catch (IndexOutOfBoundsException e) {
+            throw new NetworkSnapshotException("Malformed snapshot payload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Build lines from snapshot view.  As with TfLLineParser, a station already known to the station
+     * manager is shared rather than duplicated.  Stations are not added to the station manager.
+     *
+     * @param snapshot  the snapshot
+     * @return          lines in the order in which they were written
+     * @throws NetworkSnapshotException  when snapshot names line resource data unknown to this version of the app
+     */
+    public static List<Line> load(NetworkSnapshot snapshot) throws NetworkSnapshotException {
+        StationManager stnManager = StationManager.getInstance();
+        Station[] stations = new Station[snapshot.getNumStations()];
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = stnManager.getOrCreateStation(snapshot.getStationId(i), snapshot.getStationName(i),
+                    new LatLon(snapshot.getStationLatitude(i), snapshot.getStationLongitude(i)));
+        }
+
+        List<Line> lines = new ArrayList<Line>(snapshot.getNumLines());
+        for (int i = 0; i < snapshot.getNumLines(); i++) {
+            LineView lineView = snapshot.getLine(i);
+            LineResourceData lmd = lineView.getResourceData();
+            if (lmd == null) {
+                throw new NetworkSnapshotException("Unknown line resource data in snapshot");
+            }
+            Line line = new Line(lmd, lineView.getId(), lineView.getName());
+
+            for (int j = 0; j < lineView.getNumStations(); j++) {
+                line.addStation(stations[lineView.getStationIndex(j)]);
+            }
+            for (int j = 0; j < lineView.getNumBranches(); j++) {
+                line.addBranch(new Branch(lineView.getBranch(j).toCoordinates()));
+            }
+            for (int s = 0; s < lineView.getNumStopSequences(); s++) {
+                List<Station> sequence = new ArrayList<Station>(lineView.getStopSequenceLength(s));
+                for (int j = 0; j < lineView.getStopSequenceLength(s); j++) {
+                    sequence.add(stations[lineView.getStopSequenceStationIndex(s, j)]);
+                }
+                line.addStopSequence(sequence);
+            }
+
+            lines.add(line);
+        }
+
+        return lines;
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buff = new byte[8192];
+        int read;
+        while ((read = is.read(buff)) != -1) {
+            bytes.write(buff, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,203 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Branch;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Writes lines, their stations and their branches to a binary network snapshot
+ * (see NetworkSnapshotFormat for layout).
+ */
+public class NetworkSnapshotWriter {
+
+    /**
+     * Write snapshot of given lines to output stream.  Stations shared by several lines are
+     * written once.  Output stream is not closed.
+     *
+     * @param lines  the lines to write
+     * @param os     stream to which snapshot is written
+     * @throws IOException  when error occurs writing to stream
+     */
+    public static void write(List<Line> lines, OutputStream os) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        Map<Station, Integer> stations = new LinkedHashMap<Station, Integer>();
+
+        for (Line line : lines) {
+            intern(strings, line.getResourceData().name());
+            intern(strings, line.getId());
+            intern(strings, line.getName());
+            for (Station stn : line) {
+                if (!stations.containsKey(stn)) {
+                    stations.put(stn, stations.size());
+                    intern(strings, stn.getID());
+                    intern(strings, stn.getName());
+                }
+            }
+        }
+
+        int stringTablePos = NetworkSnapshotFormat.SECTION_TABLE_SIZE;
+        byte[] stringTable = writeStrings(strings.keySet(), stringTablePos);
+        int stationTablePos = stringTablePos + stringTable.length;
+        byte[] stationTable = writeStations(stations.keySet(), strings);
+        int stationIdIndexPos = stationTablePos + stationTable.length;
+        byte[] stationIdIndex = writeStationIdIndex(stations);
+        int lineTablePos = stationIdIndexPos + stationIdIndex.length;
+        byte[] lineTable = writeLines(lines, strings, stations, lineTablePos);
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(strings.size());
+        payload.writeInt(stringTablePos);
+        payload.writeInt(stations.size());
+        payload.writeInt(stationTablePos);
+        payload.writeInt(stationIdIndexPos);
+        payload.writeInt(lines.size());
+        payload.writeInt(lineTablePos);
+        payload.write(stringTable);
+        payload.write(stationTable);
+        payload.write(stationIdIndex);
+        payload.write(lineTable);
+        payload.flush();
+
+        byte[] bytes = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(NetworkSnapshotFormat.MAGIC);
+        out.writeInt(NetworkSnapshotFormat.VERSION);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+        out.flush();
+    }
+
+    private static byte[] writeStrings(Collection<String> strings, int sectionPos) throws IOException {
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+        DataOutputStream section = new DataOutputStream(sectionBytes);
+        int recordsPos = sectionPos + 4 * strings.size();
+
+        for (String s : strings) {
+            section.writeInt(recordsPos + records.size());
+            records.writeUTF(s);
+        }
+        records.flush();
+        section.write(recordBytes.toByteArray());
+        section.flush();
+
+        return sectionBytes.toByteArray();
+    }
+
+    private static byte[] writeStations(Collection<Station> stations, Map<String, Integer> strings)
+            throws IOException {
+        ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+        DataOutputStream section = new DataOutputStream(sectionBytes);
+
+        for (Station stn : stations) {
+            section.writeInt(strings.get(stn.getID()));
+            section.writeInt(strings.get(stn.getName()));
+            section.writeDouble(stn.getLocn().getLatitude());
+            section.writeDouble(stn.getLocn().getLongitude());
+        }
+        section.flush();
+
+        return sectionBytes.toByteArray();
+    }
+
+    private static byte[] writeStationIdIndex(Map<Station, Integer> stations) throws IOException {
+        List<Station> byId = new ArrayList<Station>(stations.keySet());
+        Collections.sort(byId, new Comparator<Station>() {
+            @Override
+            public int compare(Station s1, Station s2) {
+                return s1.getID().compareTo(s2.getID());
+            }
+        });
+
+        ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+        DataOutputStream section = new DataOutputStream(sectionBytes);
+        for (Station stn : byId) {
+            section.writeInt(stations.get(stn));
+        }
+        section.flush();
+
+        return sectionBytes.toByteArray();
+    }
+
+    private static byte[] writeLines(List<Line> lines, Map<String, Integer> strings,
+                                     Map<Station, Integer> stations, int sectionPos) throws IOException {
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+        DataOutputStream section = new DataOutputStream(sectionBytes);
+        int recordsPos = sectionPos + 4 * lines.size();
+
+        for (Line line : lines) {
+            int linePos = recordsPos + records.size();
+            section.writeInt(linePos);
+
+            Set<Branch> branches = line.getBranches();
+            int branchesSize = 0;
+            for (Branch branch : branches) {
+                branchesSize += 4 + 8 * branch.getCoordinates().length;
+            }
+            int stationsSize = 4 + 4 * line.getStations().size();
+            int sequencesPos = linePos + 16 + stationsSize + 4 + 4 * branches.size() + branchesSize;
+
+            records.writeInt(strings.get(line.getResourceData().name()));
+            records.writeInt(strings.get(line.getId()));
+            records.writeInt(strings.get(line.getName()));
+            records.writeInt(sequencesPos);
+            records.writeInt(line.getStations().size());
+            for (Station stn : line) {
+                records.writeInt(stations.get(stn));
+            }
+            records.writeInt(branches.size());
+
+            int branchPos = recordsPos + records.size() + 4 * branches.size();
+            for (Branch branch : branches) {
+                records.writeInt(branchPos);
+                branchPos += 4 + 8 * branch.getCoordinates().length;
+            }
+            for (Branch branch : branches) {
+                records.writeInt(branch.getNumPoints());
+                for (double next : branch.getCoordinates()) {
+                    records.writeDouble(next);
+                }
+            }
+
+            List<List<Station>> sequences = line.getStopSequences();
+            records.writeInt(sequences.size());
+            int sequencePos = sequencesPos + 4 + 4 * sequences.size();
+            for (List<Station> sequence : sequences) {
+                records.writeInt(sequencePos);
+                sequencePos += 4 + 4 * sequence.size();
+            }
+            for (List<Station> sequence : sequences) {
+                records.writeInt(sequence.size());
+                for (Station stn : sequence) {
+                    records.writeInt(stations.get(stn));
+                }
+            }
+        }
+        records.flush();
+        section.write(recordBytes.toByteArray());
+        section.flush();
+
+        return sectionBytes.toByteArray();
+    }
+
+    private static void intern(Map<String, Integer> strings, String s) {
+        if (!strings.containsKey(s)) {
+            strings.put(s, strings.size());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot;
+
+/**
+ * Flyweight view of a station in a network snapshot.  Holds only the station's index; all
+ * data is read from the snapshot on request.
+ */
+public class StationView {
+    private final NetworkSnapshot snapshot;
+    private final int index;
+
+    StationView(NetworkSnapshot snapshot, int index) {
+        this.snapshot = snapshot;
+        this.index = index;
+    }
+
+    /**
+     * Get index of this station in snapshot (stations are numbered densely from 0)
+     *
+     * @return  index of station
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getID() {
+        return snapshot.getStationId(index);
+    }
+
+    public String getName() {
+        return snapshot.getStationName(index);
+    }
+
+    public double getLatitude() {
+        return snapshot.getStationLatitude(index);
+    }
+
+    public double getLongitude() {
+        return snapshot.getStationLongitude(index);
+    }
+
+    /**
+     * Two station views are equal if they view the same station of the same snapshot
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        StationView other = (StationView) o;
+
+        return snapshot == other.snapshot && index == other.index;
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+}
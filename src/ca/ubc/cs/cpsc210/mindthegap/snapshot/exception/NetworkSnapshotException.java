@@ -0,0 +1,14 @@
+package ca.ubc.cs.cpsc210.mindthegap.snapshot.exception;
+
+/**
+ * Represents exception raised when a network snapshot is malformed, corrupt or of an unsupported version.
+ */
+public class NetworkSnapshotException extends Exception {
+    public NetworkSnapshotException() {
+        super();
+    }
+
+    public NetworkSnapshotException(String msg) {
+        super(msg);
+    }
+}
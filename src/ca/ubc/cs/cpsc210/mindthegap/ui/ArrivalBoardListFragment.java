@@ -12,15 +12,18 @@ import ca.ubc.cs.cpsc210.mindthegap.R;
 import ca.ubc.cs.cpsc210.mindthegap.TfL.TfLHttpArrivalDataProvider;
 import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
 import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalBoard;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
 import ca.ubc.cs.cpsc210.mindthegap.model.StationManager;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 
 /**
- * Fragment to display list of arrival boards
+ * Fragment to display list of arrival boards.  Boards are kept up to date by the
+ * ArrivalsPoller while the fragment is showing.
  */
-public class ArrivalBoardListFragment extends ListFragment {
+public class ArrivalBoardListFragment extends ListFragment implements ArrivalsUpdateListener {
     private ArrivalGroupListAdapter adapter;
 
     @Override
@@ -38,6 +41,26 @@ public class ArrivalBoardListFragment extends ListFragment {
         return inflater.inflate(R.layout.arrivalboard_fragment_list_layout, null);
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        ArrivalsPoller.getInstance().addListener(getActivity(), this);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        ArrivalsPoller.getInstance().removeListener(this);
+    }
+
+    @Override
+    public void onArrivalsUpdated(Station stn, ArrivalsChangeSet changes) {
+        if (!changes.getAddedBoards().isEmpty() || !changes.getRemovedBoards().isEmpty()) {
+            adapter.clear();
+            adapter.addAll(getArrivalBoardsForSelectedStation());
+        }
+    }
+
     @Override
     public void onListItemClick(ListView l, View v, int position, long id) {
         ArrivalBoard ag = adapter.getItem(position);
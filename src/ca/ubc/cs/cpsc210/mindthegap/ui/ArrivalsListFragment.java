@@ -2,6 +2,7 @@ package ca.ubc.cs.cpsc210.mindthegap.ui;
 
 import android.app.ListFragment;
 import android.os.Bundle;
+import android.os.Handler;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
@@ -9,6 +10,7 @@ import android.widget.TextView;
 import ca.ubc.cs.cpsc210.mindthegap.R;
 import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
 import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalBoard;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
 import ca.ubc.cs.cpsc210.mindthegap.model.Station;
 import ca.ubc.cs.cpsc210.mindthegap.model.StationManager;
 
@@ -17,23 +19,91 @@ import java.util.Iterator;
 
 /**
  * Fragment to display list of arrivals at selected station for particular line
- * and particular platform (as specified by travel direction).
+ * and particular platform (as specified by travel direction).  Time remaining
+ * until each arrival is counted down from the clock while the fragment is showing,
+ * and arrivals are removed from the list once their trains have arrived.  Arrivals are
+ * kept up to date by the ArrivalsPoller while the fragment is showing.
  */
-public class ArrivalsListFragment extends ListFragment {
+public class ArrivalsListFragment extends ListFragment implements ArrivalsUpdateListener {
+    private static final long MILLIS_PER_MIN = 60 * 1000;
+    private static final long MIN_TICK_MILLIS = 1000;
+    private String lineId;
+    private String travelDirn;
+    private ArrivalsAdapter adapter;
+    private Handler handler;
+    private Runnable tick;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         Bundle bundle = getArguments();
-        String lineId = bundle.getString(getString(R.string.line_id_key));
-        String travelDirn = bundle.getString(getString(R.string.travel_dirn_key));
-
+        lineId = bundle.getString(getString(R.string.line_id_key));
+        travelDirn = bundle.getString(getString(R.string.travel_dirn_key));
 
+        StationManager.getInstance().getSelected().removeArrivedArrivals(System.currentTimeMillis());
         ArrayList<Arrival> arrivals = getArrivalsForSelectedStationOnLineInDirection(lineId, travelDirn);
-        ArrivalsAdapter adapter = new ArrivalsAdapter(arrivals);
+        adapter = new ArrivalsAdapter(arrivals);
 
         setListAdapter(adapter);
+
+        handler = new Handler();
+        tick = new Runnable() {
+            @Override
+            public void run() {
+                countDown();
+            }
+        };
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        countDown();
+        ArrivalsPoller.getInstance().addListener(getActivity(), this);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        handler.removeCallbacks(tick);
+        ArrivalsPoller.getInstance().removeListener(this);
+    }
+
+    @Override
+    public void onArrivalsUpdated(Station stn, ArrivalsChangeSet changes) {
+        adapter.clear();
+        adapter.addAll(getArrivalsForSelectedStationOnLineInDirection(lineId, travelDirn));
+        countDown();
+    }
+
+    /**
+     * Remove arrivals whose trains have arrived, redraw time remaining until other arrivals
+     * and schedule next count down for when the displayed time of some arrival next changes
+     */
+    private void countDown() {
+        long now = System.currentTimeMillis();
+        Station selected = StationManager.getInstance().getSelected();
+
+        if (selected != null && !selected.removeArrivedArrivals(now).isEmpty()) {
+            adapter.clear();
+            adapter.addAll(getArrivalsForSelectedStationOnLineInDirection(lineId, travelDirn));
+        }
+        else {
+            adapter.notifyDataSetChanged();
+        }
+
+        long delay = Long.MAX_VALUE;
+        for (int i = 0; i < adapter.getCount(); i++) {
+            long remaining = adapter.getItem(i).getExpectedArrival() - now;
+            long untilChange = remaining % MILLIS_PER_MIN == 0 ? MILLIS_PER_MIN : remaining % MILLIS_PER_MIN;
+            delay = Math.min(delay, remaining < MILLIS_PER_MIN ? remaining + 1 : untilChange);
+        }
+
+        handler.removeCallbacks(tick);
+        if (delay != Long.MAX_VALUE) {
+            handler.postDelayed(tick, Math.max(delay, MIN_TICK_MILLIS));
+        }
     }
 
     /**
@@ -77,7 +147,7 @@ public class ArrivalsListFragment extends ListFragment {
             TextView platform = (TextView) convertView.findViewById(R.id.platform);
             platform.setText(arrival.getPlatform());
             TextView waitTime = (TextView) convertView.findViewById(R.id.wait_time);
-            waitTime.setText(Integer.toString(arrival.getTimeToStationInMins()) + " mins");
+            waitTime.setText(Integer.toString(arrival.getTimeToStationInMins(System.currentTimeMillis())) + " mins");
 
             return convertView;
         }
@@ -0,0 +1,207 @@
+package ca.ubc.cs.cpsc210.mindthegap.ui;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import ca.ubc.cs.cpsc210.mindthegap.TfL.ArrivalsPollingPolicy;
+import ca.ubc.cs.cpsc210.mindthegap.TfL.TfLDataProviders;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.model.StationManager;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.ParsedArrivals;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLArrivalsParser;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Keeps arrivals at the selected station up to date while a screen showing them is visible.
+ * Screens register as listeners when they resume and unregister when they pause; arrivals are
+ * downloaded in the background at intervals chosen by an ArrivalsPollingPolicy for as long as
+ * there is at least one listener.  Each download is parsed in the background too; only the merge
+ * into the selected station is done on the UI thread.
+ *
+ * All methods must be called on the UI thread.
+ */
+public class ArrivalsPoller {
+    private static final String AP_TAG = "AP_TAG";
+    private static final String POLL_GROUP = "poll";
+    private static ArrivalsPoller instance;
+    private Handler handler;
+    private Runnable poll;
+    private List<ArrivalsUpdateListener> listeners;
+    private ArrivalsPollingPolicy policy;
+    private ConnectivityManager connMgr;
+    private TaskScheduler.Task<ParsedArrivals> task;
+
+    private ArrivalsPoller() {
+        handler = new Handler(Looper.getMainLooper());
+        poll = new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        };
+        listeners = new ArrayList<ArrivalsUpdateListener>();
+        policy = new ArrivalsPollingPolicy();
+        task = null;
+    }
+
+    /**
+     * Get instance of arrivals poller
+     *
+     * @return  the arrivals poller
+     */
+    public static ArrivalsPoller getInstance() {
+        if (instance == null) {
+            instance = new ArrivalsPoller();
+        }
+        return instance;
+    }
+
+    /**
+     * Register listener to be notified when arrivals at selected station are updated.  Polling
+     * starts when the first listener is registered.
+     *
+     * @param context   context of screen showing arrivals
+     * @param listener  the listener
+     */
+    public void addListener(Context context, ArrivalsUpdateListener listener) {
+        if (connMgr == null) {
+            connMgr = (ConnectivityManager) context.getApplicationContext()
+                    .getSystemService(Context.CONNECTIVITY_SERVICE);
+        }
+
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+            if (listeners.size() == 1) {
+                schedule(nextDelay());
+            }
+        }
+    }
+
+    /**
+     * Unregister listener.  Polling pauses when the last listener is unregistered; a download
+     * already in flight is allowed to complete, so that its data is not wasted.
+     *
+     * @param listener  the listener
+     */
+    public void removeListener(ArrivalsUpdateListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            handler.removeCallbacks(poll);
+        }
+    }
+
+    /**
+     * Cancel download in flight and restart polling for the newly selected station.  Must be
+     * called when the selected station changes.
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        policy.succeeded();
+
+        handler.removeCallbacks(poll);
+        if (!listeners.isEmpty()) {
+            schedule(nextDelay());
+        }
+    }
+
+    /**
+     * Start download of arrivals at selected station, or back off if there is no network connection
+     */
+    private void poll() {
+        final Station stn = StationManager.getInstance().getSelected();
+        if (task != null || stn == null) {
+            return;
+        }
+
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            Log.d(AP_TAG, "no network connection; backing off");
+            schedule(policy.failed());
+            return;
+        }
+
+        task = UiTaskScheduler.getInstance().submit(TaskScheduler.Priority.REFRESH, POLL_GROUP,
+                new Callable<ParsedArrivals>() {
+                    @Override
+                    public ParsedArrivals call() throws Exception {
+                        String response = TfLDataProviders.arrivalsFor(stn).dataSourceToString();
+                        return TfLArrivalsParser.readArrivals(stn, response);
+                    }
+                },
+                new TaskScheduler.Callback<ParsedArrivals>() {
+                    @Override
+                    public void onSuccess(ParsedArrivals arrivals) {
+                        completed(stn, arrivals);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        Log.d(AP_TAG, e.getMessage(), e);
+                        completed(stn, null);
+                    }
+                });
+    }
+
+    /**
+     * Handle completion of download of arrivals at given station (arrivals is null if download or
+     * parsing failed)
+     */
+    private void completed(Station stn, ParsedArrivals arrivals) {
+        task = null;
+
+        // discard arrivals for a station that is no longer selected
+        if (stn == StationManager.getInstance().getSelected()) {
+            schedule(merge(stn, arrivals));
+        }
+    }
+
+    private long nextDelay() {
+        Station stn = StationManager.getInstance().getSelected();
+        if (stn == null) {
+            return 0;
+        }
+        return policy.nextDelay(stn, System.currentTimeMillis(), connMgr.isActiveNetworkMetered());
+    }
+
+    private void schedule(long delay) {
+        handler.removeCallbacks(poll);
+        if (!listeners.isEmpty() && StationManager.getInstance().getSelected() != null) {
+            Log.d(AP_TAG, "next poll in " + delay + " ms");
+            handler.postDelayed(poll, delay);
+        }
+    }
+
+    /**
+     * Merge downloaded arrivals into given station and notify listeners; produce delay until next poll
+     */
+    private long merge(Station stn, ParsedArrivals arrivals) {
+        if (arrivals == null) {
+            return policy.failed();
+        }
+
+        try {
+            ArrivalsChangeSet changes = arrivals.merge().get(stn);
+            policy.succeeded();
+            Log.d(AP_TAG, "arrivals at " + stn.getName() + ": " + changes);
+            for (ArrivalsUpdateListener next : new ArrayList<ArrivalsUpdateListener>(listeners)) {
+                next.onArrivalsUpdated(stn, changes);
+            }
+            return nextDelay();
+        } catch (TfLArrivalsDataMissingException e) {
+            Log.d(AP_TAG, e.getMessage(), e);
+            return policy.failed();
+        }
+    }
+}
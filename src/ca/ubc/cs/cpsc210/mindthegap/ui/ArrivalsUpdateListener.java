@@ -0,0 +1,18 @@
+package ca.ubc.cs.cpsc210.mindthegap.ui;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+
+/**
+ * Handles arrivals at selected station being brought up to date in the background
+ */
+public interface ArrivalsUpdateListener {
+
+    /**
+     * Called on the UI thread when newly downloaded arrivals have been merged into selected station
+     *
+     * @param stn      the selected station
+     * @param changes  changes made to station's arrival boards
+     */
+    void onArrivalsUpdated(Station stn, ArrivalsChangeSet changes);
+}
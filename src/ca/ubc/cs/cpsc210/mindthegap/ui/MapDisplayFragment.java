@@ -2,10 +2,14 @@ package ca.ubc.cs.cpsc210.mindthegap.ui;
 
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.location.Location;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
@@ -16,10 +20,15 @@ import android.view.ViewTreeObserver;
 import android.widget.Toast;
 import ca.ubc.cs.cpsc210.mindthegap.R;
 import ca.ubc.cs.cpsc210.mindthegap.TfL.AndroidFileDataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.TfL.ArrivalsPrefetcher;
 import ca.ubc.cs.cpsc210.mindthegap.TfL.DataProvider;
 import ca.ubc.cs.cpsc210.mindthegap.model.*;
-import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLLineParser;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.LineLoadResult;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.ParallelLineLoader;
+import ca.ubc.cs.cpsc210.mindthegap.routing.TransferMatrix;
+import ca.ubc.cs.cpsc210.mindthegap.snapshot.NetworkSnapshotLoader;
 import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import ca.ubc.cs.cpsc210.mindthegap.util.SphericalGeometry;
 import org.osmdroid.DefaultResourceProxyImpl;
 import org.osmdroid.ResourceProxy;
 import org.osmdroid.api.IMapController;
@@ -40,7 +49,11 @@ import org.osmdroid.views.overlay.mylocation.IMyLocationConsumer;
 import org.osmdroid.views.overlay.mylocation.IMyLocationProvider;
 import org.osmdroid.views.overlay.mylocation.MyLocationNewOverlay;
 
+import java.io.BufferedInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -51,6 +64,16 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     private static final String MDF_TAG = "MDF_TAG";
     /** minimum change in distance to trigger update of user location */
     private static final float MIN_UPDATE_DISTANCE = 50.0f;
+    /** number of stations nearest to user for which arrivals are prefetched */
+    private static final int PREFETCH_STATIONS = 3;
+    /** maximum distance (in metres) from user to station for which arrivals are prefetched */
+    private static final double PREFETCH_RADIUS = 1500.0;
+    /** maximum number of prefetch requests in flight at once */
+    private static final int PREFETCH_MAX_CONCURRENT = 2;
+    /** maximum amount of data (in bytes) prefetched per budget period */
+    private static final long PREFETCH_BUDGET = 256 * 1024;
+    /** prefetch budget period (in ms) */
+    private static final long PREFETCH_BUDGET_PERIOD = 10 * 60 * 1000;
     /** zoom level for map */
     private int zoomLevel = 13;
     /** centre of map */
@@ -79,8 +102,16 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     private LocationListener locationListener;
     /** last known user location (null if not available) */
     private Location lastKnownFromInstanceState;
-    /** list of tube lines to be displayed on map */
+    /** list of tube lines to be displayed on map (grows as lines finish loading) */
     private List<Line> tubeLines;
+    /** stations for which a marker has been added to stnClusterer */
+    private Set<Station> markedStns;
+    /** task loading tube lines in the background */
+    private LoadLinesTask loadLinesTask;
+    /** prefetches arrivals at stations near user */
+    private ArrivalsPrefetcher prefetcher;
+    /** direct links and fewest changes between stations on lines loaded so far */
+    private TransferMatrix transfers;
 
 
     @Override
@@ -92,12 +123,36 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         locnProvider.setLocationUpdateMinDistance(MIN_UPDATE_DISTANCE);
         stnManager = StationManager.getInstance();
         nearestStnMarker = null;
-        tubeLines = parseLines();
+        tubeLines = new ArrayList<Line>();
+        transfers = new TransferMatrix();
+        markedStns = new HashSet<Station>();
         tubeLineOverlays = new ArrayList<Polyline>();
         stnClusterer = new RadiusMarkerClusterer(getActivity());
         Drawable clusterIconD = getResources().getDrawable(R.drawable.stn_cluster);
         Bitmap clusterIcon = ((BitmapDrawable) clusterIconD).getBitmap();
         stnClusterer.setIcon(clusterIcon);
+        loadLinesTask = new LoadLinesTask(getActivity().getApplicationContext());
+        loadLinesTask.execute();
+
+        prefetcher = new ArrivalsPrefetcher(PREFETCH_MAX_CONCURRENT, PREFETCH_BUDGET, PREFETCH_BUDGET_PERIOD,
+                UiTaskScheduler.getInstance());
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        loadLinesTask.cancel(false);
+        prefetcher.cancel();
+    }
+
+    /**
+     * Get direct links and fewest changes between stations on lines loaded so far (kept up to date
+     * as lines finish loading)
+     *
+     * @return  transfer matrix
+     */
+    public TransferMatrix getTransferMatrix() {
+        return transfers;
     }
 
     @Override
@@ -212,6 +267,7 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         locOverlay.disableMyLocation();
         locnProvider.stopLocationProvider();
         mapView.setBuiltInZoomControls(false);
+        prefetcher.cancel();
     }
 
     /**
@@ -238,47 +294,104 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     }
 
     /**
-     * Parse line data from files and add all stations on lines parsed to station manager.
-     * Files containing line data are specified in LineMetaData enumeration.
+     * Line loaded (or failed to load) - called on UI thread as each line finishes loading.  The line is
+     * plotted and its stations marked straight away, so the map fills in progressively.
      *
-     * @return             list of lines parsed from files
+     * @param result   result of loading line
      */
-    private List<Line> parseLines() {
-        List<Line> lines = new ArrayList<Line>();
+    private void onLineLoaded(LineLoadResult result) {
+        Log.i(MDF_TAG, "Loaded " + result);
 
-        for(LineResourceData lineResourceData : LineResourceData.values()) {
-            Line line = parseLine(lineResourceData);
-            if(line != null) {
-                stnManager.addStationsOnLine(line);
-                lines.add(line);
+        if (result.getLine() == null) {
+            Exception e = result.getError();
+            Log.e(MDF_TAG, e.getMessage(), e);
+            if (isAdded()) {
+                Toast.makeText(getActivity(), "Unable to display " + result.getResourceData() + " line",
+                        Toast.LENGTH_LONG).show();
             }
+            return;
         }
 
-        return lines;
+        Line line = result.getLine();
+        tubeLines.add(line);
+        transfers.updateLine(line);
+
+        if (mapView != null && isAdded()) {
+            plotLines(Collections.singletonList(line));
+            markStations(line);
+
+            Location lastKnownLocation = locnProvider.getLastKnownLocation();
+            if (lastKnownLocation != null) {
+                handleLocationChange(lastKnownLocation);
+            }
+            updateOverlays();
+        }
     }
 
     /**
-     * Parse single line from file
-     *
-     * @param lineResourceData   meta data for line to be parsed
-     * @return               line parsed from file
+     * Task that loads line data in the background and adds all stations on lines loaded to station
+     * manager.  Lines are loaded from the precompiled network snapshot where possible; any line
+     * specified in LineResourceData that is missing from the snapshot (or all lines, if the snapshot
+     * cannot be read) is parsed from file, with the files read and parsed in parallel.  Each line is
+     * published to the UI thread as soon as it has been loaded.
      */
-    private Line parseLine(LineResourceData lineResourceData) {
-        String fileName = lineResourceData.getFileName();
-        String filePrefix = fileName.substring(0, fileName.lastIndexOf("."));
+    private class LoadLinesTask extends AsyncTask<Void, LineLoadResult, Void> {
+        private Context cxt;
 
-        DataProvider dataProvider = new AndroidFileDataProvider(getActivity(), filePrefix);
-        Line line = null;
+        LoadLinesTask(Context cxt) {
+            this.cxt = cxt;
+        }
 
-        try {
-            String lineData = dataProvider.dataSourceToString();
-            line = TfLLineParser.parseLine(lineResourceData, lineData);
-        } catch (Exception e) {
-            Log.e(MDF_TAG, e.getMessage(), e);
-            Toast.makeText(getActivity(), "Unable to display " + lineResourceData + " line", Toast.LENGTH_LONG).show();
+        @Override
+        protected Void doInBackground(Void... params) {
+            Set<LineResourceData> toParse = EnumSet.allOf(LineResourceData.class);
+
+            for (Line line : loadSnapshot()) {
+                stnManager.addStationsOnLine(line);
+                toParse.remove(line.getResourceData());
+                publishProgress(new LineLoadResult(line.getResourceData(), line, null, 0, 0));
+            }
+
+            ParallelLineLoader loader = new ParallelLineLoader() {
+                @Override
+                protected DataProvider getDataProvider(LineResourceData lmd) {
+                    String fileName = lmd.getFileName();
+                    return new AndroidFileDataProvider(cxt, fileName.substring(0, fileName.lastIndexOf(".")));
+                }
+
+                @Override
+                protected void onLineLoaded(LineLoadResult result) {
+                    publishProgress(result);
+                }
+            };
+            loader.loadLines(toParse);
+
+            return null;
         }
 
-        return line;
+        @Override
+        protected void onProgressUpdate(LineLoadResult... results) {
+            for (LineLoadResult next : results) {
+                onLineLoaded(next);
+            }
+        }
+
+        /**
+         * Load lines from precompiled network snapshot
+         *
+         * @return   lines loaded from snapshot; empty if snapshot is missing or cannot be read
+         */
+        private List<Line> loadSnapshot() {
+            AndroidFileDataProvider dataProvider =
+                    new AndroidFileDataProvider(cxt, NetworkSnapshotLoader.SNAPSHOT_RESOURCE);
+
+            try {
+                return NetworkSnapshotLoader.load(new BufferedInputStream(dataProvider.openSource()));
+            } catch (Exception e) {
+                Log.w(MDF_TAG, "Network snapshot unavailable, falling back to line data files", e);
+                return new ArrayList<Line>();
+            }
+        }
     }
 
     /**
@@ -290,10 +403,10 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         for (Line next : tubeLines) {
 
             for (Branch branch : next.getBranches()) {
-                List<GeoPoint> geoPoints = new ArrayList<>();
-                for (LatLon latLon : branch.getPoints()) {
-                    GeoPoint geoPoint = new GeoPoint(latLon.getLatitude(), latLon.getLongitude());
-                    geoPoints.add(geoPoint);
+                int numPoints = branch.getNumPoints();
+                List<GeoPoint> geoPoints = new ArrayList<>(numPoints);
+                for (int i = 0; i < numPoints; i++) {
+                    geoPoints.add(new GeoPoint(branch.getLatitude(i), branch.getLongitude(i)));
                 }
 
                 Polyline polyLine = new Polyline(mapView.getContext());
@@ -309,12 +422,27 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
 
 
     /**
-     * Mark all stations in station manager onto map.
+     * Mark all stations on lines loaded so far onto map.
      */
     private void markStations() {
+        for (Line next : tubeLines) {
+            markStations(next);
+        }
+    }
+
+    /**
+     * Mark stations on given line onto map, skipping stations that have already been marked
+     * (stations shared with a line loaded earlier).
+     *
+     * @param line   line whose stations are to be marked
+     */
+    private void markStations(Line line) {
         Drawable stnIconDrawable = getResources().getDrawable(R.drawable.stn_icon);
 
-        for (Station next : stnManager) {
+        for (Station next : line) {
+            if (!markedStns.add(next)) {
+                continue;
+            }
 
             GeoPoint position = new GeoPoint(next.getLocn().getLatitude(), next.getLocn().getLongitude());
 
@@ -327,6 +455,7 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
 
             stnClusterer.add(marker);
         }
+        stnClusterer.invalidate();
     }
 
     /**
@@ -340,14 +469,14 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         Drawable closestStnIconDrawable = getResources().getDrawable(R.drawable.closest_stn_icon);
 
         // set icon to default
-        if (nearest == null) {
+        if (nearest == null && nearestStnMarker != null) {
             nearestStnMarker.setIcon(stnIconDrawable);
         }
 
         if (nearest != null) {
             stnClusterer.getItems().clear();
 
-            for (Station next: stnManager) {
+            for (Station next: markedStns) {
                 if (next.equals(nearest)) {
 
                     GeoPoint position = new GeoPoint(nearest.getLocn().getLatitude(), nearest.getLocn().getLongitude());
@@ -384,7 +513,8 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
 
 
     /**
-     * Find nearest station to user, update nearest station text view and update markers on user location change
+     * Find nearest station to user, update nearest station text view and update markers on user location change.
+     * Only stations on lines that have finished loading are considered.
      *
      * @param location   the location of the user
      */
@@ -396,6 +526,33 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
 
         locationListener.onLocationChanged(nearest);
         updateMarkerOfNearest(nearest);
+        prefetchArrivalsNear(latLon);
+    }
+
+    /**
+     * Prefetch arrivals at stations nearest to given location, so that they are likely to be
+     * fresh if user selects one of them
+     *
+     * @param latLon  the location
+     */
+    private void prefetchArrivalsNear(LatLon latLon) {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                getActivity().getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return;
+        }
+
+        List<Station> nearby = new ArrayList<Station>();
+        for (Station next : stnManager.kNearest(latLon, PREFETCH_STATIONS)) {
+            if (SphericalGeometry.distanceBetween(latLon, next.getLocn()) <= PREFETCH_RADIUS) {
+                nearby.add(next);
+            }
+        }
+
+        if (prefetcher.prefetch(nearby) > 0) {
+            Log.d(MDF_TAG, "prefetching arrivals near " + latLon);
+        }
     }
 
 
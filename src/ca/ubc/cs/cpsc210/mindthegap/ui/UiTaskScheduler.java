@@ -0,0 +1,38 @@
+package ca.ubc.cs.cpsc210.mindthegap.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the application's task scheduler, which delivers results on the UI thread.  Downloads
+ * the user is waiting for, prefetches and background refreshes all share its threads, so that
+ * the number of concurrent downloads is bounded and the user's downloads are run first.
+ */
+public class UiTaskScheduler {
+    private static final int THREADS = 3;
+    private static TaskScheduler instance;
+
+    private UiTaskScheduler() {
+    }
+
+    /**
+     * Get the application's task scheduler
+     *
+     * @return  the task scheduler
+     */
+    public static synchronized TaskScheduler getInstance() {
+        if (instance == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            instance = new TaskScheduler(THREADS, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            });
+        }
+        return instance;
+    }
+}
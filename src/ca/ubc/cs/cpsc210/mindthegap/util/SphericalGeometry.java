@@ -26,4 +26,24 @@ public class SphericalGeometry {
 
         return c * RADIUS;
     }
+
+    /**
+     * Find initial bearing in degrees clockwise from north (in the range [0, 360)) of the great circle
+     * path from one lat/lon point to another
+     *
+     * @param p1  first point
+     * @param p2  second point
+     * @return bearing of p2 from p1 in degrees
+     */
+    public static double bearingBetween(LatLon p1, LatLon p2) {
+        double lat1 = p1.getLatitude() / 180.0 * Math.PI;
+        double lat2 = p2.getLatitude() / 180.0 * Math.PI;
+        double deltaLon = (p2.getLongitude() - p1.getLongitude()) / 180.0 * Math.PI;
+
+        double y = Math.sin(deltaLon) * Math.cos(lat2);
+        double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(deltaLon);
+        double bearing = Math.atan2(y, x) / Math.PI * 180.0;
+
+        return (bearing + 360.0) % 360.0;
+    }
 }
@@ -0,0 +1,325 @@
+package ca.ubc.cs.cpsc210.mindthegap.util;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs background work (e.g. downloads) on a bounded pool of threads, taking waiting tasks in order
+ * of priority and, within a priority, in order of submission.  Results are delivered to callbacks on
+ * the delivery executor (on Android, the UI thread).
+ *
+ * A task may be submitted in a group; submitting another task in the same group supersedes it: the
+ * earlier task is cancelled (its thread is interrupted if it has started) and its callback is never
+ * called.  A task is cancelled the same way by calling cancel on it.
+ *
+ * Interrupting a thread does not stop a blocking read from a socket, so work that blocks that way
+ * should also set a cancel hook (see setCancelHook) that unblocks it, e.g. by closing the connection.
+ * Hooks are called on a thread of their own, never on the thread that cancels (which may be the UI
+ * thread, on which Android forbids network operations such as closing a TLS connection).
+ *
+ * The time each task spends waiting in the queue and running is recorded against its priority.
+ *
+ * Instances are safe for use by multiple threads.
+ */
+public class TaskScheduler {
+    private static final ThreadLocal<Task<?>> CURRENT_TASK = new ThreadLocal<Task<?>>();
+    private ThreadPoolExecutor pool;
+    private ExecutorService cancelHooks;
+    private Executor delivery;
+    private Map<String, Task<?>> groups;
+    private Map<Priority, TaskStats> stats;
+    private AtomicLong sequence;
+
+    /**
+     * Priority of a task (highest first)
+     */
+    public enum Priority {
+        /** work the user is waiting for */
+        USER,
+        /** work the user is likely to wait for soon */
+        PREFETCH,
+        /** work keeping data already shown up to date */
+        REFRESH
+    }
+
+    /**
+     * Receives result of a task on the delivery executor
+     *
+     * @param <T>  type of result
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called when task completes successfully
+         *
+         * @param result  result of task
+         */
+        void onSuccess(T result);
+
+        /**
+         * Called when task fails
+         *
+         * @param e  exception thrown by task
+         */
+        void onFailure(Exception e);
+    }
+
+    /**
+     * Constructs scheduler
+     *
+     * @param threads   number of threads on which tasks run
+     * @param delivery  executor on which callbacks are called
+     */
+    public TaskScheduler(int threads, Executor delivery) {
+        this.delivery = delivery;
+        groups = new HashMap<String, Task<?>>();
+        stats = new EnumMap<Priority, TaskStats>(Priority.class);
+        for (Priority next : Priority.values()) {
+            stats.put(next, new TaskStats(next));
+        }
+        sequence = new AtomicLong();
+
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private int count = 0;
+
+                    @Override
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "TaskScheduler-" + ++count);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        cancelHooks = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "TaskScheduler-cancel");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Set hook to be called if the task running on the current thread is cancelled, replacing any
+     * hook set before.  If the task has already been cancelled, the hook is called at once (on the
+     * current thread).  Does nothing if the current thread is not running a task.  The hook is
+     * removed when the task finishes.
+     *
+     * @param hook  the hook (null to remove hook)
+     */
+    public static void setCancelHook(Runnable hook) {
+        Task<?> task = CURRENT_TASK.get();
+        if (task != null) {
+            task.setCancelHook(hook);
+        }
+    }
+
+    /**
+     * Submit task
+     *
+     * @param priority  priority of task
+     * @param group     group superseded by task (null if none)
+     * @param work      work done by task, on a pool thread
+     * @param callback  receives result of work, on delivery executor
+     * @param <T>       type of result
+     * @return  the task
+     */
+    public <T> Task<T> submit(Priority priority, String group, Callable<T> work, Callback<T> callback) {
+        Task<T> task = new Task<T>(priority, group, work, callback);
+
+        if (group != null) {
+            Task<?> superseded;
+            synchronized (groups) {
+                superseded = groups.put(group, task);
+            }
+            if (superseded != null) {
+                superseded.cancel();
+            }
+        }
+
+        pool.execute(task);
+        return task;
+    }
+
+    /**
+     * Get statistics for tasks of given priority
+     *
+     * @param priority  the priority
+     * @return  statistics for tasks of given priority
+     */
+    public TaskStats getStats(Priority priority) {
+        return stats.get(priority);
+    }
+
+    /**
+     * Cancel all tasks and stop threads.  No further tasks may be submitted.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+        cancelHooks.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (TaskStats next : stats.values()) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(next);
+        }
+        return sb.toString();
+    }
+
+    private void removeFromGroup(Task<?> task) {
+        if (task.group != null) {
+            synchronized (groups) {
+                if (groups.get(task.group) == task) {
+                    groups.remove(task.group);
+                }
+            }
+        }
+    }
+
+    /**
+     * A task submitted to this scheduler
+     *
+     * @param <T>  type of result
+     */
+    public class Task<T> implements Runnable, Comparable<Task<?>> {
+        private Priority priority;
+        private String group;
+        private Callable<T> work;
+        private Callback<T> callback;
+        private long seq;
+        private long submitted;
+        private volatile boolean cancelled;
+        private Thread runner;
+        private Runnable cancelHook;
+
+        private Task(Priority priority, String group, Callable<T> work, Callback<T> callback) {
+            this.priority = priority;
+            this.group = group;
+            this.work = work;
+            this.callback = callback;
+            seq = sequence.getAndIncrement();
+            submitted = System.nanoTime();
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Cancel this task: it does not run if it has not started, its thread is interrupted (and
+         * its cancel hook called) if it is running, and its callback is not called
+         */
+        public void cancel() {
+            cancelled = true;
+            Runnable hook;
+            synchronized (this) {
+                if (runner != null) {
+                    runner.interrupt();
+                }
+                hook = cancelHook;
+                cancelHook = null;
+            }
+            if (hook != null) {
+                cancelHooks.execute(hook);
+            }
+            if (pool.remove(this)) {
+                stats.get(priority).cancelled();
+            }
+            removeFromGroup(this);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void setCancelHook(Runnable hook) {
+            synchronized (this) {
+                if (!cancelled) {
+                    cancelHook = hook;
+                    return;
+                }
+            }
+            if (hook != null) {
+                hook.run();
+            }
+        }
+
+        @Override
+        public void run() {
+            long started = System.nanoTime();
+            TaskStats taskStats = stats.get(priority);
+            if (cancelled) {
+                taskStats.cancelled();
+                return;
+            }
+
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            CURRENT_TASK.set(this);
+
+            T result = null;
+            Exception error = null;
+            try {
+                result = work.call();
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                CURRENT_TASK.remove();
+                synchronized (this) {
+                    runner = null;
+                    cancelHook = null;
+                }
+                Thread.interrupted();   // clear interrupt made by a cancel that raced with completion
+            }
+
+            taskStats.completed(started - submitted, System.nanoTime() - started, cancelled);
+            if (!cancelled) {
+                deliver(result, error);
+            }
+        }
+
+        private void deliver(final T result, final Exception error) {
+            delivery.execute(new Runnable() {
+                @Override
+                public void run() {
+                    removeFromGroup(Task.this);
+                    if (cancelled) {
+                        return;
+                    }
+
+                    if (error == null) {
+                        callback.onSuccess(result);
+                    }
+                    else {
+                        callback.onFailure(error);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+        }
+    }
+}
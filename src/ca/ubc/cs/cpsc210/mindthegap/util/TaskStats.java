@@ -0,0 +1,91 @@
+package ca.ubc.cs.cpsc210.mindthegap.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics for tasks of one priority run by a TaskScheduler: number of tasks run and cancelled,
+ * and time spent waiting in the queue and running.
+ *
+ * Instances are safe for use by multiple threads.
+ */
+public class TaskStats {
+    private TaskScheduler.Priority priority;
+    private int completed;
+    private int cancelled;
+    private long totalWait;     // ns
+    private long maxWait;       // ns
+    private long totalRun;      // ns
+    private long maxRun;        // ns
+
+    TaskStats(TaskScheduler.Priority priority) {
+        this.priority = priority;
+    }
+
+    synchronized void completed(long wait, long run, boolean wasCancelled) {
+        completed++;
+        if (wasCancelled) {
+            cancelled++;
+        }
+        totalWait += wait;
+        maxWait = Math.max(maxWait, wait);
+        totalRun += run;
+        maxRun = Math.max(maxRun, run);
+    }
+
+    synchronized void cancelled() {
+        cancelled++;
+    }
+
+    public TaskScheduler.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Get number of tasks that ran (whether or not they were cancelled while running)
+     */
+    public synchronized int getRunCount() {
+        return completed;
+    }
+
+    /**
+     * Get number of tasks cancelled (before or while running)
+     */
+    public synchronized int getCancelledCount() {
+        return cancelled;
+    }
+
+    /**
+     * Get mean time (in ms) tasks waited in the queue before running
+     */
+    public synchronized long getMeanWaitMillis() {
+        return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWait / completed);
+    }
+
+    /**
+     * Get longest time (in ms) a task waited in the queue before running
+     */
+    public synchronized long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWait);
+    }
+
+    /**
+     * Get mean time (in ms) tasks spent running
+     */
+    public synchronized long getMeanRunMillis() {
+        return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRun / completed);
+    }
+
+    /**
+     * Get longest time (in ms) a task spent running
+     */
+    public synchronized long getMaxRunMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRun);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return priority + ": " + completed + " run, " + cancelled + " cancelled, wait "
+                + getMeanWaitMillis() + "/" + getMaxWaitMillis() + " ms, run "
+                + getMeanRunMillis() + "/" + getMaxRunMillis() + " ms (mean/max)";
+    }
+}
@@ -0,0 +1,67 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import junit.framework.TestCase;
+
+import java.io.Reader;
+
+/**
+ * Tests for AbstractHttpDataProvider reading from a stub server: responses are decoded (and
+ * decompressed) correctly, and the bytes counted are those sent over the connection.
+ */
+public class AbstractHttpDataProviderTest extends TestCase {
+    private StubHttpServer server;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+
+    public void testBytesReadCountsEncodedBody() throws Exception {
+        String body = "[\"Bank\",\"Elephant & Castle\",\"Caf\u00e9 \u2192 Euston\"]";
+        server = new StubHttpServer(body);
+        StubDataProvider provider = new StubDataProvider(server, "/a");
+
+        assertEquals(body, provider.dataSourceToString());
+        assertEquals(body.getBytes("UTF-8").length, provider.getBytesRead());
+        assertTrue(provider.getBytesRead() != body.length());
+    }
+
+    public void testBytesReadCountsCompressedBody() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"lineId\":\"central\",\"timeToStation\":").append(i).append('}');
+        }
+        server = new StubHttpServer(body.append(']').toString());
+        server.setCompression(true);
+        StubDataProvider provider = new StubDataProvider(server, "/a");
+
+        assertEquals(body.toString(), provider.dataSourceToString());
+        assertEquals("gzip", server.getHeader(0, "Accept-Encoding"));
+        assertEquals(StubHttpServer.gzip(body.toString().getBytes("UTF-8")).length, provider.getBytesRead());
+        assertTrue(provider.getBytesRead() < body.length());
+    }
+
+    public void testBytesReadCountsBodyDrainedOnClose() throws Exception {
+        server = new StubHttpServer("[1,2,3,4,5,6,7,8,9]    ");
+        StubDataProvider provider = new StubDataProvider(server, "/a");
+
+        Reader reader = provider.dataSourceToReader();
+        assertEquals('[', reader.read());
+        reader.close();
+        assertEquals(23, provider.getBytesRead());
+    }
+
+    public void testNotModifiedReadsNoBytes() throws Exception {
+        server = new StubHttpServer("[1,2,3]");
+        server.setETag("\"v1\"");
+        StubDataProvider provider = new StubDataProvider(server, "/a");
+
+        provider.dataSourceToString();
+        assertEquals(7, provider.getBytesRead());
+        assertNull(provider.dataSourceToString("\"v1\""));
+        assertEquals(0, provider.getBytesRead());
+    }
+}
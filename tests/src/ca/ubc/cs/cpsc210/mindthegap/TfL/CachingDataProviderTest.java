@@ -0,0 +1,109 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+/**
+ * Tests for CachingDataProvider reading from a stub server: fresh entries are answered without a
+ * request, stale entries with an entity tag are revalidated with If-None-Match, and entries kept on
+ * disk are answered by a cache constructed afterwards.
+ */
+public class CachingDataProviderTest extends TestCase {
+    private static final long MINUTE = 60 * 1000;
+    private StubHttpServer server;
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new StubHttpServer("[\"first\"]");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        if (dir != null) {
+            DataCacheTest.deleteAll(dir);
+            dir = null;
+        }
+    }
+
+    public void testFreshEntryAnsweredWithoutRequest() throws Exception {
+        DataCache cache = new DataCache(1000, null, MINUTE);
+        CachingDataProvider provider = new CachingDataProvider(new StubDataProvider(server, "/a"), cache);
+
+        assertEquals("[\"first\"]", provider.dataSourceToString());
+        server.setBody("[\"second\"]");
+        assertEquals("[\"first\"]", provider.dataSourceToString());
+
+        assertEquals(1, server.getRequests().size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testStaleEntryRevalidated() throws Exception {
+        DataCache cache = new DataCache(1000, null, 0);
+        CachingDataProvider provider = new CachingDataProvider(new StubDataProvider(server, "/a"), cache);
+        server.setETag("\"v1\"");
+
+        assertEquals("[\"first\"]", provider.dataSourceToString());
+        assertNull(server.getHeader(0, "If-None-Match"));
+        long readAt = cache.get(provider.getKey()).getTime();
+
+        // source still has entity tag v1, so answers 304 and cached data is returned
+        Thread.sleep(5);
+        assertEquals("[\"first\"]", provider.dataSourceToString());
+        assertEquals("\"v1\"", server.getHeader(1, "If-None-Match"));
+        assertEquals(1, cache.getRevalidationCount());
+        assertTrue(cache.get(provider.getKey()).getTime() > readAt);
+
+        // source has changed, so data is read in full
+        server.setETag("\"v2\"");
+        server.setBody("[\"second\"]");
+        assertEquals("[\"second\"]", provider.dataSourceToString());
+        assertEquals("\"v1\"", server.getHeader(2, "If-None-Match"));
+        assertEquals("\"v2\"", cache.get(provider.getKey()).getETag());
+
+        assertEquals(3, server.getRequests().size());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    public void testStaleEntryWithoutETagReadInFull() throws Exception {
+        DataCache cache = new DataCache(1000, null, 0);
+        CachingDataProvider provider = new CachingDataProvider(new StubDataProvider(server, "/a"), cache);
+
+        provider.dataSourceToString();
+        server.setBody("[\"second\"]");
+        assertEquals("[\"second\"]", provider.dataSourceToString());
+
+        assertNull(server.getHeader(1, "If-None-Match"));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getRevalidationCount());
+    }
+
+    public void testTimeToLiveOfKeyApplies() throws Exception {
+        DataCache cache = new DataCache(1000, null, MINUTE);
+        cache.setTimeToLive(server.getURL("/live/"), 0);
+        CachingDataProvider live = new CachingDataProvider(new StubDataProvider(server, "/live/a"), cache);
+        CachingDataProvider fixed = new CachingDataProvider(new StubDataProvider(server, "/fixed/a"), cache);
+
+        live.dataSourceToString();
+        live.dataSourceToString();
+        fixed.dataSourceToString();
+        fixed.dataSourceToString();
+
+        assertEquals(3, server.getRequests().size());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testEntryOnDiskAnsweredByNewCache() throws Exception {
+        dir = DataCacheTest.makeTempDir();
+        new CachingDataProvider(new StubDataProvider(server, "/a"), new DataCache(1000, dir, MINUTE)).dataSourceToString();
+
+        DataCache cache = new DataCache(1000, dir, MINUTE);
+        assertEquals("[\"first\"]", new CachingDataProvider(new StubDataProvider(server, "/a"), cache).dataSourceToString());
+        assertEquals(1, server.getRequests().size());
+        assertEquals(1, cache.getHitCount());
+    }
+}
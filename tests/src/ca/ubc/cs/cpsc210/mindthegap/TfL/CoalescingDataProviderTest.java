@@ -0,0 +1,205 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Tests for CoalescingDataProvider (and RequestCoalescer) reading from a stub server that is slow to
+ * answer, so that reads overlap: concurrent readers share one request, a completed read is shared
+ * within the window, a read abandoned by a cancelled reader is made again for those waiting on it,
+ * and a failed read fails every reader waiting on it.
+ */
+public class CoalescingDataProviderTest extends TestCase {
+    private static final String BODY = "[\"data\"]";
+    private static final long DELAY = 300;
+    private static final long TIMEOUT = 5000;
+    private StubHttpServer server;
+    private RequestCoalescer coalescer;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new StubHttpServer(BODY);
+        coalescer = new RequestCoalescer(1000);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    public void testConcurrentReadsShareOneRequest() throws Exception {
+        server.setDelay(DELAY);
+        List<Reader> readers = startReaders(5);
+        for (Reader next : readers) {
+            next.join(TIMEOUT);
+            assertEquals(BODY, next.result);
+        }
+
+        assertEquals(1, server.getRequests().size());
+        assertEquals(5, coalescer.getRequestCount());
+        assertEquals(1, coalescer.getReadCount());
+        assertEquals(4, coalescer.getJoinedCount());
+    }
+
+    public void testCompletedReadSharedWithinWindow() throws Exception {
+        assertEquals(BODY, provider("/a").dataSourceToString());
+        assertEquals(BODY, provider("/a").dataSourceToString());
+        assertEquals(BODY, provider("/b").dataSourceToString());
+
+        assertEquals(2, server.getRequests().size());
+        assertEquals(1, coalescer.getWindowHitCount());
+        assertEquals(1, coalescer.getSuppressedCount());
+    }
+
+    public void testCompletedReadNotSharedAfterWindow() throws Exception {
+        coalescer = new RequestCoalescer(0);
+        provider("/a").dataSourceToString();
+        provider("/a").dataSourceToString();
+
+        assertEquals(2, server.getRequests().size());
+        assertEquals(0, coalescer.getWindowHitCount());
+    }
+
+    public void testCancelledReaderReadRetriedForJoiners() throws Exception {
+        server.setDelay(DELAY);
+        TaskScheduler scheduler = new TaskScheduler(1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        try {
+            final CoalescingDataProvider leader = provider("/a");
+            TaskScheduler.Task<String> task = scheduler.submit(TaskScheduler.Priority.USER, null,
+                    new Callable<String>() {
+                        @Override
+                        public String call() throws IOException {
+                            return leader.dataSourceToString();
+                        }
+                    }, new TaskScheduler.Callback<String>() {
+                        @Override
+                        public void onSuccess(String result) {
+                            fail("callback of cancelled task called");
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            fail("callback of cancelled task called");
+                        }
+                    });
+            waitForRequests(1);
+
+            Reader[] joiners = {startReader(), startReader()};
+            waitForJoined(2);
+            task.cancel();
+
+            for (Reader next : joiners) {
+                next.join(TIMEOUT);
+                assertNull(next.error);
+                assertEquals(BODY, next.result);
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+
+        // one of the joiners read again for the other
+        assertEquals(2, server.getRequests().size());
+        assertEquals(2, coalescer.getReadCount());
+        assertEquals(3, coalescer.getJoinedCount());
+    }
+
+    public void testFailedReadFailsEveryJoiner() throws Exception {
+        server.setDelay(DELAY);
+        server.setStatus(500);
+        List<Reader> readers = startReaders(4);
+        for (Reader next : readers) {
+            next.join(TIMEOUT);
+            assertNull(next.result);
+            assertNotNull(next.error);
+        }
+        assertEquals(1, server.getRequests().size());
+
+        // a failure is not shared within the window
+        server.setDelay(0);
+        server.setStatus(200);
+        assertEquals(BODY, provider("/a").dataSourceToString());
+        assertEquals(2, server.getRequests().size());
+    }
+
+    private CoalescingDataProvider provider(String path) throws Exception {
+        return new CoalescingDataProvider(new StubDataProvider(server, path), coalescer);
+    }
+
+    /**
+     * Start given number of threads reading "/a", the first of which has sent its request to the
+     * server before the others start
+     */
+    private List<Reader> startReaders(int count) throws Exception {
+        List<Reader> readers = new ArrayList<Reader>();
+        int requests = server.getRequests().size();
+        for (int i = 0; i < count; i++) {
+            readers.add(startReader());
+            if (i == 0) {
+                waitForRequests(requests + 1);
+            }
+        }
+        return readers;
+    }
+
+    private Reader startReader() throws Exception {
+        Reader reader = new Reader(provider("/a"));
+        reader.start();
+        return reader;
+    }
+
+    /**
+     * Wait until server has received given number of requests
+     */
+    private void waitForRequests(int requests) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (server.getRequests().size() < requests) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Wait until given number of requests have joined a read in flight
+     */
+    private void waitForJoined(int joined) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (coalescer.getJoinedCount() < joined) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Thread reading from a provider, recording the data read or the error
+     */
+    private static class Reader extends Thread {
+        private CoalescingDataProvider provider;
+        private volatile String result;
+        private volatile IOException error;
+
+        Reader(CoalescingDataProvider provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = provider.dataSourceToString();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+}
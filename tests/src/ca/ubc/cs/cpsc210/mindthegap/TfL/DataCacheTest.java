@@ -0,0 +1,170 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests for DataCache: time to live by longest key prefix, least-recently-used eviction from memory,
+ * the bound on the directory and the deletion of expired entries from it.  Each test that keeps
+ * entries on disk uses a fresh temporary directory.
+ */
+public class DataCacheTest extends TestCase {
+    private static final long MINUTE = 60 * 1000;
+    private File dir;
+
+    @Override
+    protected void tearDown() {
+        if (dir != null) {
+            deleteAll(dir);
+            dir = null;
+        }
+    }
+
+    public void testTimeToLiveByLongestPrefix() {
+        DataCache cache = new DataCache(1000, null, 5000);
+        cache.setTimeToLive("https://api.tfl.gov.uk/", 1000);
+        cache.setTimeToLive("https://api.tfl.gov.uk/StopPoint/", 30000);
+        cache.setTimeToLive("https://api.tfl.gov.uk/StopPoint/940Z", 2000);
+
+        assertEquals(30000, cache.getTimeToLive("https://api.tfl.gov.uk/StopPoint/940GZZLUOXC/Arrivals"));
+        assertEquals(2000, cache.getTimeToLive("https://api.tfl.gov.uk/StopPoint/940ZZ/Arrivals"));
+        assertEquals(1000, cache.getTimeToLive("https://api.tfl.gov.uk/Line/central/Arrivals"));
+        assertEquals(5000, cache.getTimeToLive("https://example.com/StopPoint/940GZZLUOXC"));
+        assertEquals(5000, cache.getTimeToLive("https://api.tfl.gov"));
+    }
+
+    public void testLeastRecentlyUsedEvictedFromMemory() {
+        DataCache cache = new DataCache(500, null, MINUTE);
+        long now = System.currentTimeMillis();
+        cache.put("a", data(100), null, now);
+        cache.put("b", data(100), null, now);
+        assertNotNull(cache.get("a"));          // b is now least recently used
+        cache.put("c", data(100), null, now);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(400, cache.getSize());
+    }
+
+    public void testEntryReadBackFromDisk() throws IOException {
+        dir = makeTempDir();
+        long now = System.currentTimeMillis();
+        new DataCache(500, dir, MINUTE).put("a", "[1,2,3]", "\"v1\"", now);
+
+        DataCache.Entry entry = new DataCache(500, dir, MINUTE).get("a");
+        assertNotNull(entry);
+        assertEquals("[1,2,3]", entry.getData());
+        assertEquals("\"v1\"", entry.getETag());
+        assertEquals(now, entry.getTime());
+    }
+
+    public void testDiskBoundedByLeastRecentlyUsed() throws IOException {
+        dir = makeTempDir();
+        long now = System.currentTimeMillis();
+        long maxDiskBytes = 300;                // room for two entries of 100 chars, not three
+        new DataCache(1000, dir, maxDiskBytes, MINUTE).put("k0", data(100), null, now);
+        ageFiles(10000);
+        new DataCache(1000, dir, maxDiskBytes, MINUTE).put("k1", data(100), null, now);
+        ageFiles(10000);
+        assertEquals(2, countFiles());
+
+        // reading k0 back marks it as recently used, so k1 is deleted to make room for k2
+        DataCache cache = new DataCache(1000, dir, maxDiskBytes, MINUTE);
+        assertNotNull(cache.get("k0"));
+        cache.put("k2", data(100), null, now);
+
+        assertEquals(2, countFiles());
+        assertTrue(cache.getDiskSize() <= maxDiskBytes);
+        DataCache reopened = new DataCache(1000, dir, maxDiskBytes, MINUTE);
+        assertNotNull(reopened.get("k0"));
+        assertNull(reopened.get("k1"));
+        assertNotNull(reopened.get("k2"));
+    }
+
+    public void testExpiredEntryDeletedWhenRead() throws IOException {
+        dir = makeTempDir();
+        long now = System.currentTimeMillis();
+        DataCache cache = new DataCache(1000, dir, MINUTE);
+        cache.put("expired", data(10), null, now - 2 * MINUTE / 3);
+        cache.put("stale", data(10), "\"v1\"", now - 2 * MINUTE / 3);
+        assertEquals(2, countFiles());
+
+        // both are stale under a shorter time to live, but one with an entity tag can still be
+        // revalidated, so it is kept
+        DataCache reopened = new DataCache(1000, dir, MINUTE / 3);
+        assertNull(reopened.get("expired"));
+        assertNotNull(reopened.get("stale"));
+        assertEquals(1, countFiles());
+    }
+
+    public void testExpiredEntriesSweptWhenEntryWritten() throws IOException {
+        dir = makeTempDir();
+        long now = System.currentTimeMillis();
+        DataCache cache = new DataCache(1000, dir, MINUTE);
+        cache.put("short/a", data(10), null, now - 2000);
+        cache.put("short/b", data(10), "\"v1\"", now - 2000);
+        cache.put("long/a", data(10), null, now - 2000);
+        assertEquals(3, countFiles());
+
+        cache.setTimeToLive("short/", 1000);
+        cache.put("long/b", data(10), null, now);
+        assertEquals(3, countFiles());
+        DataCache reopened = new DataCache(1000, dir, MINUTE);
+        assertNull(reopened.get("short/a"));
+        assertNotNull(reopened.get("short/b"));
+        assertNotNull(reopened.get("long/a"));
+    }
+
+    public void testClear() throws IOException {
+        dir = makeTempDir();
+        DataCache cache = new DataCache(1000, dir, MINUTE);
+        cache.put("a", data(10), null, System.currentTimeMillis());
+        cache.clear();
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getDiskSize());
+        assertNull(cache.get("a"));
+    }
+
+    private static String data(int length) {
+        StringBuilder data = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            data.append((char) ('a' + i % 26));
+        }
+        return data.toString();
+    }
+
+    /**
+     * Make every file in dir appear to have been last used given time (in ms) earlier than it was
+     */
+    private void ageFiles(long age) {
+        for (File next : dir.listFiles()) {
+            next.setLastModified(next.lastModified() - age);
+        }
+    }
+
+    private int countFiles() {
+        return dir.list().length;
+    }
+
+    static File makeTempDir() throws IOException {
+        File dir = File.createTempFile("DataCacheTest", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File next : children) {
+                deleteAll(next);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,22 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Http data provider reading a given path from a StubHttpServer
+ */
+class StubDataProvider extends AbstractHttpDataProvider {
+    private StubHttpServer server;
+    private String path;
+
+    StubDataProvider(StubHttpServer server, String path) {
+        this.server = server;
+        this.path = path;
+    }
+
+    @Override
+    protected URL getURL() throws MalformedURLException {
+        return new URL(server.getURL(path));
+    }
+}
@@ -0,0 +1,237 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal Http server on the loopback interface that answers every GET request with the same
+ * canned JSON body, and records the target and headers of each request it answers.  Each
+ * connection is served on a thread of its own, one request per connection, which is then closed.
+ *
+ * The body, status, entity tag and a delay before answering can be changed between requests.  If
+ * an entity tag is set, a request whose If-None-Match header matches it is answered with 304.  If
+ * compression is turned on, the body is sent gzip-compressed to requests that accept gzip.
+ */
+class StubHttpServer {
+    private ServerSocket socket;
+    private Thread acceptor;
+    private volatile String body;
+    private volatile int status;
+    private volatile String eTag;
+    private volatile long delay;
+    private volatile boolean compression;
+    private List<String> requests;
+    private List<Map<String, String>> headers;
+
+    /**
+     * Constructs and starts server answering with given body
+     *
+     * @param body  body of every response
+     * @throws IOException  when server socket cannot be opened
+     */
+    StubHttpServer(String body) throws IOException {
+        this.body = body;
+        status = 200;
+        requests = Collections.synchronizedList(new ArrayList<String>());
+        headers = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+        socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptRequests();
+            }
+        }, "StubHttpServer");
+        acceptor.start();
+    }
+
+    void setBody(String body) {
+        this.body = body;
+    }
+
+    /**
+     * Set status of responses (other than 304s); a response with a status other than 200 has an
+     * empty body
+     */
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Set entity tag sent with responses (null for none)
+     */
+    void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    /**
+     * Set time (in ms) for which server waits after reading a request before answering it
+     */
+    void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * Set whether body is sent gzip-compressed to requests that accept gzip
+     */
+    void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Get URL of this server, with given path appended
+     *
+     * @param path  the path (starting with "/")
+     * @return  URL of path on this server
+     */
+    String getURL(String path) {
+        return "http://127.0.0.1:" + socket.getLocalPort() + path;
+    }
+
+    /**
+     * Get targets (path and query) of requests received so far, in order of arrival
+     */
+    List<String> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<String>(requests);
+        }
+    }
+
+    /**
+     * Get value of given header in given request
+     *
+     * @param request  index of request (in order of arrival)
+     * @param name     name of header (any case)
+     * @return  value of header, or null if request had no such header
+     */
+    String getHeader(int request, String name) {
+        return headers.get(request).get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Stop accepting requests and close server socket
+     */
+    void stop() throws IOException, InterruptedException {
+        socket.close();
+        acceptor.join();
+    }
+
+    private void acceptRequests() {
+        while (true) {
+            final Socket client;
+            try {
+                client = socket.accept();
+            } catch (IOException e) {
+                return;     // socket closed by stop
+            }
+
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(client);
+                    } catch (IOException | InterruptedException e) {
+                        // client gave up
+                    } finally {
+                        try {
+                            client.close();
+                        } catch (IOException e) {
+                            // nothing more to be done
+                        }
+                    }
+                }
+            }, "StubHttpServer-client").start();
+        }
+    }
+
+    private void serve(Socket client) throws IOException, InterruptedException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), "ISO-8859-1"));
+        String requestLine = in.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        Map<String, String> requestHeaders = new HashMap<String, String>();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                requestHeaders.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        String[] parts = requestLine.split(" ");
+        synchronized (requests) {
+            requests.add(parts.length > 1 ? parts[1] : "");
+            headers.add(requestHeaders);
+        }
+
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+
+        String tag = eTag;
+        int code = status;
+        byte[] content = code == 200 ? body.getBytes("UTF-8") : new byte[0];
+        if (tag != null && tag.equals(requestHeaders.get("if-none-match"))) {
+            code = 304;
+            content = new byte[0];
+        }
+        String acceptEncoding = requestHeaders.get("accept-encoding");
+        boolean gzip = code == 200 && compression && acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            content = gzip(content);
+        }
+
+        StringBuilder header = new StringBuilder("HTTP/1.1 " + code + " " + reason(code) + "\r\n");
+        if (tag != null) {
+            header.append("ETag: ").append(tag).append("\r\n");
+        }
+        if (code != 304) {
+            header.append("Content-Type: application/json; charset=utf-8\r\n");
+            if (gzip) {
+                header.append("Content-Encoding: gzip\r\n");
+            }
+            header.append("Content-Length: ").append(content.length).append("\r\n");
+        }
+        header.append("Connection: close\r\n\r\n");
+
+        OutputStream out = client.getOutputStream();
+        out.write(header.toString().getBytes("ISO-8859-1"));
+        out.write(content);
+        out.flush();
+    }
+
+    static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(content);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static String reason(int code) {
+        switch (code) {
+            case 200:
+                return "OK";
+            case 304:
+                return "Not Modified";
+            case 404:
+                return "Not Found";
+            default:
+                return "Error";
+        }
+    }
+}
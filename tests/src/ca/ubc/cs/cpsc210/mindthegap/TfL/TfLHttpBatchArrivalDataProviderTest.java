@@ -0,0 +1,227 @@
+package ca.ubc.cs.cpsc210.mindthegap.TfL;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalBoard;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.ParsedArrivals;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLArrivalsParser;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for TfLHttpBatchArrivalDataProvider: splitting of stations into requests whose URLs fit in
+ * MAX_URL_LENGTH characters, and demultiplexing of a batched response (served by a stub server)
+ * into each station's arrival boards.
+ */
+public class TfLHttpBatchArrivalDataProviderTest extends TestCase {
+    private static final String URL_SUFFIX = "/Arrivals?app_id=&app_key=";
+    private Line central;
+    private StubHttpServer server;
+
+    @Override
+    protected void setUp() {
+        central = new Line(LineResourceData.CENTRAL, "central", "Central");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+
+    public void testSingleBatch() throws Exception {
+        List<Station> stns = makeStations(3);
+        List<TfLHttpBatchArrivalDataProvider> providers = TfLHttpBatchArrivalDataProvider.forStations(stns);
+
+        assertEquals(1, providers.size());
+        assertEquals(stns, providers.get(0).getStations());
+        assertEquals("https://api.tfl.gov.uk/StopPoint/940GZZTEST0000,940GZZTEST0001,940GZZTEST0002" + URL_SUFFIX,
+                providers.get(0).getURL().toString());
+    }
+
+    public void testNoStations() {
+        assertTrue(TfLHttpBatchArrivalDataProvider.forStations(new ArrayList<Station>()).isEmpty());
+    }
+
+    public void testSplitAtMaxUrlLength() throws Exception {
+        List<Station> stns = makeStations(600);
+        List<TfLHttpBatchArrivalDataProvider> providers = TfLHttpBatchArrivalDataProvider.forStations(stns);
+
+        assertTrue(providers.size() > 1);
+        assertSplit(stns, providers);
+    }
+
+    public void testStationsArrivalsMergedFromBatchedResponse() throws Exception {
+        List<Station> stns = makeStations(3);
+        server = new StubHttpServer("["
+                + arrival("a", stns.get(0), "central", 120) + ","
+                + arrival("b", stns.get(0), "central", 300) + ","
+                + arrival("c", stns.get(1), "central", 60) + ","
+                + arrival("d", stns.get(2), "northern", 90) + ","      // line not serving station
+                + arrival("e", "940GZZOTHER", "central", 30)           // station not queried
+                + "]");
+
+        List<TfLHttpBatchArrivalDataProvider> providers =
+                TfLHttpBatchArrivalDataProvider.forStations(stns, server.getURL("/StopPoint/"));
+        assertEquals(1, providers.size());
+
+        String response = providers.get(0).dataSourceToString();
+        assertEquals(1, server.getRequests().size());
+        assertEquals("/StopPoint/940GZZTEST0000,940GZZTEST0001,940GZZTEST0002" + URL_SUFFIX,
+                server.getRequests().get(0));
+
+        Map<Station, ArrivalsChangeSet> changes = TfLArrivalsParser.mergeArrivals(providers.get(0).getStations(),
+                response);
+        assertEquals(3, changes.size());
+        assertEquals(2, changes.get(stns.get(0)).getAddedArrivals().size());
+        assertEquals(1, changes.get(stns.get(1)).getAddedArrivals().size());
+        assertTrue(changes.get(stns.get(2)).isEmpty());
+
+        assertEquals(setOf("a", "b"), arrivalIds(stns.get(0)));
+        assertEquals(setOf("c"), arrivalIds(stns.get(1)));
+        assertEquals(0, stns.get(2).getNumArrivalBoards());
+    }
+
+    public void testBatchedResponseStreamedThenMerged() throws Exception {
+        List<Station> stns = makeStations(2);
+        server = new StubHttpServer("["
+                + arrival("a", stns.get(0), "central", 120) + ","
+                + arrival("b", stns.get(1), "central", 60) + "]");
+        server.setCompression(true);
+        TfLHttpBatchArrivalDataProvider provider =
+                TfLHttpBatchArrivalDataProvider.forStations(stns, server.getURL("/StopPoint/")).get(0);
+
+        // as a prefetch task would, on a background thread
+        ParsedArrivals parsed = TfLArrivalsParser.readArrivals(provider.getStations(), provider.dataSourceToReader());
+        assertEquals(1, parsed.getArrivalCount(stns.get(0)));
+        assertEquals(1, parsed.getArrivalCount(stns.get(1)));
+        assertEquals(0, stns.get(0).getNumArrivalBoards());
+        assertTrue(provider.getBytesRead() > 0);
+
+        // as its callback would, on the UI thread
+        Map<Station, ArrivalsChangeSet> changes = parsed.merge();
+        assertEquals(stns, new ArrayList<Station>(changes.keySet()));
+        assertEquals(setOf("a"), arrivalIds(stns.get(0)));
+        assertEquals(setOf("b"), arrivalIds(stns.get(1)));
+    }
+
+    public void testSplitRequestsReachEachStation() throws Exception {
+        List<Station> stns = makeStations(400);
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < stns.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(arrival("p" + i, stns.get(i), "central", 60 + i));
+        }
+        server = new StubHttpServer(body.append(']').toString());
+
+        String urlPrefix = server.getURL("/StopPoint/");
+        List<TfLHttpBatchArrivalDataProvider> providers = TfLHttpBatchArrivalDataProvider.forStations(stns, urlPrefix);
+        assertTrue(providers.size() > 1);
+        assertSplit(stns, providers);
+
+        int added = 0;
+        for (TfLHttpBatchArrivalDataProvider next : providers) {
+            String response = next.dataSourceToString();
+            Map<Station, ArrivalsChangeSet> changes = TfLArrivalsParser.mergeArrivals(next.getStations(), response);
+            assertEquals(next.getStations().size(), changes.size());
+            for (ArrivalsChangeSet stnChanges : changes.values()) {
+                added += stnChanges.getAddedArrivals().size();
+            }
+        }
+
+        List<String> requests = server.getRequests();
+        assertEquals(providers.size(), requests.size());
+        Set<String> requested = new HashSet<String>();
+        for (String next : requests) {
+            String ids = next.substring("/StopPoint/".length(), next.length() - URL_SUFFIX.length());
+            for (String id : ids.split(",")) {
+                assertTrue(requested.add(id));
+            }
+        }
+        assertEquals(stns.size(), requested.size());
+
+        // every station gets its own arrival, and only that, from whichever response carried it
+        assertEquals(stns.size(), added);
+        for (int i = 0; i < stns.size(); i++) {
+            assertEquals(setOf("p" + i), arrivalIds(stns.get(i)));
+        }
+    }
+
+    /**
+     * Assert that providers query given stations in order, each exactly once, with URLs no longer than
+     * MAX_URL_LENGTH, and that no provider could have taken the first station of the next
+     */
+    private void assertSplit(List<Station> stns, List<TfLHttpBatchArrivalDataProvider> providers) throws Exception {
+        List<Station> queried = new ArrayList<Station>();
+        for (int i = 0; i < providers.size(); i++) {
+            TfLHttpBatchArrivalDataProvider next = providers.get(i);
+            int length = next.getURL().toString().length();
+            assertTrue(length <= TfLHttpBatchArrivalDataProvider.MAX_URL_LENGTH);
+            if (i + 1 < providers.size()) {
+                Station following = providers.get(i + 1).getStations().get(0);
+                assertTrue(length + 1 + following.getID().length() > TfLHttpBatchArrivalDataProvider.MAX_URL_LENGTH);
+            }
+            queried.addAll(next.getStations());
+        }
+        assertEquals(stns, queried);
+    }
+
+    /**
+     * Make given number of stations served by the Central line
+     */
+    private List<Station> makeStations(int count) {
+        List<Station> stns = new ArrayList<Station>();
+        for (int i = 0; i < count; i++) {
+            Station stn = new Station(String.format("940GZZTEST%04d", i), "Test " + i, new LatLon(51.5, -0.1));
+            stn.addLine(central);
+            central.addStation(stn);
+            stns.add(stn);
+        }
+        return stns;
+    }
+
+    private static String arrival(String id, Station stn, String lineId, int timeToStation) {
+        return arrival(id, stn.getID(), lineId, timeToStation);
+    }
+
+    private static String arrival(String id, String naptanId, String lineId, int timeToStation) {
+        return "{\"id\":\"" + id + "\","
+                + "\"naptanId\":\"" + naptanId + "\","
+                + "\"lineId\":\"" + lineId + "\","
+                + "\"platformName\":\"Westbound - Platform 1\","
+                + "\"destinationName\":\"Ealing Broadway Underground Station\","
+                + "\"timeToStation\":" + timeToStation + ","
+                + "\"timestamp\":\"2015-10-01T12:00:00Z\"}";
+    }
+
+    private static Set<String> arrivalIds(Station stn) {
+        Set<String> ids = new HashSet<String>();
+        for (ArrivalBoard board : stn) {
+            for (Arrival next : board) {
+                ids.add(next.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> setOf(String... ids) {
+        Set<String> set = new HashSet<String>();
+        for (String next : ids) {
+            set.add(next);
+        }
+        return set;
+    }
+}
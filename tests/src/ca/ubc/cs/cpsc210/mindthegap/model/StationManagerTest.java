@@ -0,0 +1,68 @@
+package ca.ubc.cs.cpsc210.mindthegap.model;
+
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import junit.framework.TestCase;
+
+/**
+ * Tests that StationManager's indexes stay consistent when a line is added again with fewer stations
+ */
+public class StationManagerTest extends TestCase {
+    private static final LatLon X_LOCN = new LatLon(51.515, -0.142);
+    private static final LatLon Y_LOCN = new LatLon(51.530, -0.124);
+    private StationManager stnManager;
+    private Station x;
+    private Station y;
+
+    @Override
+    protected void setUp() {
+        stnManager = StationManager.getInstance();
+        stnManager.clearStations();
+        x = stnManager.getOrCreateStation("940GZZTESTX", "Test X", X_LOCN);
+        y = stnManager.getOrCreateStation("940GZZTESTY", "Test Y", Y_LOCN);
+    }
+
+    @Override
+    protected void tearDown() {
+        stnManager.clearStations();
+    }
+
+    public void testReloadedLineDropsStationOnNoOtherLine() throws Exception {
+        stnManager.addStationsOnLine(line(LineResourceData.CENTRAL, "central", x, y));
+        stnManager.setSelected(x);
+        assertEquals(2, stnManager.getNumStations());
+
+        stnManager.addStationsOnLine(line(LineResourceData.CENTRAL, "central", y));
+
+        assertEquals(1, stnManager.getNumStations());
+        assertFalse(stnManager.getStationsOnLine("central").contains(x));
+        assertNull(stnManager.getStationWithId(x.getID()));
+        assertTrue(stnManager.getStationsWithName("Test X").isEmpty());
+        assertEquals(y, stnManager.findNearestTo(X_LOCN));
+        assertFalse(stnManager.withinRadius(X_LOCN, 5000).contains(x));
+        assertNull(stnManager.getSelected());
+
+        // station is created afresh if a line brings it back
+        Station again = stnManager.getOrCreateStation(x.getID(), x.getName(), X_LOCN);
+        assertNotSame(x, again);
+    }
+
+    public void testReloadedLineKeepsStationOnAnotherLine() {
+        stnManager.addStationsOnLine(line(LineResourceData.CENTRAL, "central", x, y));
+        stnManager.addStationsOnLine(line(LineResourceData.VICTORIA, "victoria", x));
+
+        stnManager.addStationsOnLine(line(LineResourceData.CENTRAL, "central", y));
+
+        assertEquals(2, stnManager.getNumStations());
+        assertEquals(x, stnManager.getStationWithId(x.getID()));
+        assertEquals(x, stnManager.findNearestTo(X_LOCN));
+        assertSame(x, stnManager.getOrCreateStation(x.getID(), x.getName(), X_LOCN));
+    }
+
+    private static Line line(LineResourceData lmd, String id, Station... stns) {
+        Line line = new Line(lmd, id, id);
+        for (Station next : stns) {
+            line.addStation(next);
+        }
+        return line;
+    }
+}
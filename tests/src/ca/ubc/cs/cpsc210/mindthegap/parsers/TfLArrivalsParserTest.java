@@ -0,0 +1,147 @@
+package ca.ubc.cs.cpsc210.mindthegap.parsers;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalBoard;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalsChangeSet;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.exception.TfLArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import junit.framework.TestCase;
+import org.json.JSONException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for merging arrivals into a station's arrival boards with TfLArrivalsParser.mergeArrivals,
+ * and for reading arrivals with TfLArrivalsParser.readArrivals to be merged later
+ */
+public class TfLArrivalsParserTest extends TestCase {
+    private Line central;
+    private Station stn;
+
+    @Override
+    protected void setUp() {
+        central = new Line(LineResourceData.CENTRAL, "central", "Central");
+        stn = new Station("940GZZLUOXC", "Oxford Circus", new LatLon(51.515, -0.142));
+        stn.addLine(central);
+        central.addStation(stn);
+    }
+
+    public void testMergeUpdatesMatchedArrivalsAndRemovesDeparted() throws Exception {
+        TfLArrivalsParser.mergeArrivals(stn, "[" + arrival("1", "Westbound", 300) + ","
+                + arrival("2", "Westbound", 500) + "," + arrival("3", "Eastbound", 200) + "]");
+        Arrival kept = find("2");
+
+        ArrivalsChangeSet changes = TfLArrivalsParser.mergeArrivals(stn, "["
+                + arrival("2", "Westbound", 400) + "," + arrival("4", "Westbound", 600) + "]");
+
+        assertSame(kept, find("2"));
+        assertEquals(400, kept.getTimeToStation());
+        assertNull(find("1"));
+        assertNull(find("3"));
+        assertEquals(1, changes.getAddedArrivals().size());
+        assertEquals(2, changes.getRemovedArrivals().size());
+        assertEquals(1, changes.getUpdatedArrivals().size());
+        assertEquals(1, changes.getRemovedBoards().size());
+    }
+
+    public void testTruncatedResponseLeavesBoardsUntouched() throws Exception {
+        TfLArrivalsParser.mergeArrivals(stn, "[" + arrival("1", "Westbound", 300) + ","
+                + arrival("4", "Westbound", 500) + "]");
+        Map<String, Integer> before = snapshot();
+
+        try {
+            // arrival 4 is parsed (with a new time) before the response breaks off
+            TfLArrivalsParser.mergeArrivals(stn, "[" + arrival("4", "Westbound", 400) + ","
+                    + arrival("5", "Eastbound", 100) + ",{\"id\":\"6\",\"timeToS");
+            fail("JSONException expected");
+        } catch (JSONException e) {
+            // expected
+        }
+
+        assertEquals(before, snapshot());
+        assertEquals(500, find("4").getTimeToStation());
+        assertEquals(1, stn.getNumArrivalBoards());
+    }
+
+    public void testAllArrivalsMissingDataRemovesArrivals() throws Exception {
+        TfLArrivalsParser.mergeArrivals(stn, "[" + arrival("1", "Westbound", 300) + "]");
+
+        try {
+            TfLArrivalsParser.mergeArrivals(stn, "[{\"id\":\"1\",\"lineId\":\"central\"}]");
+            fail("TfLArrivalsDataMissingException expected");
+        } catch (TfLArrivalsDataMissingException e) {
+            // expected
+        }
+
+        assertEquals(0, stn.getNumArrivalBoards());
+    }
+
+    public void testReadArrivalsLeavesBoardsUntilMerged() throws Exception {
+        TfLArrivalsParser.mergeArrivals(stn, "[" + arrival("1", "Westbound", 300) + "]");
+        Map<String, Integer> before = snapshot();
+
+        ParsedArrivals parsed = TfLArrivalsParser.readArrivals(stn, "[" + arrival("1", "Westbound", 200) + ","
+                + arrival("2", "Eastbound", 100) + "," + "{\"id\":\"3\",\"lineId\":\"central\"}]");
+        assertEquals(before, snapshot());
+        assertEquals(2, parsed.getArrivalCount(stn));
+        assertFalse(parsed.isDataMissing());
+
+        ArrivalsChangeSet changes = parsed.merge().get(stn);
+        assertEquals(200, find("1").getTimeToStation());
+        assertNotNull(find("2"));
+        assertEquals(1, changes.getAddedArrivals().size());
+        assertEquals(1, changes.getUpdatedArrivals().size());
+    }
+
+    public void testReadArrivalsWithAllDataMissingRemovesArrivalsWhenMerged() throws Exception {
+        TfLArrivalsParser.mergeArrivals(stn, "[" + arrival("1", "Westbound", 300) + "]");
+
+        ParsedArrivals parsed = TfLArrivalsParser.readArrivals(stn, "[{\"id\":\"1\",\"lineId\":\"central\"}]");
+        assertTrue(parsed.isDataMissing());
+        assertEquals(1, stn.getNumArrivalBoards());
+
+        try {
+            parsed.merge();
+            fail("TfLArrivalsDataMissingException expected");
+        } catch (TfLArrivalsDataMissingException e) {
+            // expected
+        }
+        assertEquals(0, stn.getNumArrivalBoards());
+    }
+
+    private Arrival find(String id) {
+        for (ArrivalBoard board : stn) {
+            for (Arrival next : board) {
+                if (id.equals(next.getId())) {
+                    return next;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Produce time to station of each arrival at station, by id
+     */
+    private Map<String, Integer> snapshot() {
+        Map<String, Integer> times = new HashMap<String, Integer>();
+        for (ArrivalBoard board : stn) {
+            for (Arrival next : board) {
+                times.put(next.getId(), next.getTimeToStation());
+            }
+        }
+        return times;
+    }
+
+    private static String arrival(String id, String dirn, int timeToStation) {
+        return "{\"id\":\"" + id + "\","
+                + "\"lineId\":\"central\","
+                + "\"platformName\":\"" + dirn + " - Platform 1\","
+                + "\"destinationName\":\"Ealing Broadway Underground Station\","
+                + "\"timeToStation\":" + timeToStation + "}";
+    }
+}
@@ -0,0 +1,135 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Arrival;
+import ca.ubc.cs.cpsc210.mindthegap.model.ArrivalBoard;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for BoardDepartures: the board used for a departure towards an adjacent station is chosen
+ * by the compass bearing of that station, half a headway is assumed where live departures are not
+ * available, stations without live arrivals are recorded as missing, and each station's boards are
+ * read only once.
+ */
+public class BoardDeparturesTest extends TestCase {
+    private static final long MIN = 60 * 1000;
+    private static final long HEADWAY = 4 * MIN;
+    private static final long MAX_AGE = 2 * MIN;
+    private Line central;
+    private Line northern;
+    private Line district;
+    private Station stn;
+    private Station west, east, north, south;
+    private long now;
+
+    @Override
+    protected void setUp() {
+        central = new Line(LineResourceData.CENTRAL, "central", "Central");
+        northern = new Line(LineResourceData.NORTHERN, "northern", "Northern");
+        district = new Line(LineResourceData.DISTRICT, "district", "District");
+        stn = station("S", 51.50, -0.15);
+        west = station("W", 51.50, -0.16);
+        east = station("E", 51.50, -0.14);
+        north = station("N", 51.51, -0.15);
+        south = station("Sth", 51.49, -0.15);
+        now = System.currentTimeMillis();
+    }
+
+    public void testHalfHeadwayAssumedWhereArrivalsNeverDownloaded() {
+        BoardDepartures departures = new BoardDepartures(now, MAX_AGE, HEADWAY);
+
+        assertEquals(now + HEADWAY / 2, departures.nextDeparture(stn, central, east, now));
+        assertEquals(now + 2 * MIN + HEADWAY / 2, departures.nextDeparture(west, central, stn, now + 2 * MIN));
+        assertEquals(Arrays.asList(stn, west), new ArrayList<Station>(departures.getMissingStations()));
+    }
+
+    public void testHalfHeadwayAssumedWhereArrivalsTooOld() {
+        arrivals(central, "Eastbound", 3 * MIN);
+        long later = now + MAX_AGE + 1000;
+        BoardDepartures departures = new BoardDepartures(later, MAX_AGE, HEADWAY);
+
+        assertEquals(later + HEADWAY / 2, departures.nextDeparture(stn, central, east, later));
+        assertEquals(Collections.singleton(stn), departures.getMissingStations());
+    }
+
+    public void testBoardChosenByCompassBearingOfNextStation() {
+        arrivals(central, "Westbound", 1 * MIN, 6 * MIN);
+        arrivals(central, "Eastbound", 3 * MIN);
+        BoardDepartures departures = new BoardDepartures(now, MAX_AGE, HEADWAY);
+
+        assertEquals(now + 3 * MIN, departures.nextDeparture(stn, central, east, now));
+        assertEquals(now + 1 * MIN, departures.nextDeparture(stn, central, west, now));
+        assertEquals(now + 6 * MIN, departures.nextDeparture(stn, central, west, now + 2 * MIN));
+        assertTrue(departures.getMissingStations().isEmpty());
+    }
+
+    public void testBoardMoreThanNinetyDegreesOffNotUsed() {
+        arrivals(northern, "Northbound", 1 * MIN);
+        BoardDepartures departures = new BoardDepartures(now, MAX_AGE, HEADWAY);
+
+        assertEquals(now + 1 * MIN, departures.nextDeparture(stn, northern, north, now));
+        assertEquals(now + HEADWAY / 2, departures.nextDeparture(stn, northern, south, now));
+        assertTrue(departures.getMissingStations().isEmpty());
+    }
+
+    public void testAllBoardsOfLineUsedWhereNoneHasCompassDirection() {
+        arrivals(district, "Inner Rail", 5 * MIN);
+        arrivals(district, "Outer Rail", 2 * MIN);
+        arrivals(central, "Westbound", 1 * MIN);
+        BoardDepartures departures = new BoardDepartures(now, MAX_AGE, HEADWAY);
+
+        assertEquals(now + 2 * MIN, departures.nextDeparture(stn, district, east, now));
+        assertEquals(now + 5 * MIN, departures.nextDeparture(stn, district, west, now + 3 * MIN));
+    }
+
+    public void testHalfHeadwayAssumedAfterLastTrainOnBoard() {
+        arrivals(central, "Eastbound", 1 * MIN);
+        BoardDepartures departures = new BoardDepartures(now, MAX_AGE, HEADWAY);
+        long later = now + 10 * MIN;
+
+        assertEquals(later + HEADWAY / 2, departures.nextDeparture(stn, central, east, later));
+        assertTrue(departures.getMissingStations().isEmpty());
+    }
+
+    public void testBoardsReadOnceForQuery() {
+        arrivals(central, "Eastbound", 3 * MIN);
+        BoardDepartures departures = new BoardDepartures(now, MAX_AGE, HEADWAY);
+        assertEquals(now + 3 * MIN, departures.nextDeparture(stn, central, east, now));
+
+        arrivals(central, "Eastbound", 1 * MIN);
+        assertEquals(now + 3 * MIN, departures.nextDeparture(stn, central, east, now));
+        BoardDepartures nextQuery = new BoardDepartures(now, MAX_AGE, HEADWAY);
+        assertEquals(now + 1 * MIN, nextQuery.nextDeparture(stn, central, east, now));
+    }
+
+    /**
+     * Add arrivals on given line and travel direction to those at station, expected at given times
+     * (in ms) after now
+     */
+    private void arrivals(Line line, String travelDirn, long... after) {
+        stn.beginArrivalsUpdate();
+        for (ArrivalBoard board : stn) {
+            for (Arrival next : board) {
+                stn.addArrival(board.getLine(), next);     // kept by update
+            }
+        }
+        for (long next : after) {
+            String id = line.getId() + travelDirn + next;
+            Arrival arrival = new Arrival(id, (int) (next / 1000), now + next, "Terminus",
+                    travelDirn + " - Platform 1");
+            stn.addArrival(line, arrival);
+        }
+        stn.endArrivalsUpdate();
+    }
+
+    private static Station station(String name, double lat, double lon) {
+        return new Station("940GZZTEST" + name, name, new LatLon(lat, lon));
+    }
+}
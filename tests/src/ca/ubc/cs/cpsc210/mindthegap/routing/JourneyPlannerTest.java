@@ -0,0 +1,189 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for StationGraph and JourneyPlanner on a small hand-built network: two branches of the
+ * Central line meet at a junction (J), the Northern line meets the Central line at two interchanges
+ * (B2 and E2), and a Victoria line shortcut (W2 to B1) saves distance at the cost of two changes.
+ *
+ *             B2 ---- N1
+ *             |         \
+ *             B1         \
+ *           / |           \
+ *   W1 - W2 - J - E1 ----- E2
+ *
+ * Also checks that planning on a network the size of the Underground takes well under a millisecond.
+ */
+public class JourneyPlannerTest extends TestCase {
+    private static final double MAX_MEAN_MILLIS = 1.0;
+    private Line central;
+    private Line northern;
+    private Line victoria;
+    private Station w1, w2, j, e1, e2, b1, b2, n1;
+    private StationGraph graph;
+    private JourneyPlanner planner;
+
+    @Override
+    protected void setUp() {
+        w1 = station("W1", 51.50, -0.20);
+        w2 = station("W2", 51.50, -0.15);
+        j = station("J", 51.50, -0.10);
+        e1 = station("E1", 51.50, -0.05);
+        e2 = station("E2", 51.50, 0.00);
+        b1 = station("B1", 51.53, -0.10);
+        b2 = station("B2", 51.56, -0.10);
+        n1 = station("N1", 51.56, -0.05);
+
+        central = line(LineResourceData.CENTRAL, "central", "Central",
+                Arrays.asList(w1, w2, j, e1, e2), Arrays.asList(b2, b1, j, e1, e2));
+        northern = line(LineResourceData.NORTHERN, "northern", "Northern", Arrays.asList(b2, n1, e2));
+        victoria = line(LineResourceData.VICTORIA, "victoria", "Victoria", Arrays.asList(w2, b1));
+
+        graph = StationGraph.build(Arrays.asList(central, northern, victoria));
+        planner = new JourneyPlanner(graph);
+    }
+
+    public void testGraphHasPlatformForEachLineAtStation() {
+        // central: 7 platforms, northern: 3, victoria: 2
+        assertEquals(12, graph.getNumNodes());
+        assertTrue(graph.hasStation(n1));
+        assertTrue(graph.hasStation(j));
+        assertFalse(graph.hasStation(station("X", 51.40, -0.10)));
+    }
+
+    public void testBranchesMeetAtJunctionWithoutChange() {
+        Journey journey = planner.fewestChanges(w1, b2);
+
+        assertEquals(1, journey.getLegs().size());
+        assertEquals(0, journey.getNumChanges());
+        Leg leg = journey.getLegs().get(0);
+        assertEquals(central, leg.getLine());
+        assertEquals(Arrays.asList(w1, w2, j, b1, b2), leg.getStations());
+        assertEquals(4, leg.getNumStops());
+    }
+
+    public void testChangeAtInterchange() {
+        Journey journey = planner.fewestChanges(w1, n1);
+
+        assertEquals(1, journey.getNumChanges());
+        Leg first = journey.getLegs().get(0);
+        Leg second = journey.getLegs().get(1);
+        assertEquals(central, first.getLine());
+        assertEquals(b2, first.getTo());
+        assertEquals(northern, second.getLine());
+        assertEquals(Arrays.asList(b2, n1), second.getStations());
+        assertEquals(Arrays.asList(w1, w2, j, b1, b2, n1), journey.getStations());
+        assertEquals(first.getDistance() + second.getDistance(), journey.getDistance(), 1e-6);
+    }
+
+    public void testCriterionTradesChangesForDistance() {
+        Journey fewest = planner.fewestChanges(w1, b2);
+        Journey shortest = planner.shortestDistance(w1, b2);
+
+        assertEquals(2, shortest.getNumChanges());
+        assertEquals(Arrays.asList(w1, w2, b1, b2), shortest.getStations());
+        assertEquals(victoria, shortest.getLegs().get(1).getLine());
+        assertTrue(shortest.getDistance() < fewest.getDistance());
+    }
+
+    public void testNoJourneyOffGraphOrBetweenUnconnectedLines() {
+        Station x = station("X", 51.40, -0.10);
+        Station y1 = station("Y1", 51.45, -0.30);
+        Station y2 = station("Y2", 51.45, -0.25);
+        Line jubilee = line(LineResourceData.JUBILEE, "jubilee", "Jubilee", Arrays.asList(y1, y2));
+        JourneyPlanner disconnected = new JourneyPlanner(
+                StationGraph.build(Arrays.asList(central, northern, victoria, jubilee)));
+
+        assertNull(planner.fewestChanges(w1, x));
+        assertNull(planner.fewestChanges(w1, y1));
+        assertNull(disconnected.fewestChanges(w1, y1));
+        assertNotNull(disconnected.fewestChanges(y1, y2));
+    }
+
+    public void testJourneyToSameStationHasNoLegs() {
+        Journey journey = planner.shortestDistance(j, j);
+
+        assertTrue(journey.getLegs().isEmpty());
+        assertEquals(0, journey.getNumChanges());
+        assertEquals(0.0, journey.getDistance(), 0);
+    }
+
+    public void testPlansWithinAMillisecondOnNetworkOfUndergroundSize() {
+        // 18 x 18 grid of stations (about the number on the Underground), with a line along each row
+        // and each column, so that every station is an interchange
+        int size = 18;
+        LineResourceData[] kinds = LineResourceData.values();
+        Station[][] grid = new Station[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                grid[r][c] = station("G" + r + "_" + c, 51.40 + 0.01 * r, -0.30 + 0.015 * c);
+            }
+        }
+        List<Line> lines = new ArrayList<Line>();
+        for (int i = 0; i < size; i++) {
+            List<Station> row = new ArrayList<Station>();
+            List<Station> col = new ArrayList<Station>();
+            for (int k = 0; k < size; k++) {
+                row.add(grid[i][k]);
+                col.add(grid[k][i]);
+            }
+            lines.add(line(kinds[i % kinds.length], "row" + i, "Row " + i, row));
+            lines.add(line(kinds[(i + 1) % kinds.length], "col" + i, "Column " + i, col));
+        }
+        JourneyPlanner gridPlanner = new JourneyPlanner(StationGraph.build(lines));
+
+        Random random = new Random(210);
+        JourneyPlanner.Criterion[] criteria = JourneyPlanner.Criterion.values();
+        int queries = 500;
+        plan(gridPlanner, grid, random, criteria, queries);       // warm up
+        long start = System.nanoTime();
+        plan(gridPlanner, grid, random, criteria, queries);
+        double meanMillis = (System.nanoTime() - start) / 1e6 / queries;
+
+        assertTrue("mean " + meanMillis + " ms per journey", meanMillis < MAX_MEAN_MILLIS);
+    }
+
+    /**
+     * Plan given number of journeys between random stations of grid, alternating criteria
+     */
+    private static void plan(JourneyPlanner planner, Station[][] grid, Random random,
+                             JourneyPlanner.Criterion[] criteria, int queries) {
+        int size = grid.length;
+        for (int i = 0; i < queries; i++) {
+            Station from = grid[random.nextInt(size)][random.nextInt(size)];
+            Station to = grid[random.nextInt(size)][random.nextInt(size)];
+            Journey journey = planner.plan(from, to, criteria[i % criteria.length]);
+            assertNotNull(journey);
+            assertTrue(journey.getNumChanges() <= 1);
+        }
+    }
+
+    private static Station station(String name, double lat, double lon) {
+        return new Station("940GZZTEST" + name, name, new LatLon(lat, lon));
+    }
+
+    /**
+     * Produce line serving given stop sequences, registered with each station on it
+     */
+    @SafeVarargs
+    private static Line line(LineResourceData data, String id, String name, List<Station>... sequences) {
+        Line line = new Line(data, id, name);
+        for (List<Station> sequence : sequences) {
+            line.addStopSequence(sequence);
+            for (Station stn : sequence) {
+                stn.addLine(line);
+            }
+        }
+        return line;
+    }
+}
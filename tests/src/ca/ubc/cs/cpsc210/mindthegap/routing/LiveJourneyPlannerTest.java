@@ -0,0 +1,212 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.TfL.TfLHttpBatchArrivalDataProvider;
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.ParsedArrivals;
+import ca.ubc.cs.cpsc210.mindthegap.parsers.TfLArrivalsParser;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import ca.ubc.cs.cpsc210.mindthegap.util.TaskScheduler;
+import junit.framework.TestCase;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for LiveJourneyPlanner with arrivals downloaded from a fake source.  Callbacks of the
+ * scheduler are queued and run on the test's thread, as they would be on the UI thread.  A query is
+ * answered at once assuming a headway at stations without arrivals, the stations at which the
+ * itinerary boards a train are downloaded in one batch and the query repeated, until no boarding
+ * station is missing or MAX_FETCH_ROUNDS rounds have been made.
+ *
+ * The Central line runs A - B (east of A), the Northern line D - B - C (D south of B, C north of B)
+ * and the Victoria line A - Y - C (Y north of A).  Assuming headways, A to C is quickest by Victoria
+ * line; A to D needs a change at B.
+ */
+public class LiveJourneyPlannerTest extends TestCase {
+    private static final long TIMEOUT = 5000;
+    private Line central;
+    private Line northern;
+    private Line victoria;
+    private Station a, b, c, d, y;
+    private BlockingQueue<Runnable> deliveries;
+    private TaskScheduler scheduler;
+    private FakePlanner planner;
+    private List<Itinerary> itineraries;
+    private List<Boolean> completes;
+
+    @Override
+    protected void setUp() {
+        a = station("A", 51.50, -0.20);
+        b = station("B", 51.50, -0.19);
+        c = station("C", 51.51, -0.19);
+        d = station("D", 51.49, -0.19);
+        y = station("Y", 51.51, -0.195);
+        central = line(LineResourceData.CENTRAL, "central", "Central", Arrays.asList(a, b));
+        northern = line(LineResourceData.NORTHERN, "northern", "Northern", Arrays.asList(d, b, c));
+        victoria = line(LineResourceData.VICTORIA, "victoria", "Victoria", Arrays.asList(a, y, c));
+
+        deliveries = new LinkedBlockingQueue<Runnable>();
+        scheduler = new TaskScheduler(1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                deliveries.add(command);
+            }
+        });
+        planner = new FakePlanner(StationGraph.build(Arrays.asList(central, northern, victoria)), scheduler);
+        itineraries = new ArrayList<Itinerary>();
+        completes = new ArrayList<Boolean>();
+    }
+
+    @Override
+    protected void tearDown() {
+        scheduler.shutdown();
+    }
+
+    public void testMissingBoardingStationsFetchedInOneBatch() throws Exception {
+        Itinerary first = planner.plan(a, d, listener());
+
+        assertEquals(1, itineraries.size());
+        assertSame(first, itineraries.get(0));
+        assertEquals(Boolean.FALSE, completes.get(0));
+        assertEquals(1, first.getNumChanges());
+
+        runUntilComplete();
+        assertEquals(2, itineraries.size());
+        assertEquals(Arrays.asList(Arrays.asList(a, b)), planner.requests);
+    }
+
+    public void testStationsNewlyBoardedFetchedInNextRound() throws Exception {
+        planner.responses.put(a, arrival(a, "central", "Eastbound", 60) + ","
+                + arrival(a, "victoria", "Northbound", 30 * 60));
+
+        Itinerary first = planner.plan(a, c, listener());
+        assertEquals(victoria, first.getRides().get(0).getLine());
+
+        runUntilComplete();
+        List<List<Station>> expected = new ArrayList<List<Station>>();
+        expected.add(Collections.singletonList(a));
+        expected.add(Collections.singletonList(b));
+        assertEquals(expected, planner.requests);
+        assertEquals(Arrays.asList(false, false, true), completes);
+
+        Itinerary last = itineraries.get(2);
+        assertEquals(central, last.getRides().get(0).getLine());
+        assertEquals(northern, last.getRides().get(1).getLine());
+    }
+
+    public void testFetchRoundsCapped() throws Exception {
+        planner.failing = true;
+
+        planner.plan(a, d, listener());
+        runUntilComplete();
+
+        assertEquals(LiveJourneyPlanner.MAX_FETCH_ROUNDS, planner.requests.size());
+        assertEquals(LiveJourneyPlanner.MAX_FETCH_ROUNDS + 1, itineraries.size());
+        for (Itinerary next : itineraries) {
+            assertEquals(1, next.getNumChanges());
+        }
+    }
+
+    public void testCancelledQueryNotAnswered() throws Exception {
+        planner.plan(a, d, listener());
+        planner.cancel();
+
+        Runnable delivery = deliveries.poll(500, TimeUnit.MILLISECONDS);
+        if (delivery != null) {
+            delivery.run();
+        }
+        assertEquals(1, itineraries.size());
+    }
+
+    private LiveJourneyPlanner.Listener listener() {
+        return new LiveJourneyPlanner.Listener() {
+            @Override
+            public void onItinerary(Itinerary itinerary, boolean complete) {
+                assertFalse(completes.contains(true));
+                itineraries.add(itinerary);
+                completes.add(complete);
+            }
+        };
+    }
+
+    /**
+     * Run callbacks of scheduler on this thread, as they are delivered, until query is complete
+     */
+    private void runUntilComplete() throws InterruptedException {
+        while (!completes.get(completes.size() - 1)) {
+            Runnable delivery = deliveries.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertNotNull(delivery);
+            delivery.run();
+        }
+    }
+
+    private static String arrival(Station stn, String lineId, String dirn, int timeToStation) {
+        return "{\"id\":\"" + stn.getName() + lineId + dirn + "\","
+                + "\"naptanId\":\"" + stn.getID() + "\","
+                + "\"lineId\":\"" + lineId + "\","
+                + "\"platformName\":\"" + dirn + " - Platform 1\","
+                + "\"destinationName\":\"Terminus\","
+                + "\"timeToStation\":" + timeToStation + "}";
+    }
+
+    private static Station station(String name, double lat, double lon) {
+        return new Station("940GZZTEST" + name, name, new LatLon(lat, lon));
+    }
+
+    /**
+     * Produce line serving given stop sequence, registered with each station on it
+     */
+    private static Line line(LineResourceData data, String id, String name, List<Station> sequence) {
+        Line line = new Line(data, id, name);
+        line.addStopSequence(sequence);
+        for (Station stn : sequence) {
+            stn.addLine(line);
+        }
+        return line;
+    }
+
+    /**
+     * Planner reading arrivals from given responses instead of TfL, recording the stations of each
+     * request; a station without a response has no arrivals
+     */
+    private static class FakePlanner extends LiveJourneyPlanner {
+        private Map<Station, String> responses = new HashMap<Station, String>();
+        private List<List<Station>> requests = Collections.synchronizedList(new ArrayList<List<Station>>());
+        private volatile boolean failing;
+
+        FakePlanner(StationGraph graph, TaskScheduler scheduler) {
+            super(graph, scheduler);
+        }
+
+        @Override
+        ParsedArrivals readArrivals(TfLHttpBatchArrivalDataProvider provider) throws IOException, JSONException {
+            List<Station> stns = provider.getStations();
+            requests.add(stns);
+            if (failing) {
+                throw new IOException("Arrivals unavailable");
+            }
+
+            StringBuilder response = new StringBuilder("[");
+            for (Station next : stns) {
+                if (responses.containsKey(next)) {
+                    response.append(response.length() > 1 ? "," : "").append(responses.get(next));
+                }
+            }
+            response.append("]");
+            return TfLArrivalsParser.readArrivals(stns, new StringReader(response.toString()));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ca.ubc.cs.cpsc210.mindthegap.routing;
+
+import ca.ubc.cs.cpsc210.mindthegap.model.Line;
+import ca.ubc.cs.cpsc210.mindthegap.model.LineResourceData;
+import ca.ubc.cs.cpsc210.mindthegap.model.Station;
+import ca.ubc.cs.cpsc210.mindthegap.util.LatLon;
+import ca.ubc.cs.cpsc210.mindthegap.util.SphericalGeometry;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for TimeDependentPlanner on a small network with departures from a timetable: a traveller
+ * waits for the next train, stays on it through stations without waiting again, allows
+ * INTERCHANGE_TIME to change line, and takes whichever route arrives earliest given the departures.
+ * The Central line runs A - B - C, the Northern line B - D (north of B) and the Victoria line takes a
+ * longer route A - E - C (E being north of the Central line).
+ */
+public class TimeDependentPlannerTest extends TestCase {
+    private static final long MIN = 60 * 1000;
+    private static final long START = 1000000000000L;
+    private Line central;
+    private Line northern;
+    private Line victoria;
+    private Station a, b, c, d, e;
+    private TimeDependentPlanner planner;
+    private Timetable timetable;
+
+    @Override
+    protected void setUp() {
+        a = station("A", 51.50, -0.20);
+        b = station("B", 51.50, -0.19);
+        c = station("C", 51.50, -0.18);
+        d = station("D", 51.51, -0.19);
+        e = station("E", 51.505, -0.185);
+        central = line(LineResourceData.CENTRAL, "central", "Central", Arrays.asList(a, b, c));
+        northern = line(LineResourceData.NORTHERN, "northern", "Northern", Arrays.asList(b, d));
+        victoria = line(LineResourceData.VICTORIA, "victoria", "Victoria", Arrays.asList(a, e, c));
+        planner = new TimeDependentPlanner(StationGraph.build(Arrays.asList(central, northern, victoria)));
+        timetable = new Timetable();
+    }
+
+    public void testWaitsForTrainAndStaysOnThroughStations() {
+        timetable.add(central, a, b, START + 4 * MIN);
+        timetable.add(central, b, c, START + 50 * MIN);     // not waited for by a traveller on the train
+
+        Itinerary itinerary = planner.earliestArrival(a, c, START, timetable);
+
+        assertEquals(1, itinerary.getRides().size());
+        Ride ride = itinerary.getRides().get(0);
+        assertEquals(central, ride.getLine());
+        assertEquals(Arrays.asList(a, b, c), ride.getStations());
+        assertEquals(START + 4 * MIN, ride.getDeparture());
+        assertEquals(START + 4 * MIN + rideTime(a, b) + rideTime(b, c), itinerary.getArrival());
+        assertEquals(itinerary.getArrival() - START, itinerary.getDuration());
+    }
+
+    public void testChangeAllowsInterchangeTime() {
+        timetable.add(central, a, b, START + 1 * MIN);
+        long atB = START + 1 * MIN + rideTime(a, b);
+        timetable.add(northern, b, d, atB + 1 * MIN, atB + 5 * MIN);   // first leaves before change is made
+
+        Itinerary itinerary = planner.earliestArrival(a, d, START, timetable);
+
+        assertEquals(1, itinerary.getNumChanges());
+        Ride second = itinerary.getRides().get(1);
+        assertEquals(northern, second.getLine());
+        assertEquals(atB, itinerary.getRides().get(0).getArrival());
+        assertEquals(atB + 5 * MIN, second.getDeparture());
+        assertEquals(atB + 5 * MIN + rideTime(b, d), itinerary.getArrival());
+    }
+
+    public void testLongerRouteTakenWhenItsTrainArrivesEarlier() {
+        timetable.add(central, a, b, START + 20 * MIN);
+        timetable.add(victoria, a, e, START + 1 * MIN);
+
+        Itinerary itinerary = planner.earliestArrival(a, c, START, timetable);
+
+        assertEquals(victoria, itinerary.getRides().get(0).getLine());
+        assertEquals(Arrays.asList(a, e, c), itinerary.getRides().get(0).getStations());
+        assertEquals(START + 1 * MIN + rideTime(a, e) + rideTime(e, c), itinerary.getArrival());
+
+        timetable = new Timetable();
+        timetable.add(central, a, b, START + 1 * MIN);
+        timetable.add(victoria, a, e, START + 1 * MIN);
+
+        itinerary = planner.earliestArrival(a, c, START, timetable);
+
+        assertEquals(central, itinerary.getRides().get(0).getLine());
+        assertEquals(START + 1 * MIN + rideTime(a, b) + rideTime(b, c), itinerary.getArrival());
+    }
+
+    public void testNoItineraryOffGraphAndNoRidesToSameStation() {
+        Station x = station("X", 51.40, -0.20);
+
+        assertNull(planner.earliestArrival(a, x, START, timetable));
+
+        Itinerary itinerary = planner.earliestArrival(b, b, START, timetable);
+        assertTrue(itinerary.getRides().isEmpty());
+        assertEquals(START, itinerary.getArrival());
+    }
+
+    /**
+     * Produce time (in ms) taken to ride between adjacent stations
+     */
+    private static long rideTime(Station from, Station to) {
+        double distance = SphericalGeometry.distanceBetween(from.getLocn(), to.getLocn());
+        return Math.round(distance / TimeDependentPlanner.AVERAGE_SPEED * 1000);
+    }
+
+    private static Station station(String name, double lat, double lon) {
+        return new Station("940GZZTEST" + name, name, new LatLon(lat, lon));
+    }
+
+    /**
+     * Produce line serving given stop sequence, registered with each station on it
+     */
+    private static Line line(LineResourceData data, String id, String name, List<Station> sequence) {
+        Line line = new Line(data, id, name);
+        line.addStopSequence(sequence);
+        for (Station stn : sequence) {
+            stn.addLine(line);
+        }
+        return line;
+    }
+
+    /**
+     * Departures from a timetable; where the timetable has no later train, the next one leaves in
+     * an hour
+     */
+    private static class Timetable implements DepartureSource {
+        private Map<String, long[]> departures = new HashMap<String, long[]>();
+
+        void add(Line line, Station stn, Station next, long... times) {
+            departures.put(key(line, stn, next), times);
+        }
+
+        @Override
+        public long nextDeparture(Station stn, Line line, Station next, long time) {
+            long[] times = departures.get(key(line, stn, next));
+            if (times != null) {
+                for (long t : times) {
+                    if (t >= time) {
+                        return t;
+                    }
+                }
+            }
+            return time + 60 * MIN;
+        }
+
+        private static String key(Line line, Station stn, Station next) {
+            return line.getId() + ":" + stn.getName() + ">" + next.getName();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package ca.ubc.cs.cpsc210.mindthegap.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for TaskScheduler: waiting tasks run in order of priority and then submission, a task is
+ * superseded by the next in its group, cancel hooks run on a thread other than the task's and the
+ * cancelling thread (or at once, if set after the task is cancelled), and statistics are kept per
+ * priority.  Callbacks are delivered on the thread that ran the task.
+ */
+public class TaskSchedulerTest extends TestCase {
+    private static final long TIMEOUT = 5000;
+    private TaskScheduler scheduler;
+    private List<String> ran;
+    private List<String> delivered;
+
+    @Override
+    protected void setUp() {
+        scheduler = new TaskScheduler(1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        ran = Collections.synchronizedList(new ArrayList<String>());
+        delivered = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @Override
+    protected void tearDown() {
+        scheduler.shutdown();
+    }
+
+    public void testWaitingTasksRunInPriorityOrder() throws Exception {
+        CountDownLatch release = block();
+        submit(TaskScheduler.Priority.REFRESH, null, "r1");
+        submit(TaskScheduler.Priority.PREFETCH, null, "p1");
+        submit(TaskScheduler.Priority.USER, null, "u1");
+        submit(TaskScheduler.Priority.REFRESH, null, "r2");
+        submit(TaskScheduler.Priority.USER, null, "u2");
+        CountDownLatch done = submit(TaskScheduler.Priority.REFRESH, null, "r3");
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList("u1", "u2", "p1", "r1", "r2", "r3"), ran);
+        assertEquals(ran, delivered);
+    }
+
+    public void testWaitingTaskSupersededByGroup() throws Exception {
+        CountDownLatch release = block();
+        TaskScheduler.Task<String> first = scheduler.submit(TaskScheduler.Priority.USER, "station",
+                work("first"), callback("first"));
+        CountDownLatch done = submit(TaskScheduler.Priority.USER, "station", "second");
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(first.isCancelled());
+        assertEquals(Arrays.asList("second"), ran);
+        assertEquals(Arrays.asList("second"), delivered);
+        assertEquals(1, scheduler.getStats(TaskScheduler.Priority.USER).getCancelledCount());
+    }
+
+    public void testRunningTaskSupersededByGroupIsInterrupted() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        scheduler.submit(TaskScheduler.Priority.USER, "station", new Callable<String>() {
+            @Override
+            public String call() {
+                started.countDown();
+                try {
+                    Thread.sleep(TIMEOUT);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "first";
+            }
+        }, callback("first"));
+        assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        CountDownLatch done = submit(TaskScheduler.Priority.USER, "station", "second");
+        assertTrue(interrupted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList("second"), delivered);
+    }
+
+    public void testTasksInDifferentGroupsNotSuperseded() throws Exception {
+        CountDownLatch release = block();
+        CountDownLatch first = submit(TaskScheduler.Priority.USER, "a", "first");
+        CountDownLatch second = submit(TaskScheduler.Priority.USER, "b", "second");
+        release.countDown();
+
+        assertTrue(first.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(second.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    public void testCancelHookRunsOffTaskAndCancellingThreads() throws Exception {
+        final CountDownLatch hookSet = new CountDownLatch(1);
+        final CountDownLatch hookRan = new CountDownLatch(1);
+        final Thread[] threads = new Thread[2];      // task's thread, hook's thread
+        TaskScheduler.Task<String> task = scheduler.submit(TaskScheduler.Priority.USER, null,
+                new Callable<String>() {
+                    @Override
+                    public String call() throws InterruptedException {
+                        threads[0] = Thread.currentThread();
+                        TaskScheduler.setCancelHook(new Runnable() {
+                            @Override
+                            public void run() {
+                                threads[1] = Thread.currentThread();
+                                hookRan.countDown();
+                            }
+                        });
+                        hookSet.countDown();
+                        hookRan.await();     // as a read would block until hook disconnects
+                        return "done";
+                    }
+                }, callback("task"));
+        assertTrue(hookSet.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        task.cancel();
+        assertTrue(hookRan.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNotSame(threads[0], threads[1]);
+        assertNotSame(Thread.currentThread(), threads[1]);
+        assertTrue(delivered.isEmpty());
+    }
+
+    public void testCancelHookSetAfterCancelRunsAtOnce() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch hookRan = new CountDownLatch(1);
+        final Thread[] threads = new Thread[2];      // task's thread, hook's thread
+        final boolean[] ranBeforeReturn = new boolean[1];
+        TaskScheduler.Task<String> task = scheduler.submit(TaskScheduler.Priority.USER, null,
+                new Callable<String>() {
+                    @Override
+                    public String call() {
+                        threads[0] = Thread.currentThread();
+                        started.countDown();
+                        try {
+                            Thread.sleep(TIMEOUT);
+                        } catch (InterruptedException e) {
+                            // cancelled before setting hook, as if cancelled while connecting
+                        }
+                        TaskScheduler.setCancelHook(new Runnable() {
+                            @Override
+                            public void run() {
+                                threads[1] = Thread.currentThread();
+                            }
+                        });
+                        ranBeforeReturn[0] = threads[1] != null;
+                        hookRan.countDown();
+                        return "done";
+                    }
+                }, callback("task"));
+        assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        task.cancel();
+        assertTrue(hookRan.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(ranBeforeReturn[0]);
+        assertSame(threads[0], threads[1]);
+        assertTrue(delivered.isEmpty());
+    }
+
+    public void testCancelHookSetOutsideTaskIgnored() {
+        final boolean[] hookRan = new boolean[1];
+        TaskScheduler.setCancelHook(new Runnable() {
+            @Override
+            public void run() {
+                hookRan[0] = true;
+            }
+        });
+        assertFalse(hookRan[0]);
+    }
+
+    public void testStatsKeptPerPriority() throws Exception {
+        CountDownLatch release = block(100);
+        final CountDownLatch queued = submit(TaskScheduler.Priority.PREFETCH, null, "p1");
+        TaskScheduler.Task<String> cancelled = scheduler.submit(TaskScheduler.Priority.REFRESH, null,
+                work("r1"), callback("r1"));
+        cancelled.cancel();
+        release.countDown();
+        assertTrue(queued.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        TaskStats user = scheduler.getStats(TaskScheduler.Priority.USER);
+        TaskStats prefetch = scheduler.getStats(TaskScheduler.Priority.PREFETCH);
+        TaskStats refresh = scheduler.getStats(TaskScheduler.Priority.REFRESH);
+
+        assertEquals(1, user.getRunCount());          // the blocking task
+        assertTrue(user.getMaxRunMillis() >= 100);
+        assertEquals(1, prefetch.getRunCount());
+        assertEquals(0, prefetch.getCancelledCount());
+        assertTrue(prefetch.getMaxWaitMillis() >= 100);
+        assertEquals(prefetch.getMaxWaitMillis(), prefetch.getMeanWaitMillis());
+        assertEquals(0, refresh.getRunCount());
+        assertEquals(1, refresh.getCancelledCount());
+
+        assertTrue(prefetch.toString().startsWith("PREFETCH: 1 run, 0 cancelled, wait "));
+        assertTrue(scheduler.toString().contains("REFRESH: 0 run, 1 cancelled"));
+    }
+
+    /**
+     * Occupy scheduler's thread with a USER task until the latch produced is counted down
+     */
+    private CountDownLatch block() throws InterruptedException {
+        return block(0);
+    }
+
+    /**
+     * Occupy scheduler's thread with a USER task until the latch produced is counted down and at
+     * least given time (in ms) has passed
+     */
+    private CountDownLatch block(final long minTime) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(TaskScheduler.Priority.USER, null, new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                started.countDown();
+                Thread.sleep(minTime);
+                release.await();
+                return "blocker";
+            }
+        }, new TaskScheduler.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                // not recorded
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // not recorded
+            }
+        });
+        assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        return release;
+    }
+
+    /**
+     * Submit task that records given name when it runs, and produce a latch counted down when its
+     * callback is called
+     */
+    private CountDownLatch submit(TaskScheduler.Priority priority, String group, String name) {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit(priority, group, work(name), callback(name, done));
+        return done;
+    }
+
+    private Callable<String> work(final String name) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                ran.add(name);
+                return name;
+            }
+        };
+    }
+
+    private TaskScheduler.Callback<String> callback(String name) {
+        return callback(name, new CountDownLatch(1));
+    }
+
+    private TaskScheduler.Callback<String> callback(final String name, final CountDownLatch done) {
+        return new TaskScheduler.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                delivered.add(name);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                fail(name + " failed: " + e);
+            }
+        };
+    }
+}